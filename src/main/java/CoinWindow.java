@@ -11,8 +11,7 @@ import handler.YahooCoinHandler;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang.StringUtils;
 import org.jetbrains.annotations.NotNull;
-import quartz.HandlerJob;
-import quartz.QuartzManager;
+import quartz.RefreshScheduler;
 import utils.WindowUtils;
 
 import javax.swing.*;
@@ -118,22 +117,19 @@ public class CoinWindow {
             if (CollectionUtils.isEmpty(codes)) {
                 stop(); //如果没有数据则不需要启动时钟任务浪费资源
             } else {
-                handler.handle(codes);
-                QuartzManager quartzManager = QuartzManager.getInstance(NAME);
-                HashMap<String, Object> dataMap = new HashMap<>();
-                dataMap.put(HandlerJob.KEY_HANDLER, handler);
-                dataMap.put(HandlerJob.KEY_CODES, codes);
                 String cronExpression = instance.getValue("key_cron_expression_coin");
                 if (StringUtils.isEmpty(cronExpression)) {
                     cronExpression = "*/10 * * * * ?";
                 }
-                quartzManager.runJob(HandlerJob.class, cronExpression, dataMap);
+                // 立即刷新一次，之后按cron定时刷新，都在调度器的线程中执行，避免阻塞UI线程
+                CoinRefreshHandler refreshHandler = handler;
+                RefreshScheduler.getInstance().runJob(NAME, cronExpression, () -> refreshHandler.handle(codes));
             }
         }
     }
 
     public static void stop() {
-        QuartzManager.getInstance(NAME).stopJob();
+        RefreshScheduler.getInstance().stopJob(NAME);
         if (handler != null) {
             handler.stopHandle();
         }
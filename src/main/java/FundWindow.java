@@ -21,8 +21,7 @@ import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang.StringUtils;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
-import quartz.HandlerJob;
-import quartz.QuartzManager;
+import quartz.RefreshScheduler;
 import utils.*;
 
 import javax.swing.*;
@@ -34,6 +33,7 @@ import java.awt.event.MouseMotionAdapter;
 import java.net.MalformedURLException;
 import java.util.List;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 public class FundWindow implements ToolWindowFactory {
     public static final String NAME = "Fund";
@@ -214,22 +214,23 @@ public class FundWindow implements ToolWindowFactory {
             if (CollectionUtils.isEmpty(codes)) {
                 stop(); //如果没有数据则不需要启动时钟任务浪费资源
             } else {
-                fundRefreshHandler.handle(codes);
-                QuartzManager quartzManager = QuartzManager.getInstance(NAME); // 时钟任务
-                HashMap<String, Object> dataMap = new HashMap<>();
-                dataMap.put(HandlerJob.KEY_HANDLER, fundRefreshHandler);
-                dataMap.put(HandlerJob.KEY_CODES, codes);
                 String cronExpression = instance.getValue("key_cron_expression_fund");
                 if (StringUtils.isEmpty(cronExpression)) {
                     cronExpression = "0 * * * * ?";
                 }
-                quartzManager.runJob(HandlerJob.class, cronExpression, dataMap);
+                // 立即刷新一次，之后按cron在交易时段定时刷新，收盘后继续刷新到拿到当日正式净值，
+                // 都在调度器的线程中执行，避免阻塞UI线程
+                TianTianFundHandler refreshHandler = fundRefreshHandler;
+                RefreshScheduler.getInstance().runJob(NAME, cronExpression,
+                        () -> refreshHandler.handle(codes),
+                        () -> MarketSession.FUND.isActive() || MarketSession.FUND.isSettling() && refreshHandler.isNavPending()
+                                ? refreshHandler.handle(codes) : CompletableFuture.completedFuture(null));
             }
         }
     }
 
     public static void stop() {
-        QuartzManager.getInstance(NAME).stopJob();
+        RefreshScheduler.getInstance().stopJob(NAME);
         if (fundRefreshHandler != null) {
             fundRefreshHandler.stopHandle();
         }
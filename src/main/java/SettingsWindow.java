@@ -4,7 +4,7 @@ import com.intellij.openapi.options.ConfigurationException;
 import org.apache.commons.lang.StringUtils;
 import org.jetbrains.annotations.Nls;
 import org.jetbrains.annotations.Nullable;
-import quartz.QuartzManager;
+import quartz.RefreshScheduler;
 import utils.HttpClientPool;
 import utils.LogUtil;
 
@@ -38,6 +38,8 @@ public class SettingsWindow  implements Configurable {
     private JButton proxyTestButton;
     // 长桥API配置
     private JCheckBox checkboxLongbridge;
+    private JCheckBox checkboxLongbridgePush;
+    private JCheckBox checkboxStockRoute;
     private JTextField inputLongbridgeAppKey;
     private JTextField inputLongbridgeAppSecret;
     private JTextField inputLongbridgeAccessToken;
@@ -66,6 +68,7 @@ public class SettingsWindow  implements Configurable {
         cronExpressionCoin.setText(instance.getValue("key_cron_expression_coin","*/10 * * * * ?")); //默认每10秒执行
         //代理设置
         inputProxy.setText(instance.getValue("key_proxy"));
+        proxyLabel.setToolTipText("当前连接：" + HttpClientPool.getHttpClient().describePoolStats());
         proxyTestButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent actionEvent) {
@@ -78,15 +81,23 @@ public class SettingsWindow  implements Configurable {
         inputLongbridgeAppKey.setText(instance.getValue("key_longbridge_app_key", ""));
         inputLongbridgeAppSecret.setText(instance.getValue("key_longbridge_app_secret", ""));
         inputLongbridgeAccessToken.setText(instance.getValue("key_longbridge_access_token", ""));
+        checkboxLongbridgePush.setSelected(instance.getBoolean("key_longbridge_push"));
+        checkboxLongbridgePush.setEnabled(checkboxLongbridge.isSelected());
+        checkboxStockRoute.setSelected(instance.getBoolean("key_stocks_route"));
+        checkboxStockRoute.setEnabled(checkboxLongbridge.isSelected());
         // 长桥和新浪互斥
         checkboxLongbridge.addActionListener(e -> {
             if (checkboxLongbridge.isSelected()) {
                 checkboxSina.setSelected(false);
             }
+            checkboxLongbridgePush.setEnabled(checkboxLongbridge.isSelected());
+            checkboxStockRoute.setEnabled(checkboxLongbridge.isSelected());
         });
         checkboxSina.addActionListener(e -> {
             if (checkboxSina.isSelected()) {
                 checkboxLongbridge.setSelected(false);
+                checkboxLongbridgePush.setEnabled(false);
+                checkboxStockRoute.setEnabled(false);
             }
         });
         return panel1;
@@ -118,6 +129,8 @@ public class SettingsWindow  implements Configurable {
         instance.setValue("key_proxy",proxy);
         // 保存长桥API配置
         instance.setValue("key_stocks_longbridge", checkboxLongbridge.isSelected());
+        instance.setValue("key_longbridge_push", checkboxLongbridgePush.isSelected());
+        instance.setValue("key_stocks_route", checkboxStockRoute.isSelected());
         instance.setValue("key_longbridge_app_key", inputLongbridgeAppKey.getText().trim());
         instance.setValue("key_longbridge_app_secret", inputLongbridgeAppSecret.getText().trim());
         instance.setValue("key_longbridge_access_token", inputLongbridgeAccessToken.getText().trim());
@@ -136,11 +149,11 @@ public class SettingsWindow  implements Configurable {
             LogUtil.notify("别用中文分割符啊!",false);
             return;
         }
-        HttpClientPool httpClientPool = HttpClientPool.getHttpClient();
-        httpClientPool.buildHttpClient(proxy);
         try {
-            httpClientPool.get("https://www.baidu.com");
+            // 独立的临时客户端，保存前不影响正在刷新的请求
+            HttpClientPool.getWithProxy(proxy, "https://www.baidu.com");
             LogUtil.notify("代理测试成功!请保存",true);
+            proxyLabel.setToolTipText("当前连接：" + HttpClientPool.getHttpClient().describePoolStats());
         } catch (Exception e) {
             e.printStackTrace();
             LogUtil.notify("测试代理异常!",false);
@@ -190,20 +203,20 @@ public class SettingsWindow  implements Configurable {
     private String checkConfig() {
         StringBuilder errorMsg = new StringBuilder();
         errorMsg.append(getConfigList(cronExpressionFund.getText(), ";").stream().map(s -> {
-            if (!QuartzManager.checkCronExpression(s)) {
+            if (!RefreshScheduler.checkCronExpression(s)) {
                 return "Fund请配置正确的cron表达式[" + s + "]、";
             } else {
                 return "";
             }
         }).collect(Collectors.joining())); errorMsg.append(getConfigList(cronExpressionStock.getText(), ";").stream().map(s -> {
-            if (!QuartzManager.checkCronExpression(s)) {
+            if (!RefreshScheduler.checkCronExpression(s)) {
                 return "Stock请配置正确的cron表达式[" + s + "]、";
             } else {
                 return "";
             }
         }).collect(Collectors.joining()));
         errorMsg.append(getConfigList(cronExpressionCoin.getText(), ";").stream().map(s -> {
-            if (!QuartzManager.checkCronExpression(s)) {
+            if (!RefreshScheduler.checkCronExpression(s)) {
                 return "Coin请配置正确的cron表达式[" + s + "]、";
             } else {
                 return "";
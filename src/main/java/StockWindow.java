@@ -6,16 +6,22 @@ import com.intellij.openapi.actionSystem.AnActionEvent;
 import com.intellij.ui.AnActionButton;
 import com.intellij.ui.ToolbarDecorator;
 import com.intellij.ui.table.JBTable;
+import handler.FailoverQuoteProvider;
+import handler.LongbridgeQuoteProvider;
 import handler.LongbridgeStockHandler;
+import handler.QuoteProvider;
+import handler.QuoteService;
+import handler.RoutingStockHandler;
+import handler.SinaQuoteProvider;
 import handler.SinaStockHandler;
 import handler.StockRefreshHandler;
+import handler.TencentQuoteProvider;
 import handler.TencentStockHandler;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang.StringUtils;
 import org.jetbrains.annotations.NotNull;
-import quartz.HandlerJob;
-import quartz.QuartzManager;
-import utils.LogUtil;
+import quartz.RefreshScheduler;
+import utils.MarketSession;
 import utils.WindowUtils;
 
 import javax.swing.*;
@@ -23,8 +29,9 @@ import javax.swing.border.EmptyBorder;
 import java.awt.*;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseMotionAdapter;
-import java.util.HashMap;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 
 public class StockWindow {
     public static final String NAME = "Stock";
@@ -108,7 +115,23 @@ public class StockWindow {
         PropertiesComponent instance = PropertiesComponent.getInstance();
         boolean useSinaApi = instance.getBoolean("key_stocks_sina");
         boolean useLongbridgeApi = instance.getBoolean("key_stocks_longbridge");
-        
+
+        // 按市场分流：沪深走腾讯，港美股走长桥
+        if (useLongbridgeApi && instance.getBoolean("key_stocks_route")) {
+            if (handler instanceof RoutingStockHandler) {
+                return handler;
+            }
+            // 各自熔断后分别改用新浪、腾讯
+            TencentQuoteProvider tencent = new TencentQuoteProvider();
+            QuoteProvider cn = new FailoverQuoteProvider(tencent, new SinaQuoteProvider());
+            QuoteProvider hkUs = new FailoverQuoteProvider(new LongbridgeQuoteProvider(), tencent);
+            Map<MarketSession, QuoteProvider> routes = new EnumMap<>(MarketSession.class);
+            routes.put(MarketSession.CN, cn);
+            routes.put(MarketSession.HK, hkUs);
+            routes.put(MarketSession.US, hkUs);
+            return new RoutingStockHandler(table, refreshTimeLabel, routes, cn);
+        }
+
         // 优先使用长桥API（港股美股）
         if (useLongbridgeApi) {
             if (handler instanceof LongbridgeStockHandler) {
@@ -134,7 +157,12 @@ public class StockWindow {
 
     public static void apply() {
         if (handler != null) {
-            handler = factoryHandler();
+            StockRefreshHandler newHandler = factoryHandler();
+            if (newHandler != handler) {
+                // 切换了数据源，停掉旧的（如长桥推送订阅）
+                handler.stopHandle();
+            }
+            handler = newHandler;
             PropertiesComponent instance = PropertiesComponent.getInstance();
             handler.setStriped(instance.getBoolean("key_table_striped"));
             handler.clearRow();
@@ -147,35 +175,30 @@ public class StockWindow {
             PropertiesComponent instance = PropertiesComponent.getInstance();
             handler.refreshColorful(instance.getBoolean("key_colorful"));
             List<String> codes = loadStocks();
+            // 定时刷新只传入正在交易的代码，删除自选的快照只能在这里按全部代码清理
+            QuoteService.getInstance().retain(codes);
             if (CollectionUtils.isEmpty(codes)) {
                 stop(); //如果没有数据则不需要启动时钟任务浪费资源
             } else {
-                // 异步执行API调用，避免阻塞UI线程
-                new Thread(() -> {
-                    try {
-                        handler.handle(codes);
-                    } catch (Exception e) {
-                        LogUtil.info("刷新股票数据失败: " + e.getMessage());
-                    }
-                }).start();
-                QuartzManager quartzManager = QuartzManager.getInstance(NAME);
-                HashMap<String, Object> dataMap = new HashMap<>();
-                dataMap.put(HandlerJob.KEY_HANDLER, handler);
-                dataMap.put(HandlerJob.KEY_CODES, codes);
                 String cronExpression = instance.getValue("key_cron_expression_stock");
                 if (StringUtils.isEmpty(cronExpression)) {
                     cronExpression = "*/10 * * * * ?";
                 }
-                quartzManager.runJob(HandlerJob.class, cronExpression, dataMap);
+                // 立即刷新一次全部代码，之后按cron定时刷新正在交易的代码，都在调度器的线程中执行，避免阻塞UI线程
+                StockRefreshHandler refreshHandler = handler;
+                RefreshScheduler.getInstance().runJob(NAME, cronExpression,
+                        () -> refreshHandler.handle(codes),
+                        () -> refreshHandler.handle(MarketSession.filterActive(codes)));
             }
         }
     }
 
     public static void stop() {
-        QuartzManager.getInstance(NAME).stopJob();
+        RefreshScheduler.getInstance().stopJob(NAME);
         if (handler != null) {
             handler.stopHandle();
         }
+        QuoteService.getInstance().releaseLeadership();
     }
 
     private static List<String> loadStocks(){
@@ -11,13 +11,13 @@ import utils.WindowUtils;
 
 import javax.swing.*;
 import javax.swing.table.DefaultTableCellRenderer;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.util.List;
 import java.util.Objects;
 import java.util.Vector;
+import java.util.concurrent.CompletableFuture;
 
-public abstract class CoinRefreshHandler extends DefaultTableModel {
+public abstract class CoinRefreshHandler extends KeyedTableModel {
     private static String[] columnNames;
     /**
      * 存放【编码】的位置，更新数据时用到
@@ -79,8 +79,9 @@ public abstract class CoinRefreshHandler extends DefaultTableModel {
      * 从网络更新数据
      *
      * @param code
+     * @return 本次刷新结束时完成，定时任务据此避免重叠执行
      */
-    public abstract void handle(List<String> code);
+    public abstract CompletableFuture<Void> handle(List<String> code);
 
     /**
      * 设置表格条纹（斑马线）<br>
@@ -143,55 +144,8 @@ public abstract class CoinRefreshHandler extends DefaultTableModel {
         if (convertData == null) {
             return;
         }
-        // 获取行
-        int index = findRowIndex(codeColumnIndex, bean.getSymbol());
-        if (index >= 0) {
-            updateRow(index, convertData);
-        } else {
-            addRow(convertData);
-        }
-    }
-
-    /**
-     * 参考源码{@link DefaultTableModel#setValueAt}，此为直接更新行，提高点效率
-     *
-     * @param rowIndex
-     * @param rowData
-     */
-    protected void updateRow(int rowIndex, Vector<Object> rowData) {
-        dataVector.set(rowIndex, rowData);
-        // 通知listeners刷新ui
-        fireTableRowsUpdated(rowIndex, rowIndex);
-    }
-
-    /**
-     * 参考源码{@link DefaultTableModel#removeRow(int)}，此为直接清除全部行，提高点效率
-     */
-    public void clearRow() {
-        int size = dataVector.size();
-        if (0 < size) {
-            dataVector.clear();
-            // 通知listeners刷新ui
-            fireTableRowsDeleted(0, size - 1);
-        }
-    }
-
-    /**
-     * 查找列项中的valueName所在的行
-     *
-     * @param columnIndex 列号
-     * @param value       值
-     * @return 如果不存在返回-1
-     */
-    protected int findRowIndex(int columnIndex, String value) {
-        int rowCount = getRowCount();
-        for (int rowIndex = 0; rowIndex < rowCount; rowIndex++) {
-            Object valueAt = getValueAt(rowIndex, columnIndex);
-            if (StringUtils.equalsIgnoreCase(value, valueAt.toString())) {
-                return rowIndex;
-            }
-        }
-        return -1;
+        // 交给EDT批量更新
+        enqueueRow(bean.getSymbol(), convertData);
     }
 
     private Vector<Object> convertData(CoinBean coinBean) {
@@ -207,8 +161,8 @@ public abstract class CoinRefreshHandler extends DefaultTableModel {
     }
 
     @Override
-    public boolean isCellEditable(int row, int column) {
-        return false;
+    protected int getKeyColumnIndex() {
+        return codeColumnIndex;
     }
 
 }
@@ -0,0 +1,306 @@
+package handler;
+
+import bean.StockBean;
+import com.intellij.ide.util.PropertiesComponent;
+import org.apache.commons.lang.math.NumberUtils;
+import utils.CircuitBreaker;
+import utils.LogUtil;
+import utils.MarketSession;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * 按顺序组合多个数据源，每个数据源一个{@link CircuitBreaker}<br>
+ * 请求失败或数据源已熔断时，这一批代码改由下一个支持其市场的数据源请求；熔断的数据源到时间后放行一个请求探测是否恢复。<br>
+ * 开启对冲(key_stocks_hedge)后，请求超过该数据源最近的p90耗时还没返回时，同一批代码再向下一个数据源请求，
+ * 先成功的为准并取消另一个；对冲请求数不超过普通请求数的key_stocks_hedge_budget%（默认10）
+ */
+public class FailoverQuoteProvider implements QuoteProvider {
+    private static final int WINDOW_SIZE = 20;
+    private static final int MIN_CALLS = 5;
+    private static final double MAX_ERROR_RATE = 0.5;
+    private static final long SLOW_MILLIS = 3000;
+    private static final long OPEN_MILLIS = 30_000;
+    private static final int DEFAULT_HEDGE_BUDGET_PERCENT = 10;
+    private static final ScheduledExecutorService HEDGE_TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "leeks-hedge");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final List<QuoteProvider> providers;
+    private final List<CircuitBreaker> breakers;
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong hedgeCount = new AtomicLong();
+    private final AtomicLong hedgeWinCount = new AtomicLong();
+
+    /**
+     * @param providers 数据源，按优先级排列
+     */
+    public FailoverQuoteProvider(QuoteProvider... providers) {
+        this.providers = Arrays.asList(providers);
+        this.breakers = new ArrayList<>(providers.length);
+        for (QuoteProvider provider : providers) {
+            breakers.add(new CircuitBreaker(provider.getName(), WINDOW_SIZE, MIN_CALLS, MAX_ERROR_RATE, SLOW_MILLIS, OPEN_MILLIS));
+        }
+    }
+
+    @Override
+    public String getName() {
+        return providers.stream().map(QuoteProvider::getName).collect(Collectors.joining("→"));
+    }
+
+    @Override
+    public Set<MarketSession> getMarkets() {
+        Set<MarketSession> markets = EnumSet.noneOf(MarketSession.class);
+        providers.forEach(provider -> markets.addAll(provider.getMarkets()));
+        return markets;
+    }
+
+    /**
+     * @return 各数据源中最小的，保证一批代码换任何数据源都不超限
+     */
+    @Override
+    public int getBatchSize() {
+        return providers.stream().mapToInt(QuoteProvider::getBatchSize).min().orElse(1);
+    }
+
+    @Override
+    public CompletableFuture<List<StockBean>> fetch(List<String> codes, Map<String, String[]> codeMap, Set<QuoteField> fields) {
+        return fetchFrom(0, codes, codeMap, fields, null);
+    }
+
+    private CompletableFuture<List<StockBean>> fetchFrom(int index, List<String> codes, Map<String, String[]> codeMap,
+                                                         Set<QuoteField> fields, Throwable lastError) {
+        for (int i = index; i < providers.size(); i++) {
+            QuoteProvider provider = providers.get(i);
+            CircuitBreaker breaker = breakers.get(i);
+            // 不支持的市场留给后面的数据源
+            List<String> supported = new ArrayList<>(codes.size());
+            List<String> unsupported = new ArrayList<>();
+            for (String code : codes) {
+                MarketSession market = MarketSession.of(code);
+                (market == null || provider.getMarkets().contains(market) ? supported : unsupported).add(code);
+            }
+            if (supported.isEmpty() || !breaker.allowRequest()) {
+                continue;
+            }
+            int next = i + 1;
+            CompletableFuture<List<StockBean>> result = hedge(i, supported, codeMap, fields).handle((beans, e) -> {
+                if (e != null) {
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    // 对冲请求已经试过下一个数据源，不再重复请求
+                    int resume = cause instanceof HedgeFailedException ? next + 1 : next;
+                    LogUtil.info("Leeks " + provider.getName() + "行情请求失败，切换数据源：" + cause.getMessage());
+                    // 这一批换下一个数据源
+                    return fetchFrom(resume, supported, codeMap, fields, cause);
+                }
+                return CompletableFuture.completedFuture(beans);
+            }).thenCompose(f -> f);
+            if (unsupported.isEmpty()) {
+                return result;
+            }
+            return merge(result, fetchFrom(next, unsupported, codeMap, fields, lastError));
+        }
+        return CompletableFuture.failedFuture(lastError != null ? lastError
+                : new IllegalStateException("没有可用的数据源：" + describeHealth()));
+    }
+
+    /**
+     * 请求一个数据源并记录到熔断器；被对冲取消的请求耗时不完整，不计入统计
+     */
+    private CompletableFuture<List<StockBean>> call(int index, List<String> codes, Map<String, String[]> codeMap,
+                                                    Set<QuoteField> fields) {
+        CircuitBreaker breaker = breakers.get(index);
+        long start = System.currentTimeMillis();
+        CompletableFuture<List<StockBean>> future;
+        try {
+            future = providers.get(index).fetch(codes, codeMap, fields);
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<List<StockBean>> request = future;
+        request.whenComplete((beans, e) -> {
+            if (request.isCancelled()) {
+                breaker.skip();
+            } else {
+                breaker.record(e == null, System.currentTimeMillis() - start);
+            }
+        });
+        return request;
+    }
+
+    /**
+     * 请求第index个数据源，超过其p90耗时未返回时向下一个数据源发出对冲请求<br>
+     * 是否发出对冲请求和原请求的结束在同一把锁下判断，原请求结束后不会再发出对冲请求，
+     * 已发出的对冲请求也一定能被看到并取消
+     *
+     * @return 两个请求都失败时以{@link HedgeFailedException}结束
+     */
+    private CompletableFuture<List<StockBean>> hedge(int index, List<String> codes, Map<String, String[]> codeMap,
+                                                     Set<QuoteField> fields) {
+        requestCount.incrementAndGet();
+        CompletableFuture<List<StockBean>> primary = call(index, codes, codeMap, fields);
+        int alternate = index + 1;
+        CircuitBreaker breaker = breakers.get(index);
+        if (!isHedgeEnabled() || alternate >= providers.size() || breaker.getCallCount() < MIN_CALLS
+                || !supportsAll(providers.get(alternate), codes)) {
+            return primary;
+        }
+        CompletableFuture<List<StockBean>> winner = new CompletableFuture<>();
+        HedgeState state = new HedgeState();
+        ScheduledFuture<?> timer = HEDGE_TIMER.schedule(() -> {
+            CompletableFuture<List<StockBean>> request;
+            synchronized (state) {
+                if (state.primaryDone || !tryAcquireHedge() || !breakers.get(alternate).allowRequest()) {
+                    return;
+                }
+                hedgeCount.incrementAndGet();
+                request = call(alternate, codes, codeMap, fields);
+                state.hedged = request;
+            }
+            request.whenComplete((beans, e) -> {
+                if (e == null) {
+                    if (winner.complete(beans)) {
+                        hedgeWinCount.incrementAndGet();
+                        primary.cancel(true);
+                    }
+                } else if (primary.isCompletedExceptionally()) {
+                    // 两个都失败
+                    winner.completeExceptionally(new HedgeFailedException(e));
+                }
+            });
+        }, breaker.percentile(0.9), TimeUnit.MILLISECONDS);
+        primary.whenComplete((beans, e) -> {
+            timer.cancel(false);
+            CompletableFuture<List<StockBean>> request;
+            synchronized (state) {
+                state.primaryDone = true;
+                request = state.hedged;
+            }
+            if (e == null) {
+                if (winner.complete(beans) && request != null) {
+                    request.cancel(true);
+                }
+            } else if (request == null) {
+                winner.completeExceptionally(e);
+            } else if (request.isCompletedExceptionally()) {
+                winner.completeExceptionally(new HedgeFailedException(e));
+            }
+        });
+        return winner;
+    }
+
+    /**
+     * 一次对冲中原请求是否结束、对冲请求是否发出，读写都要持有自身的锁
+     */
+    private static class HedgeState {
+        private boolean primaryDone;
+        private CompletableFuture<List<StockBean>> hedged;
+    }
+
+    /**
+     * 原请求和对冲请求都失败，下一个数据源已经请求过
+     */
+    private static class HedgeFailedException extends RuntimeException {
+        HedgeFailedException(Throwable cause) {
+            super(cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * 对冲预算：对冲请求数不超过普通请求数的一定比例
+     */
+    private synchronized boolean tryAcquireHedge() {
+        int percent = NumberUtils.toInt(PropertiesComponent.getInstance().getValue("key_stocks_hedge_budget"), DEFAULT_HEDGE_BUDGET_PERCENT);
+        return (hedgeCount.get() + 1) * 100 <= requestCount.get() * percent;
+    }
+
+    private static boolean isHedgeEnabled() {
+        return PropertiesComponent.getInstance().getBoolean("key_stocks_hedge");
+    }
+
+    private static boolean supportsAll(QuoteProvider provider, List<String> codes) {
+        for (String code : codes) {
+            MarketSession market = MarketSession.of(code);
+            if (market != null && !provider.getMarkets().contains(market)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 合并两部分代码的结果，一部分失败时仍返回另一部分，全部失败才失败
+     */
+    private static CompletableFuture<List<StockBean>> merge(CompletableFuture<List<StockBean>> first,
+                                                            CompletableFuture<List<StockBean>> second) {
+        return first.handle((a, e1) -> second.handle((b, e2) -> {
+            if (e1 != null && e2 != null) {
+                throw e1 instanceof CompletionException ? (CompletionException) e1 : new CompletionException(e1);
+            }
+            List<StockBean> beans = new ArrayList<>();
+            if (a != null) {
+                beans.addAll(a);
+            }
+            if (b != null) {
+                beans.addAll(b);
+            }
+            return beans;
+        })).thenCompose(f -> f);
+    }
+
+    /**
+     * @return 各数据源的健康度
+     */
+    @Override
+    public String describeHealth() {
+        String health = breakers.stream().map(CircuitBreaker::describe).collect(Collectors.joining("；"));
+        long hedges = hedgeCount.get();
+        if (hedges > 0) {
+            health += String.format("；对冲%d次，胜出%d次(%d%%)", hedges, hedgeWinCount.get(), hedgeWinCount.get() * 100 / hedges);
+        }
+        return health;
+    }
+
+    /**
+     * @return 熔断或探测中的数据源，如：新浪熔断；都正常时返回空字符串
+     */
+    public String describeDegraded() {
+        return breakers.stream()
+                .filter(breaker -> breaker.getState() != CircuitBreaker.State.CLOSED)
+                .map(breaker -> breaker.getName() + breaker.getState().getDesc())
+                .collect(Collectors.joining("，"));
+    }
+
+    /**
+     * @return 发出的对冲请求数
+     */
+    public long getHedgeCount() {
+        return hedgeCount.get();
+    }
+
+    /**
+     * @return 对冲请求先于原请求成功的次数
+     */
+    public long getHedgeWinCount() {
+        return hedgeWinCount.get();
+    }
+
+    public List<CircuitBreaker> getBreakers() {
+        return Collections.unmodifiableList(breakers);
+    }
+
+    @Override
+    public void close() {
+        providers.forEach(QuoteProvider::close);
+    }
+}
@@ -5,7 +5,6 @@ import com.intellij.ide.util.PropertiesComponent;
 import com.intellij.ui.JBColor;
 import com.intellij.ui.table.JBTable;
 import org.apache.commons.lang.StringUtils;
-import org.apache.commons.lang.math.NumberUtils;
 import utils.PinYinUtils;
 import utils.WindowUtils;
 
@@ -16,9 +15,18 @@ import javax.swing.table.TableRowSorter;
 import java.awt.*;
 import java.util.List;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
-public abstract class FundRefreshHandler extends DefaultTableModel {
+public abstract class FundRefreshHandler extends KeyedTableModel {
     private static String[] columnNames;
+    /**
+     * 按数值排序的列
+     */
+    private static final String SORTED_NUMERIC_COLUMNS = "估算净值,估算涨跌";
+    /**
+     * 各列是否存为{@link NumericCell}：按数值排序的列和按涨跌着色的列
+     */
+    private static boolean[] numericColumns;
     /**
      * 存放【编码】的位置，更新数据时用到
      */
@@ -39,6 +47,7 @@ public abstract class FundRefreshHandler extends DefaultTableModel {
         for (int i = 0; i < configStr.length; i++) {
             columnNames[i] = WindowUtils.remapPinYin(configStr[i]);
         }
+        numericColumns = NumericCell.flagColumns(columnNames, SORTED_NUMERIC_COLUMNS + ",收益率,收益");
     }
 
     {
@@ -71,13 +80,8 @@ public abstract class FundRefreshHandler extends DefaultTableModel {
             setColumnIdentifiers(PinYinUtils.toPinYin(columnNames));
         }
         TableRowSorter<DefaultTableModel> rowSorter = new TableRowSorter<>(this);
-        Comparator<Object> doubleComparator = (o1, o2) -> {
-            Double v1 = NumberUtils.toDouble(StringUtils.remove((String) o1, '%'));
-            Double v2 = NumberUtils.toDouble(StringUtils.remove((String) o2, '%'));
-            return v1.compareTo(v2);
-        };
-        Arrays.stream("估算净值,估算涨跌".split(",")).map(name -> WindowUtils.getColumnIndexByName(columnNames, name))
-                .filter(index -> index >= 0).forEach(index -> rowSorter.setComparator(index, doubleComparator));
+        Arrays.stream(SORTED_NUMERIC_COLUMNS.split(",")).map(name -> WindowUtils.getColumnIndexByName(columnNames, name))
+                .filter(index -> index >= 0).forEach(index -> rowSorter.setComparator(index, NumericCell.COMPARATOR));
         table.setRowSorter(rowSorter);
         columnColors(colorful);
     }
@@ -86,8 +90,9 @@ public abstract class FundRefreshHandler extends DefaultTableModel {
      * 从网络更新数据
      *
      * @param code
+     * @return 本次刷新结束时完成，定时任务据此避免重叠执行
      */
-    public abstract void handle(List<String> code);
+    public abstract CompletableFuture<Void> handle(List<String> code);
 
     /**
      * 设置表格条纹（斑马线）
@@ -123,7 +128,7 @@ public abstract class FundRefreshHandler extends DefaultTableModel {
         DefaultTableCellRenderer cellRenderer = new DefaultTableCellRenderer() {
             @Override
             public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int column) {
-                double temp = NumberUtils.toDouble(StringUtils.remove(Objects.toString(value), "%"));
+                double temp = NumericCell.valueOf(value);
                 if (temp > 0) {
                     if (colorful) {
                         setForeground(JBColor.RED);
@@ -163,55 +168,8 @@ public abstract class FundRefreshHandler extends DefaultTableModel {
         if (convertData == null) {
             return;
         }
-        // 获取行
-        int index = findRowIndex(codeColumnIndex, bean.getFundCode());
-        if (index >= 0) {
-            updateRow(index, convertData);
-        } else {
-            addRow(convertData);
-        }
-    }
-
-    /**
-     * 参考源码{@link DefaultTableModel#setValueAt}，此为直接更新行，提高点效率
-     *
-     * @param rowIndex
-     * @param rowData
-     */
-    protected void updateRow(int rowIndex, Vector<Object> rowData) {
-        dataVector.set(rowIndex, rowData);
-        // 通知listeners刷新ui
-        fireTableRowsUpdated(rowIndex, rowIndex);
-    }
-
-    /**
-     * 参考源码{@link DefaultTableModel#removeRow(int)}，此为直接清除全部行，提高点效率
-     */
-    public void clearRow() {
-        int size = dataVector.size();
-        if (0 < size) {
-            dataVector.clear();
-            // 通知listeners刷新ui
-            fireTableRowsDeleted(0, size - 1);
-        }
-    }
-
-    /**
-     * 查找列项中的valueName所在的行
-     *
-     * @param columnIndex 列号
-     * @param value       值
-     * @return 如果不存在返回-1
-     */
-    protected int findRowIndex(int columnIndex, String value) {
-        int rowCount = getRowCount();
-        for (int rowIndex = 0; rowIndex < rowCount; rowIndex++) {
-            Object valueAt = getValueAt(rowIndex, columnIndex);
-            if (StringUtils.equalsIgnoreCase(value, valueAt.toString())) {
-                return rowIndex;
-            }
-        }
-        return -1;
+        // 交给EDT批量更新
+        enqueueRow(bean.getFundCode(), convertData);
     }
 
     private Vector<Object> convertData(FundBean fundBean) {
@@ -221,13 +179,14 @@ public abstract class FundRefreshHandler extends DefaultTableModel {
         // 与columnNames中的元素保持一致
         Vector<Object> v = new Vector<Object>(columnNames.length);
         for (int i = 0; i < columnNames.length; i++) {
-            v.addElement(fundBean.getValueByColumn(columnNames[i], colorful));
+            String value = fundBean.getValueByColumn(columnNames[i], colorful);
+            v.addElement(numericColumns[i] ? NumericCell.of(value) : value);
         }
         return v;
     }
 
     @Override
-    public boolean isCellEditable(int row, int column) {
-        return false;
+    protected int getKeyColumnIndex() {
+        return codeColumnIndex;
     }
 }
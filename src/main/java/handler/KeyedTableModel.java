@@ -0,0 +1,324 @@
+package handler;
+
+import org.apache.commons.lang.StringUtils;
+
+import javax.swing.*;
+import javax.swing.event.TableModelEvent;
+import javax.swing.table.DefaultTableModel;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按【编码】列索引行号的表格模型，股票、基金、货币表格共用<br>
+ * 维护 编码(小写) -> 行号 的映射，刷新时按编码定位行是O(1)，不再逐行equalsIgnoreCase。
+ * <p>
+ * 映射通过{@link #fireTableChanged}跟随表格的变化：末尾追加行时增量登记，删除、插入到中间、移动、整表变化时标记失效，
+ * 下次查找时重建。查找结果还会和实际单元格比对一次，防止有绕过事件的修改。
+ * <p>
+ * 各handler在自己的线程里解析行情后通过{@link #enqueueRow}提交，EDT上单线程批量应用，见{@link #drainPendingRows}。
+ */
+public abstract class KeyedTableModel extends DefaultTableModel {
+    private final Map<String, Integer> rowIndexMap = new ConcurrentHashMap<>();
+    private volatile boolean rowIndexValid = true;
+    private final AtomicLong suppressedRowCount = new AtomicLong();
+    private final AtomicLong notifiedRowCount = new AtomicLong();
+    private final Queue<PendingRow> pendingRows = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+
+    /**
+     * @return 【编码】所在列
+     */
+    protected abstract int getKeyColumnIndex();
+
+    /**
+     * 提交一行数据，可在任意线程调用<br>
+     * 数据先放入队列，由EDT上唯一的消费者取出，同一批新增的行合并为一次插入事件，
+     * 变化的行按连续的行号合并为更新事件，没有变化的行不发事件；表格的dataVector只在EDT上修改
+     *
+     * @param key     编码
+     * @param rowData 与列顺序一致的行数据
+     */
+    protected void enqueueRow(String key, Vector<Object> rowData) {
+        pendingRows.offer(new PendingRow(key, rowData));
+        if (drainScheduled.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(this::drainPendingRows);
+        }
+    }
+
+    /**
+     * 在EDT上取出队列里的全部行，一次性应用到表格<br>
+     * 先更新已有行并发出更新事件，再追加新行并发出插入事件，保证每个事件发出时listeners看到的行数都已通知过。
+     * 更新事件只覆盖变化的行：行号连续的合并为一个事件，只有一个单元格变化的行发单元格事件，
+     * 不会因为首尾两行变化而重绘中间没变的行
+     */
+    private void drainPendingRows() {
+        // 先复位，之后入队的行会再安排一次
+        drainScheduled.set(false);
+        int keyColumn = getKeyColumnIndex();
+        // 本批新出现的编码，同一编码多次提交时保留最后一次
+        Map<String, Vector<Object>> insertedRows = null;
+        // 变化的行 -> 唯一变化的列，多个列变化时为ALL_COLUMNS
+        TreeMap<Integer, Integer> updatedRows = null;
+        PendingRow pending;
+        while ((pending = pendingRows.poll()) != null) {
+            String key = normalizeKey(pending.key);
+            if (insertedRows != null && insertedRows.containsKey(key)) {
+                insertedRows.put(key, pending.rowData);
+                continue;
+            }
+            int rowIndex = findRowIndex(keyColumn, pending.key);
+            if (rowIndex < 0) {
+                if (insertedRows == null) {
+                    insertedRows = new LinkedHashMap<>();
+                }
+                insertedRows.put(key, pending.rowData);
+                continue;
+            }
+            int[] changedColumns = new int[pending.rowData.size()];
+            int changedCount = applyRow(rowIndex, pending.rowData, changedColumns);
+            if (changedCount == 0) {
+                if (updatedRows == null || !updatedRows.containsKey(rowIndex)) {
+                    suppressedRowCount.incrementAndGet();
+                }
+                continue;
+            }
+            if (updatedRows == null) {
+                updatedRows = new TreeMap<>();
+            }
+            int column = changedCount == 1 ? changedColumns[0] : TableModelEvent.ALL_COLUMNS;
+            // 同一行本批提交了多次，变化的列不同时整行更新
+            updatedRows.merge(rowIndex, column, (a, b) -> a.equals(b) ? a : TableModelEvent.ALL_COLUMNS);
+        }
+        // 通知listeners刷新ui
+        if (updatedRows != null) {
+            fireRowsUpdated(updatedRows);
+        }
+        if (insertedRows != null) {
+            int firstInserted = dataVector.size();
+            dataVector.addAll(insertedRows.values());
+            notifiedRowCount.addAndGet(insertedRows.size());
+            fireTableRowsInserted(firstInserted, dataVector.size() - 1);
+        }
+    }
+
+    /**
+     * 按行号连续的区间发出更新事件，单独一行且只有一个单元格变化时发单元格事件
+     */
+    private void fireRowsUpdated(TreeMap<Integer, Integer> updatedRows) {
+        notifiedRowCount.addAndGet(updatedRows.size());
+        int first = -1;
+        int last = -1;
+        int column = TableModelEvent.ALL_COLUMNS;
+        for (Map.Entry<Integer, Integer> entry : updatedRows.entrySet()) {
+            int row = entry.getKey();
+            if (first >= 0 && row == last + 1) {
+                last = row;
+                continue;
+            }
+            if (first >= 0) {
+                fireRowsUpdated(first, last, column);
+            }
+            first = row;
+            last = row;
+            column = entry.getValue();
+        }
+        fireRowsUpdated(first, last, column);
+    }
+
+    private void fireRowsUpdated(int first, int last, int column) {
+        if (first == last && column != TableModelEvent.ALL_COLUMNS) {
+            fireTableCellUpdated(first, column);
+        } else {
+            fireTableRowsUpdated(first, last);
+        }
+    }
+
+    /**
+     * 把rowData写入已有行，只改变化的单元格
+     *
+     * @return 变化的单元格数，列下标写入changedColumns；列数不同而整行替换时返回-1
+     */
+    private int applyRow(int rowIndex, Vector<Object> rowData, int[] changedColumns) {
+        @SuppressWarnings("unchecked")
+        Vector<Object> oldRow = (Vector<Object>) dataVector.get(rowIndex);
+        int size = rowData.size();
+        if (oldRow == null || oldRow.size() != size) {
+            dataVector.set(rowIndex, rowData);
+            return -1;
+        }
+        int changedCount = 0;
+        for (int column = 0; column < size; column++) {
+            Object value = rowData.get(column);
+            if (!Objects.equals(oldRow.get(column), value)) {
+                oldRow.set(column, value);
+                changedColumns[changedCount++] = column;
+            }
+        }
+        return changedCount;
+    }
+
+    /**
+     * @return 提交后内容没有变化、没有参与任何事件的行数
+     */
+    public long getSuppressedRowCount() {
+        return suppressedRowCount.get();
+    }
+
+    /**
+     * 与{@link #getSuppressedRowCount()}同样按行计数，两者之和为提交的行数（同一批重复提交的编码只算一次），
+     * 原来每提交一行就发一次事件，二者的比例即省掉的事件
+     *
+     * @return 内容变化或新增、包含在表格事件里的行数
+     */
+    public long getNotifiedRowCount() {
+        return notifiedRowCount.get();
+    }
+
+    /**
+     * 参考源码{@link DefaultTableModel#removeRow(int)}，此为直接清除全部行，提高点效率
+     */
+    public void clearRow() {
+        // 丢弃还没应用的行，避免清空后又被加回来
+        pendingRows.clear();
+        int size = dataVector.size();
+        if (0 < size) {
+            dataVector.clear();
+            // 通知listeners刷新ui
+            fireTableRowsDeleted(0, size - 1);
+        }
+    }
+
+    /**
+     * 查找列项中的valueName所在的行
+     *
+     * @param columnIndex 列号
+     * @param value       值
+     * @return 如果不存在返回-1
+     */
+    protected int findRowIndex(int columnIndex, String value) {
+        if (columnIndex != getKeyColumnIndex()) {
+            return scanRowIndex(columnIndex, value);
+        }
+        if (value == null) {
+            return -1;
+        }
+        String key = normalizeKey(value);
+        if (!rowIndexValid) {
+            rebuildRowIndex();
+        }
+        Integer rowIndex = rowIndexMap.get(key);
+        if (rowIndex == null || isRowKey(rowIndex, key)) {
+            return rowIndex == null ? -1 : rowIndex;
+        }
+        // 映射已过期，重建后再查一次
+        rebuildRowIndex();
+        rowIndex = rowIndexMap.get(key);
+        return rowIndex == null ? -1 : rowIndex;
+    }
+
+    @Override
+    public void fireTableChanged(TableModelEvent e) {
+        updateRowIndex(e);
+        super.fireTableChanged(e);
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return false;
+    }
+
+    private void updateRowIndex(TableModelEvent e) {
+        int firstRow = e.getFirstRow();
+        int lastRow = e.getLastRow();
+        int rowCount = getRowCount();
+        if (firstRow == TableModelEvent.HEADER_ROW || lastRow == Integer.MAX_VALUE) {
+            // 表结构或整表数据变化
+            rowIndexValid = false;
+            return;
+        }
+        switch (e.getType()) {
+            case TableModelEvent.INSERT:
+                if (lastRow == rowCount - 1) {
+                    // 末尾追加，增量登记
+                    indexRows(firstRow, lastRow);
+                } else {
+                    rowIndexValid = false;
+                }
+                break;
+            case TableModelEvent.DELETE:
+                if (rowCount == 0) {
+                    rowIndexMap.clear();
+                    rowIndexValid = true;
+                } else {
+                    rowIndexValid = false;
+                }
+                break;
+            default:
+                // 行内容更新，编码一般不变；若编码变了，旧映射会在查找时被校验出来
+                int column = e.getColumn();
+                if (column == TableModelEvent.ALL_COLUMNS || column == getKeyColumnIndex()) {
+                    indexRows(firstRow, Math.min(lastRow, rowCount - 1));
+                }
+                break;
+        }
+    }
+
+    private void indexRows(int firstRow, int lastRow) {
+        int keyColumn = getKeyColumnIndex();
+        for (int row = firstRow; row <= lastRow; row++) {
+            Object value = getValueAt(row, keyColumn);
+            if (value != null) {
+                // 编码重复时保留第一行，与逐行查找的结果一致
+                rowIndexMap.merge(normalizeKey(value.toString()), row, Math::min);
+            }
+        }
+    }
+
+    private synchronized void rebuildRowIndex() {
+        rowIndexMap.clear();
+        rowIndexValid = true;
+        indexRows(0, getRowCount() - 1);
+    }
+
+    private boolean isRowKey(int rowIndex, String key) {
+        if (rowIndex >= getRowCount()) {
+            return false;
+        }
+        Object value = getValueAt(rowIndex, getKeyColumnIndex());
+        return value != null && key.equals(normalizeKey(value.toString()));
+    }
+
+    private int scanRowIndex(int columnIndex, String value) {
+        int rowCount = getRowCount();
+        for (int rowIndex = 0; rowIndex < rowCount; rowIndex++) {
+            Object valueAt = getValueAt(rowIndex, columnIndex);
+            if (StringUtils.equalsIgnoreCase(value, valueAt.toString())) {
+                return rowIndex;
+            }
+        }
+        return -1;
+    }
+
+    private static String normalizeKey(String code) {
+        return code.toLowerCase(Locale.ROOT);
+    }
+
+    private static final class PendingRow {
+        final String key;
+        final Vector<Object> rowData;
+
+        PendingRow(String key, Vector<Object> rowData) {
+            this.key = key;
+            this.rowData = rowData;
+        }
+    }
+}
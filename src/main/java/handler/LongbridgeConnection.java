@@ -0,0 +1,355 @@
+package handler;
+
+import com.intellij.ide.util.PropertiesComponent;
+import com.longport.Config;
+import com.longport.ConfigBuilder;
+import com.longport.quote.QuoteContext;
+import org.apache.commons.lang.StringUtils;
+import utils.LogUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 长桥QuoteContext的连接管理<br>
+ * <ul>
+ *     <li>按需建立连接，key_longbridge_*配置变化时关闭旧连接重建</li>
+ *     <li>调用失败后关闭发出调用的那个连接，按1s、2s、4s...最长60s退避，退避期内不再尝试；已被替换的旧连接上的失败只计数</li>
+ *     <li>建立连接在锁外进行，并发的调用者共用同一次尝试</li>
+ *     <li>{@link #close()}关闭连接，停止刷新时调用</li>
+ * </ul>
+ * 线程安全
+ */
+class LongbridgeConnection {
+    static final long CALL_TIMEOUT_SECONDS = 10;
+    private static final long INITIAL_BACKOFF_MILLIS = 1000;
+    private static final long MAX_BACKOFF_MILLIS = 60_000;
+
+    public enum State {
+        /**
+         * 未连接（未配置密钥或尚未使用）
+         */
+        IDLE("未连接"),
+        CONNECTED("已连接"),
+        /**
+         * 连接失败，等待退避结束后重连
+         */
+        RECONNECTING("重连中"),
+        CLOSED("已关闭");
+
+        private final String desc;
+
+        State(String desc) {
+            this.desc = desc;
+        }
+
+        public String getDesc() {
+            return desc;
+        }
+    }
+
+    /**
+     * 按密钥建立连接，需要随连接一起关闭的资源（如Config）交给第二个参数
+     */
+    interface Connector {
+        CompletableFuture<QuoteContext> connect(String[] credentials, Consumer<AutoCloseable> resources) throws Exception;
+    }
+
+    private final Connector connector;
+    private final Supplier<String[]> credentialsSupplier;
+    /**
+     * 每次新建连接后回调，用于设置推送回调、重置订阅
+     */
+    private final Consumer<QuoteContext> onConnect;
+
+    private QuoteContext context;
+    private List<AutoCloseable> resources = Collections.emptyList();
+    private String[] credentials;
+    /**
+     * 进行中的建立连接，其他调用者等待同一次结果；close或密钥变更时作废
+     */
+    private CompletableFuture<QuoteContext> connecting;
+    private String[] connectingCredentials;
+    private volatile State state = State.IDLE;
+    private int failureStreak;
+    private long retryAt;
+    private volatile String lastError;
+    private final AtomicLong errorCount = new AtomicLong();
+    private final AtomicLong connectCount = new AtomicLong();
+
+    LongbridgeConnection(Consumer<QuoteContext> onConnect) {
+        this(LongbridgeConnection::connectSdk, LongbridgeConnection::readCredentials, onConnect);
+    }
+
+    LongbridgeConnection(Connector connector, Supplier<String[]> credentialsSupplier, Consumer<QuoteContext> onConnect) {
+        this.connector = connector;
+        this.credentialsSupplier = credentialsSupplier;
+        this.onConnect = onConnect;
+    }
+
+    /**
+     * 取得可用的连接，必要时新建或重建<br>
+     * 建立连接时不持有锁，最多等待{@link #CALL_TIMEOUT_SECONDS}秒，期间{@link #close()}和其他调用不会被阻塞
+     *
+     * @return 未配置密钥、处于退避期或连接失败时返回null
+     */
+    QuoteContext get() {
+        String[] current = credentialsSupplier.get();
+        CompletableFuture<QuoteContext> attempt;
+        boolean owner = false;
+        synchronized (this) {
+            if (current == null) {
+                abandonConnecting();
+                closeContext();
+                state = State.IDLE;
+                return null;
+            }
+            if (context != null && !Arrays.equals(current, credentials)) {
+                // 密钥变了，旧连接作废
+                LogUtil.info("Leeks 长桥配置已变更，重建连接");
+                closeContext();
+                failureStreak = 0;
+                retryAt = 0;
+            }
+            if (context != null) {
+                return context;
+            }
+            if (connecting != null && !Arrays.equals(current, connectingCredentials)) {
+                abandonConnecting();
+            }
+            if (connecting == null) {
+                if (System.currentTimeMillis() < retryAt) {
+                    return null;
+                }
+                connecting = new CompletableFuture<>();
+                connectingCredentials = current;
+                owner = true;
+            }
+            attempt = connecting;
+        }
+        if (owner) {
+            connect(attempt, current);
+        }
+        try {
+            return attempt.get(CALL_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            synchronized (this) {
+                if (connecting == attempt) {
+                    // 连接一直没有建立，作废这次尝试，之后才返回的连接会被关闭
+                    abandonConnecting();
+                    onFailure(e);
+                }
+            }
+            return null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * 发起连接，不等待结果；连接建立后如果这次尝试没有被作废则启用
+     */
+    private void connect(CompletableFuture<QuoteContext> attempt, String[] current) {
+        List<AutoCloseable> created = new ArrayList<>();
+        CompletableFuture<QuoteContext> future;
+        try {
+            future = connector.connect(current, created::add);
+        } catch (Exception e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        future.whenComplete((quoteContext, e) -> {
+            Throwable error = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (error == null && quoteContext == null) {
+                error = new IllegalStateException("QuoteContext为空");
+            }
+            synchronized (this) {
+                if (connecting != attempt) {
+                    // 等待期间close、密钥变更或超时，丢弃这个连接
+                    closeQuietly(quoteContext);
+                    created.forEach(LongbridgeConnection::closeQuietly);
+                    return;
+                }
+                connecting = null;
+                connectingCredentials = null;
+                if (error != null) {
+                    closeQuietly(quoteContext);
+                    created.forEach(LongbridgeConnection::closeQuietly);
+                    onFailure(error);
+                    attempt.complete(null);
+                    return;
+                }
+                context = quoteContext;
+                resources = created;
+                credentials = current;
+                connectCount.incrementAndGet();
+                onConnect.accept(quoteContext);
+                state = State.CONNECTED;
+            }
+            attempt.complete(quoteContext);
+        });
+    }
+
+    /**
+     * @return 当前连接，没有时返回null，不会新建
+     */
+    synchronized QuoteContext current() {
+        return context;
+    }
+
+    /**
+     * 等待SDK调用的结果，失败时关闭发出调用的连接并进入退避
+     *
+     * @param quoteContext 发出调用的连接，已被替换时只记录错误，不影响新连接
+     */
+    <T> T await(QuoteContext quoteContext, CompletableFuture<T> future) throws Exception {
+        try {
+            T result = future.get(CALL_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            onSuccess(quoteContext);
+            return result;
+        } catch (ExecutionException | TimeoutException e) {
+            onCallFailure(quoteContext, e instanceof ExecutionException && e.getCause() != null ? e.getCause() : e);
+            throw e;
+        }
+    }
+
+    /**
+     * {@link #await(QuoteContext, CompletableFuture)}的异步版本，超时或失败时同样处理
+     */
+    <T> CompletableFuture<T> track(QuoteContext quoteContext, CompletableFuture<T> future) {
+        return future.orTimeout(CALL_TIMEOUT_SECONDS, TimeUnit.SECONDS).whenComplete((result, e) -> {
+            if (e == null) {
+                onSuccess(quoteContext);
+            } else {
+                onCallFailure(quoteContext, e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+            }
+        });
+    }
+
+    synchronized void close() {
+        abandonConnecting();
+        closeContext();
+        state = State.CLOSED;
+    }
+
+    State getState() {
+        return state;
+    }
+
+    long getErrorCount() {
+        return errorCount.get();
+    }
+
+    /**
+     * @return 成功建立连接的次数，大于1说明发生过重连
+     */
+    long getConnectCount() {
+        return connectCount.get();
+    }
+
+    String getLastError() {
+        return lastError;
+    }
+
+    /**
+     * 连接状态描述，用于界面提示
+     */
+    String describe() {
+        StringBuilder builder = new StringBuilder("长桥连接：").append(state.getDesc());
+        if (errorCount.get() > 0) {
+            builder.append("，错误").append(errorCount.get()).append("次");
+            if (lastError != null) {
+                builder.append("（").append(lastError).append("）");
+            }
+        }
+        return builder.toString();
+    }
+
+    private synchronized void onSuccess(QuoteContext quoteContext) {
+        if (quoteContext == context && (failureStreak > 0 || state != State.CONNECTED)) {
+            failureStreak = 0;
+            retryAt = 0;
+            state = State.CONNECTED;
+        }
+    }
+
+    private synchronized void onCallFailure(QuoteContext quoteContext, Throwable e) {
+        if (quoteContext != context) {
+            // 旧连接上的调用，当前连接已重建或已关闭
+            recordError(e);
+            return;
+        }
+        closeContext();
+        onFailure(e);
+    }
+
+    private void recordError(Throwable e) {
+        errorCount.incrementAndGet();
+        lastError = e.getClass().getSimpleName() + (e.getMessage() == null ? "" : ": " + e.getMessage());
+    }
+
+    private void onFailure(Throwable e) {
+        recordError(e);
+        long backoff = Math.min(MAX_BACKOFF_MILLIS, INITIAL_BACKOFF_MILLIS << Math.min(failureStreak, 16));
+        failureStreak++;
+        retryAt = System.currentTimeMillis() + backoff;
+        if (state != State.RECONNECTING) {
+            LogUtil.info("Leeks 长桥连接异常，" + backoff / 1000 + "秒后重连：" + lastError);
+        }
+        state = State.RECONNECTING;
+    }
+
+    private void abandonConnecting() {
+        if (connecting != null) {
+            connecting.complete(null);
+            connecting = null;
+            connectingCredentials = null;
+        }
+    }
+
+    private void closeContext() {
+        closeQuietly(context);
+        context = null;
+        resources.forEach(LongbridgeConnection::closeQuietly);
+        resources = Collections.emptyList();
+        credentials = null;
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                // 关闭失败不影响重建
+            }
+        }
+    }
+
+    private static CompletableFuture<QuoteContext> connectSdk(String[] credentials, Consumer<AutoCloseable> resources) throws Exception {
+        ConfigBuilder configBuilder = new ConfigBuilder(credentials[0], credentials[1], credentials[2]);
+        configBuilder.httpUrl("https://openapi.longportapp.cn");
+        Config config = configBuilder.build();
+        resources.accept(config);
+        return QuoteContext.create(config);
+    }
+
+    private static String[] readCredentials() {
+        PropertiesComponent instance = PropertiesComponent.getInstance();
+        String appKey = instance.getValue("key_longbridge_app_key", "");
+        String appSecret = instance.getValue("key_longbridge_app_secret", "");
+        String accessToken = instance.getValue("key_longbridge_access_token", "");
+        if (StringUtils.isEmpty(appKey) || StringUtils.isEmpty(appSecret) || StringUtils.isEmpty(accessToken)) {
+            return null;
+        }
+        return new String[]{appKey, appSecret, accessToken};
+    }
+}
@@ -0,0 +1,346 @@
+package handler;
+
+import bean.StockBean;
+import com.google.common.collect.Lists;
+import com.longport.quote.PrePostQuote;
+import com.longport.quote.QuoteContext;
+import com.longport.quote.SecurityQuote;
+import com.longport.quote.SecurityStaticInfo;
+import utils.MarketSession;
+import utils.ScaledDecimal;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * 长桥OpenAPI行情，港股美股实时，也支持沪深<br>
+ * 持有长桥连接和证券名称缓存，推送模式的订阅由{@link LongbridgeStockHandler}管理
+ */
+public class LongbridgeQuoteProvider implements QuoteProvider {
+    /**
+     * 长桥单次行情请求最多500个代码
+     */
+    private static final int DEFAULT_BATCH_SIZE = 500;
+    /**
+     * 证券名称缓存，各实例共用
+     */
+    private static final StaticInfoCache staticInfoCache = new StaticInfoCache("key_longbridge_static_info", StaticInfoCache.DEFAULT_TTL);
+    private final LongbridgeConnection connection;
+
+    public LongbridgeQuoteProvider() {
+        this(quoteContext -> {
+        });
+    }
+
+    /**
+     * @param onConnect 每次新建连接后回调
+     */
+    LongbridgeQuoteProvider(Consumer<QuoteContext> onConnect) {
+        this.connection = new LongbridgeConnection(onConnect);
+    }
+
+    @Override
+    public String getName() {
+        return "长桥";
+    }
+
+    @Override
+    public Set<MarketSession> getMarkets() {
+        return EnumSet.of(MarketSession.CN, MarketSession.HK, MarketSession.US);
+    }
+
+    @Override
+    public int getBatchSize() {
+        return StockRefreshHandler.getBatchSize("key_longbridge_batch_size", DEFAULT_BATCH_SIZE);
+    }
+
+    @Override
+    public CompletableFuture<List<StockBean>> fetch(List<String> codes, Map<String, String[]> codeMap, Set<QuoteField> fields) {
+        List<String> symbols = new ArrayList<>(codes.size());
+        for (String code : codes) {
+            String symbol = convertToLongbridgeCode(code);
+            if (symbol != null) {
+                symbols.add(symbol);
+            }
+        }
+        if (symbols.isEmpty()) {
+            return CompletableFuture.completedFuture(Collections.emptyList());
+        }
+        QuoteContext quoteContext = connection.get();
+        if (quoteContext == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException(connection.describe()));
+        }
+        String[] symbolStrings = symbols.toArray(new String[0]);
+        // 静态信息只请求缓存中没有或已过期的，不显示名称时不请求
+        CompletableFuture<Void> staticInfoFuture = fields.contains(QuoteField.NAME)
+                ? refreshStaticInfo(quoteContext, symbolStrings) : CompletableFuture.completedFuture(null);
+        return connection.track(quoteContext, quoteContext.getQuote(symbolStrings))
+                .thenCombine(staticInfoFuture, (quotes, v) -> {
+                    List<StockBean> beans = new ArrayList<>(quotes.length);
+                    for (SecurityQuote quote : quotes) {
+                        StockBean bean = parseQuote(quote, codeMap, fields);
+                        if (bean != null) {
+                            beans.add(bean);
+                        }
+                    }
+                    return beans;
+                });
+    }
+
+    @Override
+    public void close() {
+        connection.close();
+    }
+
+    LongbridgeConnection getConnection() {
+        return connection;
+    }
+
+    /**
+     * @return 缓存的证券名称，没有时返回null
+     */
+    String getCachedName(String code) {
+        String symbol = convertToLongbridgeCode(code);
+        return symbol == null ? null : staticInfoCache.getName(symbol);
+    }
+
+    /**
+     * 将股票代码转换为长桥格式
+     * 例如: hk00700 -> 700.HK, usAAPL -> AAPL.US, sh600519 -> 600519.SH
+     */
+    static String convertToLongbridgeCode(String code) {
+        if (code == null || code.length() < 3) {
+            return null;
+        }
+
+        String lowerCode = code.toLowerCase();
+        if (lowerCode.startsWith("hk")) {
+            // 港股: hk00700 -> 700.HK (去掉前导0)
+            String stockCode = code.substring(2);
+            // 去掉前导0
+            while (stockCode.startsWith("0") && stockCode.length() > 1) {
+                stockCode = stockCode.substring(1);
+            }
+            return stockCode + ".HK";
+        } else if (lowerCode.startsWith("us")) {
+            // 美股: usAAPL -> AAPL.US
+            return code.substring(2).toUpperCase() + ".US";
+        } else if (lowerCode.startsWith("sh")) {
+            // 上海: sh600519 -> 600519.SH
+            return code.substring(2) + ".SH";
+        } else if (lowerCode.startsWith("sz")) {
+            // 深圳: sz000001 -> 000001.SZ
+            return code.substring(2) + ".SZ";
+        }
+        return null;
+    }
+
+    /**
+     * 将长桥格式转回原始格式
+     */
+    static String convertFromLongbridgeCode(String lbCode) {
+        if (lbCode == null || !lbCode.contains(".")) {
+            return lbCode;
+        }
+
+        String[] parts = lbCode.split("\\.");
+        if (parts.length != 2) {
+            return lbCode;
+        }
+
+        String stockCode = parts[0];
+        String market = parts[1].toUpperCase();
+
+        switch (market) {
+            case "HK":
+                // 补齐到5位
+                while (stockCode.length() < 5) {
+                    stockCode = "0" + stockCode;
+                }
+                return "hk" + stockCode;
+            case "US":
+                return "us" + stockCode;
+            case "SH":
+                return "sh" + stockCode;
+            case "SZ":
+                return "sz" + stockCode;
+            default:
+                return lbCode;
+        }
+    }
+
+    /**
+     * 请求缓存中没有或已过期的证券名称，失败时沿用旧名称<br>
+     * 与行情请求一样由connection计时和记录错误，超时不会让调用者一直等待
+     */
+    CompletableFuture<Void> refreshStaticInfo(QuoteContext quoteContext, String[] symbols) {
+        List<String> missing = staticInfoCache.missing(symbols);
+        if (missing.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (List<String> batch : Lists.partition(missing, getBatchSize())) {
+            futures.add(connection.track(quoteContext, quoteContext.getStaticInfo(batch.toArray(new String[0])))
+                    .thenAccept(staticInfos -> {
+                        Map<String, String> names = new HashMap<>();
+                        for (SecurityStaticInfo info : staticInfos) {
+                            names.put(info.getSymbol(), info.getNameCn());
+                        }
+                        staticInfoCache.putAll(names);
+                    })
+                    .exceptionally(e -> null));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]));
+    }
+
+    /**
+     * 按单次请求上限分批，所有批次同时发出，任一批次失败或超时即整体失败
+     */
+    CompletableFuture<List<SecurityQuote>> requestQuotes(QuoteContext quoteContext, String[] symbols) {
+        List<CompletableFuture<SecurityQuote[]>> futures = new ArrayList<>();
+        for (List<String> batch : Lists.partition(Arrays.asList(symbols), getBatchSize())) {
+            futures.add(connection.track(quoteContext, quoteContext.getQuote(batch.toArray(new String[0]))));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).thenApply(v -> {
+            List<SecurityQuote> quotes = new ArrayList<>();
+            for (CompletableFuture<SecurityQuote[]> future : futures) {
+                Collections.addAll(quotes, future.join());
+            }
+            return quotes;
+        });
+    }
+
+    /**
+     * @return 解析失败时返回null
+     */
+    StockBean parseQuote(SecurityQuote quote, Map<String, String[]> codeMap, Set<QuoteField> fields) {
+        try {
+            String lastDone = quote.getLastDone() != null ? quote.getLastDone().toString() : "0";
+            String high = quote.getHigh() != null ? quote.getHigh().toString() : lastDone;
+            String low = quote.getLow() != null ? quote.getLow().toString() : lastDone;
+            return buildBean(quote, lastDone, high, low, codeMap, fields);
+        } catch (Exception e) {
+            // 静默处理异常
+            return null;
+        }
+    }
+
+    /**
+     * @param quote    行情快照，提供昨收和盘前/盘后/夜盘价格
+     * @param lastDone 当前价格
+     * @param high     最高价
+     * @param low      最低价
+     * @param fields   表格需要的字段，不显示盘前盘后时不解析
+     */
+    StockBean buildBean(SecurityQuote quote, String lastDone, String high, String low, Map<String, String[]> codeMap,
+                        Set<QuoteField> fields) {
+        String symbol = quote.getSymbol();
+        String originalCode = convertFromLongbridgeCode(symbol);
+
+        StockBean bean = new StockBean(originalCode, codeMap);
+
+        // 从静态信息缓存中获取股票名称
+        String name = staticInfoCache.getName(symbol);
+        if (name != null && !name.isEmpty()) {
+            bean.setName(name);
+        } else {
+            bean.setName(symbol);
+        }
+
+        // 当前价格
+        bean.setNow(lastDone);
+
+        // 昨收价
+        String prevClose = "0";
+        if (quote.getPrevClose() != null) {
+            prevClose = quote.getPrevClose().toString();
+        }
+
+        // 计算涨跌和涨跌幅
+        ScaledDecimal yesterday = ScaledDecimal.parse(prevClose);
+        if (yesterday == null || yesterday.signum() != 0) {
+            bean.setChange(ProfitCalculator.change(lastDone, prevClose, 3));
+            bean.setChangePercent(ProfitCalculator.changePercent(lastDone, prevClose));
+        } else {
+            bean.setChange("0");
+            bean.setChangePercent("0");
+        }
+
+        // 最高价、最低价
+        bean.setMax(high);
+        bean.setMin(low);
+
+        // 解析盘前/盘后/夜盘价格
+        if (fields.contains(QuoteField.EXTENDED)) {
+            parsePrePostPrice(quote, bean);
+        }
+
+        // 更新时间 - 使用当前刷新时间，格式与其他handler保持一致
+        // StockBean.getValueByColumn 会使用 substring(8) 截取时间部分
+        java.time.LocalDateTime currentTime = java.time.LocalDateTime.now();
+        String timeStr = currentTime.format(java.time.format.DateTimeFormatter.ofPattern("yyyyMMddHHmmss"));
+        bean.setTime(timeStr);
+
+        // 计算收益
+        ProfitCalculator.fillIncome(bean, lastDone);
+
+        return bean;
+    }
+
+    /**
+     * 解析盘前/盘后/夜盘价格
+     * 分别设置三个独立的价格字段
+     */
+    private void parsePrePostPrice(SecurityQuote quote, StockBean bean) {
+        try {
+            // 解析盘后价格
+            PrePostQuote postMarket = quote.getPostMarketQuote();
+            if (postMarket != null && postMarket.getLastDone() != null) {
+                BigDecimal postPrice = postMarket.getLastDone();
+                if (postPrice.compareTo(BigDecimal.ZERO) != 0) {
+                    bean.setPostPrice(postPrice.toString());
+                } else {
+                    bean.setPostPrice("--");
+                }
+            } else {
+                bean.setPostPrice("--");
+            }
+            
+            // 解析夜盘价格
+            // 注意：长桥API的getOvernightQuote()目前返回null，不提供夜盘数据
+            // 夜盘(Overnight Session)是美东20:00-04:00的交易时段，需要更高级的数据订阅
+            PrePostQuote overnight = quote.getOvernightQuote();
+            if (overnight != null && overnight.getLastDone() != null) {
+                BigDecimal overnightPrice = overnight.getLastDone();
+                if (overnightPrice.compareTo(BigDecimal.ZERO) != 0) {
+                    bean.setOvernightPrice(overnightPrice.toString());
+                } else {
+                    bean.setOvernightPrice("--");
+                }
+            } else {
+                // 长桥不提供夜盘数据，显示"--"
+                bean.setOvernightPrice("--");
+            }
+            
+            // 解析盘前价格
+            PrePostQuote preMarket = quote.getPreMarketQuote();
+            if (preMarket != null && preMarket.getLastDone() != null) {
+                BigDecimal prePrice = preMarket.getLastDone();
+                if (prePrice.compareTo(BigDecimal.ZERO) != 0) {
+                    bean.setPrePrice(prePrice.toString());
+                } else {
+                    bean.setPrePrice("--");
+                }
+            } else {
+                bean.setPrePrice("--");
+            }
+        } catch (Exception e) {
+            // 静默处理异常，设置默认值
+            bean.setPostPrice("--");
+            bean.setOvernightPrice("--");
+            bean.setPrePrice("--");
+        }
+    }
+}
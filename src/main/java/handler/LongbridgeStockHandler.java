@@ -2,20 +2,18 @@ package handler;
 
 import bean.StockBean;
 import com.intellij.ide.util.PropertiesComponent;
-import com.longport.Config;
-import com.longport.ConfigBuilder;
 import com.longport.quote.QuoteContext;
 import com.longport.quote.SecurityQuote;
-import com.longport.quote.SecurityStaticInfo;
-import com.longport.quote.PrePostQuote;
-import org.apache.commons.lang.StringUtils;
+import com.longport.quote.PushQuote;
+import com.longport.quote.SubFlags;
 
 import javax.swing.*;
-import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 /**
  * 长桥API股票数据处理器
@@ -24,10 +22,23 @@ import java.util.concurrent.CompletableFuture;
  */
 public class LongbridgeStockHandler extends StockRefreshHandler {
     private final JLabel refreshTimeLabel;
-    private HashMap<String, String[]> codeMap;
-    private List<String> longbridgeCodes;
-    private Config config;
-    private QuoteContext quoteContext;
+    private volatile HashMap<String, String[]> codeMap;
+    private volatile List<String> longbridgeCodes;
+    private final LongbridgeQuoteProvider provider = new LongbridgeQuoteProvider(this::onConnected);
+    private final LongbridgeConnection connection = provider.getConnection();
+    /**
+     * 推送模式下已订阅的代码（长桥格式）
+     */
+    private final Set<String> subscribedSymbols = ConcurrentHashMap.newKeySet();
+    /**
+     * 订阅时的行情快照，推送里没有昨收和盘前/盘后价格
+     */
+    private final Map<String, SecurityQuote> snapshots = new ConcurrentHashMap<>();
+    /**
+     * 进行中的订阅变更，后一次接在前一次后面，不会重叠；读写都要持有this的锁
+     */
+    private CompletableFuture<Void> subscribing = CompletableFuture.completedFuture(null);
+    private volatile long lastPushLabelTime;
 
     public LongbridgeStockHandler(JTable table, JLabel refreshTimeLabel) {
         super(table);
@@ -35,14 +46,15 @@ public class LongbridgeStockHandler extends StockRefreshHandler {
     }
 
     @Override
-    public void handle(List<String> codes) {
+    public CompletableFuture<Void> handle(List<String> codes) {
         if (codes.isEmpty()) {
-            return;
+            return CompletableFuture.completedFuture(null);
         }
 
         // 股票编码，英文分号分隔（成本价和成本接在编码后用逗号分隔）
         List<String> codeList = new ArrayList<>();
-        codeMap = new HashMap<>();
+        HashMap<String, String[]> codeMap = new HashMap<>();
+        this.codeMap = codeMap;
         longbridgeCodes = new ArrayList<>();
         
         for (String str : codes) {
@@ -57,298 +69,225 @@ public class LongbridgeStockHandler extends StockRefreshHandler {
             codeMap.put(originalCode, strArray);
             
             // 转换为长桥格式
-            String lbCode = convertToLongbridgeCode(originalCode);
+            String lbCode = LongbridgeQuoteProvider.convertToLongbridgeCode(originalCode);
             if (lbCode != null) {
                 longbridgeCodes.add(lbCode);
             }
         }
 
-        fetchQuotes();
+        if (isPushEnabled()) {
+            // 推送模式只在代码变化时增减订阅，行情由推送更新
+            return syncSubscriptions();
+        }
+        unsubscribeAll();
+        return fetchQuotes(codeList, codeMap);
     }
 
     /**
-     * 将股票代码转换为长桥格式
-     * 例如: hk00700 -> 700.HK, usAAPL -> AAPL.US, sh600519 -> 600519.SH
+     * 首次显示时先用行情快照或缓存的名称填充，不必等第一次请求返回
      */
-    private String convertToLongbridgeCode(String code) {
-        if (code == null || code.length() < 3) {
-            return null;
-        }
-        
-        String lowerCode = code.toLowerCase();
-        if (lowerCode.startsWith("hk")) {
-            // 港股: hk00700 -> 700.HK (去掉前导0)
-            String stockCode = code.substring(2);
-            // 去掉前导0
-            while (stockCode.startsWith("0") && stockCode.length() > 1) {
-                stockCode = stockCode.substring(1);
+    @Override
+    public void setupTable(List<String> code) {
+        for (String s : code) {
+            StockBean bean = new StockBean(s);
+            if (QuoteService.getInstance().getSnapshot(bean.getCode()) != null) {
+                QuoteService.getInstance().restore(bean);
+            } else {
+                String name = provider.getCachedName(bean.getCode());
+                if (name != null) {
+                    bean.setName(name);
+                }
             }
-            return stockCode + ".HK";
-        } else if (lowerCode.startsWith("us")) {
-            // 美股: usAAPL -> AAPL.US
-            return code.substring(2).toUpperCase() + ".US";
-        } else if (lowerCode.startsWith("sh")) {
-            // 上海: sh600519 -> 600519.SH
-            return code.substring(2) + ".SH";
-        } else if (lowerCode.startsWith("sz")) {
-            // 深圳: sz000001 -> 000001.SZ
-            return code.substring(2) + ".SZ";
+            updateData(bean);
         }
-        return null;
     }
 
     /**
-     * 将长桥格式转回原始格式
+     * 新建连接后回调：设置推送回调，新连接上没有任何订阅，下次刷新时重新订阅
      */
-    private String convertFromLongbridgeCode(String lbCode) {
-        if (lbCode == null || !lbCode.contains(".")) {
-            return lbCode;
-        }
-        
-        String[] parts = lbCode.split("\\.");
-        if (parts.length != 2) {
-            return lbCode;
-        }
-        
-        String stockCode = parts[0];
-        String market = parts[1].toUpperCase();
-        
-        switch (market) {
-            case "HK":
-                // 补齐到5位
-                while (stockCode.length() < 5) {
-                    stockCode = "0" + stockCode;
-                }
-                return "hk" + stockCode;
-            case "US":
-                return "us" + stockCode;
-            case "SH":
-                return "sh" + stockCode;
-            case "SZ":
-                return "sz" + stockCode;
-            default:
-                return lbCode;
-        }
+    private void onConnected(QuoteContext quoteContext) {
+        // 推送回调，只有订阅后才会收到
+        quoteContext.setOnQuote(this::onPushQuote);
+        subscribedSymbols.clear();
+        snapshots.clear();
     }
 
-    private void fetchQuotes() {
+    private CompletableFuture<Void> fetchQuotes(List<String> codeList, Map<String, String[]> codeMap) {
         if (longbridgeCodes.isEmpty()) {
-            return;
+            return CompletableFuture.completedFuture(null);
         }
+        int batchSize = provider.getBatchSize();
+        return fetchInBatches(codeList, batchSize, batch ->
+                QuoteService.getInstance().fetch(provider, batch, codeMap, getQuoteFields()).thenAccept(beans -> beans.forEach(this::updateData)))
+                .thenAccept(failed -> {
+                    // 失败已由connection记录，退避后重连
+                    if (failed < (codeList.size() + batchSize - 1) / batchSize) {
+                        updateUI();
+                    } else {
+                        updateStatus();
+                    }
+                });
+    }
 
-        PropertiesComponent instance = PropertiesComponent.getInstance();
-        String appKey = instance.getValue("key_longbridge_app_key", "");
-        String appSecret = instance.getValue("key_longbridge_app_secret", "");
-        String accessToken = instance.getValue("key_longbridge_access_token", "");
-
-        if (StringUtils.isEmpty(appKey) || StringUtils.isEmpty(appSecret) || StringUtils.isEmpty(accessToken)) {
-            return;
+    /**
+     * 推送模式：按当前代码列表增减订阅，新订阅的代码先取一次快照填充表格，之后由推送更新<br>
+     * 只有建立连接时会阻塞（最多{@value LongbridgeConnection#CALL_TIMEOUT_SECONDS}秒），
+     * 之后的SDK调用都由connection计时，返回的future在订阅完成、失败或超时后完成
+     */
+    private CompletableFuture<Void> syncSubscriptions() {
+        QuoteContext quoteContext = connection.get();
+        if (quoteContext == null) {
+            updateStatus();
+            return CompletableFuture.completedFuture(null);
         }
+        // 上一次还没结束时排在它后面，开始时再按最新的代码列表对齐
+        return enqueue(() -> syncSubscriptions(quoteContext));
+    }
 
-        try {
-            // 初始化或更新Config和QuoteContext
-            if (config == null || quoteContext == null) {
-                // 使用ConfigBuilder创建Config
-                ConfigBuilder configBuilder = new ConfigBuilder(appKey, appSecret, accessToken);
-                configBuilder.httpUrl("https://openapi.longportapp.cn");
-                config = configBuilder.build();
-                
-                // 使用静态方法create创建QuoteContext
-                CompletableFuture<QuoteContext> contextFuture = QuoteContext.create(config);
-                quoteContext = contextFuture.get(); // 等待创建完成
-            }
-
-            // 转换为字符串数组
-            String[] symbolStrings = longbridgeCodes.toArray(new String[0]);
-
-            // 使用SDK获取实时行情和静态信息
-            CompletableFuture<SecurityQuote[]> quoteFuture = quoteContext.getQuote(symbolStrings);
-            CompletableFuture<SecurityStaticInfo[]> staticInfoFuture = quoteContext.getStaticInfo(symbolStrings);
-            
-            // 等待异步结果
-            SecurityQuote[] quotes = quoteFuture.get();
-            SecurityStaticInfo[] staticInfos = staticInfoFuture.get();
-
-            // 创建symbol到名称的映射
-            Map<String, String> symbolToNameMap = new HashMap<>();
-            for (SecurityStaticInfo info : staticInfos) {
-                symbolToNameMap.put(info.getSymbol(), info.getNameCn());
-            }
-
-            // 解析行情数据
-            for (SecurityQuote quote : quotes) {
-                parseQuote(quote, symbolToNameMap);
+    private CompletableFuture<Void> syncSubscriptions(QuoteContext quoteContext) {
+        Set<String> wanted = new LinkedHashSet<>(longbridgeCodes);
+        List<String> removed = new ArrayList<>();
+        for (String symbol : subscribedSymbols) {
+            if (!wanted.contains(symbol)) {
+                removed.add(symbol);
             }
-            updateUI();
-        } catch (Exception e) {
-            // 静默处理异常
         }
+        CompletableFuture<Void> unsubscribed = CompletableFuture.completedFuture(null);
+        if (!removed.isEmpty()) {
+            subscribedSymbols.removeAll(removed);
+            unsubscribed = connection.track(quoteContext, quoteContext.unsubscribe(removed.toArray(new String[0]), SubFlags.Quote));
+        }
+        wanted.removeAll(subscribedSymbols);
+        if (wanted.isEmpty()) {
+            return unsubscribed.exceptionally(e -> {
+                updateStatus();
+                return null;
+            });
+        }
+        String[] added = wanted.toArray(new String[0]);
+        // 推送只有最新价、最高、最低，昨收取自快照
+        CompletableFuture<List<SecurityQuote>> quotesFuture = provider.requestQuotes(quoteContext, added);
+        CompletableFuture<Void> staticInfoFuture = provider.refreshStaticInfo(quoteContext, added);
+        return unsubscribed
+                .thenCombine(quotesFuture, (v, quotes) -> quotes)
+                .thenCombine(staticInfoFuture, (quotes, v) -> quotes)
+                .thenCompose(quotes -> {
+                    for (SecurityQuote quote : quotes) {
+                        snapshots.put(quote.getSymbol(), quote);
+                        StockBean bean = provider.parseQuote(quote, codeMap, getQuoteFields());
+                        if (bean != null) {
+                            updateData(bean);
+                        }
+                    }
+                    // 快照已经是最新的，不需要首次推送
+                    return connection.track(quoteContext, quoteContext.subscribe(added, SubFlags.Quote, false));
+                })
+                .handle((v, e) -> {
+                    // 等待期间重连过的话，新连接上没有这些订阅，下次刷新时重新订阅
+                    if (e == null && connection.current() == quoteContext) {
+                        subscribedSymbols.addAll(wanted);
+                        updateUI();
+                    } else {
+                        // 下次刷新时重新对齐订阅，连接断开时由connection退避重连
+                        updateStatus();
+                    }
+                    return null;
+                });
     }
 
-    private void parseQuote(SecurityQuote quote, Map<String, String> symbolToNameMap) {
-        try {
-            String symbol = quote.getSymbol();
-            String originalCode = convertFromLongbridgeCode(symbol);
-            
-            StockBean bean = new StockBean(originalCode, codeMap);
-            
-            // 从静态信息中获取股票名称
-            String name = symbolToNameMap.get(symbol);
-            if (name != null && !name.isEmpty()) {
-                bean.setName(name);
-            } else {
-                bean.setName(symbol);
-            }
-
-            // 当前价格
-            String lastDone = "0";
-            if (quote.getLastDone() != null) {
-                lastDone = quote.getLastDone().toString();
-            }
-            bean.setNow(lastDone);
-
-            // 昨收价
-            String prevClose = "0";
-            if (quote.getPrevClose() != null) {
-                prevClose = quote.getPrevClose().toString();
-            }
-
-            // 计算涨跌和涨跌幅
-            BigDecimal now = new BigDecimal(lastDone);
-            BigDecimal yesterday = new BigDecimal(prevClose);
-            if (yesterday.compareTo(BigDecimal.ZERO) != 0) {
-                BigDecimal diff = now.subtract(yesterday);
-                bean.setChange(diff.setScale(3, RoundingMode.HALF_UP).toString());
-                
-                BigDecimal percent = diff.divide(yesterday, 4, RoundingMode.HALF_UP)
-                        .multiply(new BigDecimal("100"))
-                        .setScale(2, RoundingMode.HALF_UP);
-                bean.setChangePercent(percent.toString());
-            } else {
-                bean.setChange("0");
-                bean.setChangePercent("0");
-            }
-
-            // 最高价
-            if (quote.getHigh() != null) {
-                bean.setMax(quote.getHigh().toString());
-            } else {
-                bean.setMax(lastDone);
+    /**
+     * 取消全部订阅，关闭推送模式或停止刷新时调用；排在进行中的订阅变更后面
+     */
+    private CompletableFuture<Void> unsubscribeAll() {
+        return enqueue(() -> {
+            if (subscribedSymbols.isEmpty()) {
+                return CompletableFuture.completedFuture(null);
             }
-
-            // 最低价
-            if (quote.getLow() != null) {
-                bean.setMin(quote.getLow().toString());
-            } else {
-                bean.setMin(lastDone);
+            String[] symbols = subscribedSymbols.toArray(new String[0]);
+            subscribedSymbols.clear();
+            snapshots.clear();
+            QuoteContext quoteContext = connection.current();
+            if (quoteContext == null) {
+                return CompletableFuture.completedFuture(null);
             }
-
-            // 解析盘前/盘后/夜盘价格
-            parsePrePostPrice(quote, bean);
-
-            // 更新时间 - 使用当前刷新时间，格式与其他handler保持一致
-            // StockBean.getValueByColumn 会使用 substring(8) 截取时间部分
-            java.time.LocalDateTime currentTime = java.time.LocalDateTime.now();
-            String timeStr = currentTime.format(java.time.format.DateTimeFormatter.ofPattern("yyyyMMddHHmmss"));
-            bean.setTime(timeStr);
-
-            // 计算收益
-            String costPriceStr = bean.getCostPrise();
-            if (StringUtils.isNotEmpty(costPriceStr) && !costPriceStr.equals("--")) {
-                try {
-                    BigDecimal costPriceDec = new BigDecimal(costPriceStr);
-                    BigDecimal incomeDiff = now.subtract(costPriceDec);
-                    
-                    if (costPriceDec.compareTo(BigDecimal.ZERO) > 0) {
-                        BigDecimal incomePercentDec = incomeDiff.divide(costPriceDec, 5, RoundingMode.HALF_UP)
-                                .multiply(new BigDecimal("100"))
-                                .setScale(3, RoundingMode.HALF_UP);
-                        bean.setIncomePercent(incomePercentDec.toString());
-                    }
-
-                    String bondStr = bean.getBonds();
-                    if (StringUtils.isNotEmpty(bondStr) && !bondStr.equals("--")) {
-                        BigDecimal bondDec = new BigDecimal(bondStr);
-                        BigDecimal incomeDec = incomeDiff.multiply(bondDec)
-                                .setScale(2, RoundingMode.HALF_UP);
-                        bean.setIncome(incomeDec.toString());
-                    }
-                } catch (NumberFormatException e) {
-                    // 忽略成本价格式错误
-                }
-            }
-
-            updateData(bean);
-        } catch (Exception e) {
             // 静默处理异常
-        }
+            return connection.track(quoteContext, quoteContext.unsubscribe(symbols, SubFlags.Quote)).exceptionally(e -> null);
+        });
     }
 
     /**
-     * 解析盘前/盘后/夜盘价格
-     * 分别设置三个独立的价格字段
+     * 订阅变更依次执行，前一次失败不影响后一次
      */
-    private void parsePrePostPrice(SecurityQuote quote, StockBean bean) {
+    private synchronized CompletableFuture<Void> enqueue(Supplier<CompletableFuture<Void>> step) {
+        subscribing = subscribing.handle((v, e) -> null).thenCompose(v -> step.get());
+        return subscribing;
+    }
+
+    /**
+     * 行情推送回调，在SDK的线程中执行
+     */
+    void onPushQuote(String symbol, PushQuote event) {
+        SecurityQuote snapshot = snapshots.get(symbol);
+        if (snapshot == null || event == null || event.getLastDone() == null || !subscribedSymbols.contains(symbol)) {
+            return;
+        }
         try {
-            // 解析盘后价格
-            PrePostQuote postMarket = quote.getPostMarketQuote();
-            if (postMarket != null && postMarket.getLastDone() != null) {
-                BigDecimal postPrice = postMarket.getLastDone();
-                if (postPrice.compareTo(BigDecimal.ZERO) != 0) {
-                    bean.setPostPrice(postPrice.toString());
-                } else {
-                    bean.setPostPrice("--");
-                }
-            } else {
-                bean.setPostPrice("--");
-            }
-            
-            // 解析夜盘价格
-            // 注意：长桥API的getOvernightQuote()目前返回null，不提供夜盘数据
-            // 夜盘(Overnight Session)是美东20:00-04:00的交易时段，需要更高级的数据订阅
-            PrePostQuote overnight = quote.getOvernightQuote();
-            if (overnight != null && overnight.getLastDone() != null) {
-                BigDecimal overnightPrice = overnight.getLastDone();
-                if (overnightPrice.compareTo(BigDecimal.ZERO) != 0) {
-                    bean.setOvernightPrice(overnightPrice.toString());
-                } else {
-                    bean.setOvernightPrice("--");
-                }
-            } else {
-                // 长桥不提供夜盘数据，显示"--"
-                bean.setOvernightPrice("--");
-            }
-            
-            // 解析盘前价格
-            PrePostQuote preMarket = quote.getPreMarketQuote();
-            if (preMarket != null && preMarket.getLastDone() != null) {
-                BigDecimal prePrice = preMarket.getLastDone();
-                if (prePrice.compareTo(BigDecimal.ZERO) != 0) {
-                    bean.setPrePrice(prePrice.toString());
-                } else {
-                    bean.setPrePrice("--");
-                }
-            } else {
-                bean.setPrePrice("--");
+            String lastDone = event.getLastDone().toString();
+            String high = event.getHigh() != null ? event.getHigh().toString()
+                    : snapshot.getHigh() != null ? snapshot.getHigh().toString() : lastDone;
+            String low = event.getLow() != null ? event.getLow().toString()
+                    : snapshot.getLow() != null ? snapshot.getLow().toString() : lastDone;
+            updateData(provider.buildBean(snapshot, lastDone, high, low, codeMap, getQuoteFields()));
+            // 推送频繁，刷新时间最多每秒更新一次
+            long now = System.currentTimeMillis();
+            if (now - lastPushLabelTime >= 1000) {
+                lastPushLabelTime = now;
+                updateUI();
             }
         } catch (Exception e) {
-            // 静默处理异常，设置默认值
-            bean.setPostPrice("--");
-            bean.setOvernightPrice("--");
-            bean.setPrePrice("--");
+            // 静默处理异常
         }
     }
 
+    private static boolean isPushEnabled() {
+        return PropertiesComponent.getInstance().getBoolean("key_longbridge_push");
+    }
+
     private void updateUI() {
         SwingUtilities.invokeLater(() -> {
             refreshTimeLabel.setText(LocalDateTime.now().format(TianTianFundHandler.timeFormatter));
-            refreshTimeLabel.setToolTipText("最后刷新时间 (长桥API)");
+            refreshTimeLabel.setToolTipText("最后刷新时间 (长桥API)，" + connection.describe());
         });
     }
 
+    /**
+     * 刷新失败时只更新提示，不改刷新时间
+     */
+    private void updateStatus() {
+        String status = connection.describe();
+        SwingUtilities.invokeLater(() -> refreshTimeLabel.setToolTipText("最后刷新时间 (长桥API)，" + status));
+    }
+
+    /**
+     * @return 长桥连接状态描述，含错误次数
+     */
+    public String getConnectionStatus() {
+        return connection.describe();
+    }
+
+    public long getConnectionErrorCount() {
+        return connection.getErrorCount();
+    }
+
     @Override
     public void stopHandle() {
-        // 停止处理
+        // 停止处理，取消订阅并关闭连接；关闭连接后订阅也随之失效，不必一直等待
+        try {
+            unsubscribeAll().get(LongbridgeConnection.CALL_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            // 静默处理异常
+        }
+        provider.close();
     }
 }
 
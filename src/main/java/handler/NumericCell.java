@@ -0,0 +1,79 @@
+package handler;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.math.NumberUtils;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 数字列的单元格：显示原来的文本，同时带着写入表格前解析好的数值<br>
+ * 排序和涨跌着色直接比较数值，不必每次比较都去掉%再解析字符串。
+ * 相等只看文本，与原来字符串单元格的变化检测一致
+ */
+final class NumericCell {
+    /**
+     * 按数值排序，无法解析的文本(如--)视为0
+     */
+    static final Comparator<Object> COMPARATOR = (o1, o2) -> Double.compare(valueOf(o1), valueOf(o2));
+
+    private final String text;
+    private final double value;
+
+    private NumericCell(String text, double value) {
+        this.text = text;
+        this.value = value;
+    }
+
+    /**
+     * @param text 显示的文本，可带%
+     * @return text为null时返回null
+     */
+    static NumericCell of(String text) {
+        return text == null ? null : new NumericCell(text, parse(text));
+    }
+
+    /**
+     * @return 单元格的数值，不是NumericCell时按文本解析
+     */
+    static double valueOf(Object cell) {
+        if (cell instanceof NumericCell) {
+            return ((NumericCell) cell).value;
+        }
+        return parse(Objects.toString(cell));
+    }
+
+    /**
+     * @param names 逗号分隔的列名
+     * @return 各列是否在names中
+     */
+    static boolean[] flagColumns(String[] columnNames, String names) {
+        List<String> list = Arrays.asList(names.split(","));
+        boolean[] flags = new boolean[columnNames.length];
+        for (int i = 0; i < columnNames.length; i++) {
+            flags[i] = list.contains(columnNames[i]);
+        }
+        return flags;
+    }
+
+    private static double parse(String text) {
+        return NumberUtils.toDouble(StringUtils.remove(text, '%'));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || o instanceof NumericCell && text.equals(((NumericCell) o).text);
+    }
+
+    @Override
+    public int hashCode() {
+        return text.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
@@ -0,0 +1,200 @@
+package handler;
+
+import bean.FundBean;
+import bean.StockBean;
+import org.apache.commons.lang.StringUtils;
+import utils.ScaledDecimal;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * 涨跌、收益率、收益的统一计算，各handler共用<br>
+ * 优先用{@link ScaledDecimal}定点计算，溢出或格式不支持时退回{@link BigDecimal}，两者输出完全一致：
+ * <ul>
+ *     <li>涨跌 = 现价 - 昨收</li>
+ *     <li>涨跌幅 = 涨跌 / 昨收（保留4位）× 100，保留2位</li>
+ *     <li>收益率 = (现价 - 成本价) / 成本价（股票保留5位，基金保留8位）× 100，保留3位；成本价不大于0时为0</li>
+ *     <li>收益 = (现价 - 成本价) × 持仓，保留2位</li>
+ * </ul>
+ * 舍入方式均为HALF_UP
+ */
+public final class ProfitCalculator {
+    static final int STOCK_INCOME_PERCENT_SCALE = 5;
+    static final int FUND_INCOME_PERCENT_SCALE = 8;
+
+    private ProfitCalculator() {
+    }
+
+    /**
+     * 涨跌，精度与输入一致
+     *
+     * @return 无法计算时返回null
+     */
+    public static String change(String now, String prevClose) {
+        ScaledDecimal nowDec = ScaledDecimal.parse(now);
+        ScaledDecimal prevDec = ScaledDecimal.parse(prevClose);
+        try {
+            if (nowDec != null && prevDec != null) {
+                return nowDec.subtract(prevDec).toString();
+            }
+        } catch (ArithmeticException ignored) {
+            // 溢出，按BigDecimal计算
+        }
+        try {
+            return new BigDecimal(now).subtract(new BigDecimal(prevClose)).toString();
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 涨跌，保留scale位小数
+     */
+    public static String change(String now, String prevClose, int scale) {
+        ScaledDecimal nowDec = ScaledDecimal.parse(now);
+        ScaledDecimal prevDec = ScaledDecimal.parse(prevClose);
+        try {
+            if (nowDec != null && prevDec != null) {
+                return nowDec.subtract(prevDec).setScale(scale).toString();
+            }
+        } catch (ArithmeticException ignored) {
+            // 溢出，按BigDecimal计算
+        }
+        try {
+            return new BigDecimal(now).subtract(new BigDecimal(prevClose)).setScale(scale, RoundingMode.HALF_UP).toString();
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 涨跌幅(%)
+     *
+     * @return 昨收为0时返回"0"，无法计算时返回null
+     */
+    public static String changePercent(String now, String prevClose) {
+        ScaledDecimal nowDec = ScaledDecimal.parse(now);
+        ScaledDecimal prevDec = ScaledDecimal.parse(prevClose);
+        try {
+            if (nowDec != null && prevDec != null) {
+                if (prevDec.signum() == 0) {
+                    return "0";
+                }
+                return nowDec.subtract(prevDec).divide(prevDec, 4)
+                        .multiply(ScaledDecimal.HUNDRED)
+                        .setScale(2)
+                        .toString();
+            }
+        } catch (ArithmeticException ignored) {
+            // 溢出，按BigDecimal计算
+        }
+        try {
+            BigDecimal prev = new BigDecimal(prevClose);
+            if (prev.signum() == 0) {
+                return "0";
+            }
+            return new BigDecimal(now).subtract(prev).divide(prev, 4, RoundingMode.HALF_UP)
+                    .multiply(BigDecimal.TEN)
+                    .multiply(BigDecimal.TEN)
+                    .setScale(2, RoundingMode.HALF_UP)
+                    .toString();
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 收益率(%)
+     *
+     * @param divideScale 相除时保留的小数位
+     * @return 成本价不大于0时返回"0"，无法计算时返回null
+     */
+    public static String incomePercent(String now, String costPrice, int divideScale) {
+        ScaledDecimal nowDec = ScaledDecimal.parse(now);
+        ScaledDecimal costDec = ScaledDecimal.parse(costPrice);
+        try {
+            if (nowDec != null && costDec != null) {
+                if (costDec.signum() <= 0) {
+                    return "0";
+                }
+                return nowDec.subtract(costDec).divide(costDec, divideScale)
+                        .multiply(ScaledDecimal.HUNDRED)
+                        .setScale(3)
+                        .toString();
+            }
+        } catch (ArithmeticException ignored) {
+            // 溢出，按BigDecimal计算
+        }
+        try {
+            BigDecimal cost = new BigDecimal(costPrice);
+            if (cost.compareTo(BigDecimal.ZERO) <= 0) {
+                return "0";
+            }
+            return new BigDecimal(now).subtract(cost).divide(cost, divideScale, RoundingMode.HALF_UP)
+                    .multiply(BigDecimal.TEN)
+                    .multiply(BigDecimal.TEN)
+                    .setScale(3, RoundingMode.HALF_UP)
+                    .toString();
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 收益
+     *
+     * @return 无法计算时返回null
+     */
+    public static String income(String now, String costPrice, String bonds) {
+        ScaledDecimal nowDec = ScaledDecimal.parse(now);
+        ScaledDecimal costDec = ScaledDecimal.parse(costPrice);
+        ScaledDecimal bondsDec = ScaledDecimal.parse(bonds);
+        try {
+            if (nowDec != null && costDec != null && bondsDec != null) {
+                return nowDec.subtract(costDec).multiply(bondsDec).setScale(2).toString();
+            }
+        } catch (ArithmeticException ignored) {
+            // 溢出，按BigDecimal计算
+        }
+        try {
+            return new BigDecimal(now).subtract(new BigDecimal(costPrice)).multiply(new BigDecimal(bonds))
+                    .setScale(2, RoundingMode.HALF_UP)
+                    .toString();
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 按成本价和持仓填充股票的收益率、收益，未配置成本价（空或"--"）时跳过
+     */
+    public static void fillIncome(StockBean bean, String now) {
+        String costPrice = bean.getCostPrise();
+        if (!isConfigured(costPrice)) {
+            return;
+        }
+        bean.setIncomePercent(incomePercent(now, costPrice, STOCK_INCOME_PERCENT_SCALE));
+        if (isConfigured(bean.getBonds())) {
+            bean.setIncome(income(now, costPrice, bean.getBonds()));
+        }
+    }
+
+    /**
+     * 按成本价和持有份额填充基金的收益率、收益，未配置成本价（空或"--"）时跳过
+     */
+    public static void fillIncome(FundBean bean, String now) {
+        String costPrice = bean.getCostPrise();
+        if (!isConfigured(costPrice)) {
+            return;
+        }
+        bean.setIncomePercent(incomePercent(now, costPrice, FUND_INCOME_PERCENT_SCALE));
+        if (isConfigured(bean.getBonds())) {
+            bean.setIncome(income(now, costPrice, bean.getBonds()));
+        }
+    }
+
+    private static boolean isConfigured(String value) {
+        return StringUtils.isNotEmpty(value) && !"--".equals(value);
+    }
+}
@@ -0,0 +1,48 @@
+package handler;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 行情字段分组，由股票表格显示的列决定，数据源只请求和解析需要的分组
+ */
+public enum QuoteField {
+    NAME("股票名称"),
+    /**
+     * 当前价和涨跌，收益计算、排序都依赖，总是需要
+     */
+    PRICE("当前价", "涨跌", "涨跌幅", "成本价", "持仓", "收益率", "收益"),
+    RANGE("最高价", "最低价"),
+    TIME("更新时间"),
+    /**
+     * 盘前、盘后、夜盘
+     */
+    EXTENDED("盘后", "夜盘", "盘前");
+
+    public static final Set<QuoteField> ALL = Collections.unmodifiableSet(EnumSet.allOf(QuoteField.class));
+
+    private final List<String> columns;
+
+    QuoteField(String... columns) {
+        this.columns = Arrays.asList(columns);
+    }
+
+    /**
+     * @param columnNames 表格的列名
+     * @return 这些列用到的分组，总是包含{@link #PRICE}
+     */
+    public static Set<QuoteField> forColumns(String[] columnNames) {
+        Set<QuoteField> fields = EnumSet.of(PRICE);
+        for (String column : columnNames) {
+            for (QuoteField field : values()) {
+                if (field.columns.contains(column)) {
+                    fields.add(field);
+                }
+            }
+        }
+        return Collections.unmodifiableSet(fields);
+    }
+}
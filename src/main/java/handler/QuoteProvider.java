@@ -0,0 +1,63 @@
+package handler;
+
+import bean.StockBean;
+import utils.MarketSession;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 股票行情数据源，只负责请求和解析，不涉及表格<br>
+ * 表格更新由{@link StockRefreshHandler}完成，同一个数据源可以单独使用，也可以由{@link RoutingStockHandler}按市场组合
+ */
+public interface QuoteProvider {
+
+    /**
+     * @return 数据源名称，用于界面提示和日志
+     */
+    String getName();
+
+    /**
+     * @return 支持的市场
+     */
+    Set<MarketSession> getMarkets();
+
+    /**
+     * @return 单次请求最多的代码数，超过时由调用方分批
+     */
+    int getBatchSize();
+
+    /**
+     * 请求并解析一批行情的全部字段
+     *
+     * @see #fetch(List, Map, Set)
+     */
+    default CompletableFuture<List<StockBean>> fetch(List<String> codes, Map<String, String[]> codeMap) {
+        return fetch(codes, codeMap, QuoteField.ALL);
+    }
+
+    /**
+     * 请求并解析一批行情
+     *
+     * @param codes   代码（如sh600519），数量不超过{@link #getBatchSize()}
+     * @param codeMap 代码 -> 设置页的配置（代码,成本价,持仓），用于计算收益
+     * @param fields  表格需要的字段，不需要的字段可以不请求、不解析，bean中留空
+     * @return 解析出的行情，请求失败时异常完成
+     */
+    CompletableFuture<List<StockBean>> fetch(List<String> codes, Map<String, String[]> codeMap, Set<QuoteField> fields);
+
+    /**
+     * @return 健康状况描述，用于界面提示；没有统计时返回null
+     */
+    default String describeHealth() {
+        return null;
+    }
+
+    /**
+     * 释放连接等资源，停止刷新时调用
+     */
+    default void close() {
+    }
+}
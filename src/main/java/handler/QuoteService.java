@@ -0,0 +1,326 @@
+package handler;
+
+import bean.StockBean;
+import com.intellij.ide.util.PropertiesComponent;
+import org.apache.commons.lang3.math.NumberUtils;
+import utils.LogUtil;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 应用级的股票行情请求入口，所有项目窗口、所有handler共用<br>
+ * <ul>
+ *     <li>同一数据源、同一批代码的请求还没返回时，后来的调用直接共用这次请求，不重复发出；
+ *     每个调用方拿到各自的future，全部取消后才取消共用的请求</li>
+ *     <li>保存每个代码最近一次的行情快照，表格重建时先用快照填充</li>
+ *     <li>开启key_share_quotes后，本机多个IDE只有一个进程请求行情，其他进程读取共享快照，
+ *     快照超过key_share_quotes_max_age秒（默认60）未更新或缺少代码时自己请求</li>
+ * </ul>
+ */
+public class QuoteService {
+    private static final QuoteService INSTANCE = new QuoteService();
+    private static final int DEFAULT_SHARED_MAX_AGE_SECONDS = 60;
+
+    /**
+     * 数据源名称+代码配置 -> 进行中的请求
+     */
+    private final Map<String, InFlight> inFlight = new ConcurrentHashMap<>();
+    /**
+     * 代码 -> 最近一次的行情及其请求时间、字段
+     */
+    private final Map<String, SharedQuoteStore.Entry> snapshots = new ConcurrentHashMap<>();
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+    private final AtomicLong sharedHitCount = new AtomicLong();
+    private final SharedQuoteStore sharedStore = new SharedQuoteStore(Paths.get(System.getProperty("user.home"), ".leeks"), LogUtil::info);
+
+    private QuoteService() {
+    }
+
+    public static QuoteService getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 通过数据源请求一批行情的全部字段
+     *
+     * @see #fetch(QuoteProvider, List, Map, Set)
+     */
+    public CompletableFuture<List<StockBean>> fetch(QuoteProvider provider, List<String> codes, Map<String, String[]> codeMap) {
+        return fetch(provider, codes, codeMap, QuoteField.ALL);
+    }
+
+    /**
+     * 通过数据源请求一批行情，相同的请求进行中时共用结果
+     *
+     * @see QuoteProvider#fetch(List, Map, Set)
+     */
+    public CompletableFuture<List<StockBean>> fetch(QuoteProvider provider, List<String> codes, Map<String, String[]> codeMap,
+                                                    Set<QuoteField> fields) {
+        boolean leader = false;
+        if (isShareEnabled()) {
+            // 不是主进程时每次都尝试抢锁，主进程退出后下一次刷新即可接替
+            leader = sharedStore.isLeader();
+            List<StockBean> shared = leader ? null : readShared(codes, codeMap, fields);
+            if (shared != null) {
+                sharedHitCount.incrementAndGet();
+                return CompletableFuture.completedFuture(shared);
+            }
+        }
+        boolean publish = leader;
+        String key = requestKey(provider, codes, codeMap, fields);
+        InFlight[] created = new InFlight[1];
+        InFlight flight = inFlight.compute(key, (k, existing) -> {
+            if (existing != null && existing.join()) {
+                return existing;
+            }
+            created[0] = new InFlight(k);
+            return created[0];
+        });
+        if (created[0] == null) {
+            coalescedCount.incrementAndGet();
+            return flight.subscribe();
+        }
+        requestCount.incrementAndGet();
+        CompletableFuture<List<StockBean>> future;
+        try {
+            future = provider.fetch(codes, codeMap, fields);
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<List<StockBean>> request = flight.result;
+        CompletableFuture<List<StockBean>> subscription = flight.subscribe();
+        flight.start(future);
+        future.whenComplete((beans, e) -> {
+            inFlight.remove(key, flight);
+            if (e != null) {
+                request.completeExceptionally(e);
+                return;
+            }
+            long now = System.currentTimeMillis();
+            for (StockBean bean : beans) {
+                if (bean.getCode() != null) {
+                    snapshots.put(bean.getCode(), new SharedQuoteStore.Entry(now, fields, bean));
+                }
+            }
+            if (publish) {
+                sharedStore.publish(snapshots.values());
+            }
+            request.complete(beans);
+        });
+        return subscription;
+    }
+
+    /**
+     * 一个进行中的请求及共用它的调用方
+     */
+    private class InFlight {
+        private final String key;
+        private final CompletableFuture<List<StockBean>> result = new CompletableFuture<>();
+        /**
+         * 数据源返回的future，还没发出时为null
+         */
+        private CompletableFuture<List<StockBean>> request;
+        /**
+         * 还没取消的调用方，创建者算一个
+         */
+        private int subscribers = 1;
+        /**
+         * 调用方都已取消，不能再共用
+         */
+        private boolean abandoned;
+
+        InFlight(String key) {
+            this.key = key;
+        }
+
+        /**
+         * 共用这次请求，在inFlight.compute中调用
+         *
+         * @return false表示请求已结束或已放弃，需要重新请求
+         */
+        synchronized boolean join() {
+            if (abandoned || result.isDone()) {
+                return false;
+            }
+            subscribers++;
+            return true;
+        }
+
+        synchronized void start(CompletableFuture<List<StockBean>> request) {
+            this.request = request;
+            if (abandoned) {
+                request.cancel(true);
+            }
+        }
+
+        /**
+         * @return 调用方自己的future，取消时不影响其他调用方
+         */
+        CompletableFuture<List<StockBean>> subscribe() {
+            CompletableFuture<List<StockBean>> subscription = result.thenApply(beans -> beans);
+            subscription.whenComplete((beans, e) -> {
+                if (subscription.isCancelled()) {
+                    unsubscribe();
+                }
+            });
+            return subscription;
+        }
+
+        /**
+         * 最后一个调用方取消时取消数据源的请求
+         */
+        private void unsubscribe() {
+            CompletableFuture<List<StockBean>> cancelled;
+            synchronized (this) {
+                if (--subscribers > 0 || result.isDone()) {
+                    return;
+                }
+                abandoned = true;
+                cancelled = request;
+            }
+            inFlight.remove(key, this);
+            result.cancel(false);
+            if (cancelled != null) {
+                cancelled.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * 删除不再自选的代码的快照，共享时也不再发布它们
+     *
+     * @param configs 全部自选，格式同设置页（代码后可接成本价和持仓）
+     */
+    public void retain(Collection<String> configs) {
+        Set<String> codes = new HashSet<>(configs.size());
+        for (String config : configs) {
+            int comma = config.indexOf(',');
+            codes.add(comma < 0 ? config : config.substring(0, comma));
+        }
+        snapshots.keySet().retainAll(codes);
+    }
+
+    /**
+     * 用最近的行情快照补全只有代码和成本的bean，收益按bean自己的成本价重新计算
+     *
+     * @param bean 由设置页配置创建的bean
+     * @return 没有快照时原样返回
+     */
+    public StockBean restore(StockBean bean) {
+        StockBean snapshot = bean.getCode() == null ? null : getSnapshot(bean.getCode());
+        if (snapshot == null) {
+            return bean;
+        }
+        copyQuote(snapshot, bean);
+        return bean;
+    }
+
+    /**
+     * 停止刷新时放弃主进程身份，由其他IDE接替请求
+     */
+    public void releaseLeadership() {
+        sharedStore.release();
+    }
+
+    /**
+     * @return 使用其他进程共享行情的次数
+     */
+    public long getSharedHitCount() {
+        return sharedHitCount.get();
+    }
+
+    /**
+     * 从主进程共享的快照组装这批代码的行情，成本、持仓用本进程的配置
+     *
+     * @return 缺少任一代码，或任一代码的行情过期、主进程请求时没有需要的字段时返回null
+     */
+    private List<StockBean> readShared(List<String> codes, Map<String, String[]> codeMap, Set<QuoteField> fields) {
+        SharedQuoteStore.Snapshot snapshot = sharedStore.read();
+        if (snapshot == null) {
+            return null;
+        }
+        long maxAge = NumberUtils.toInt(PropertiesComponent.getInstance().getValue("key_share_quotes_max_age"), DEFAULT_SHARED_MAX_AGE_SECONDS) * 1000L;
+        long now = System.currentTimeMillis();
+        List<SharedQuoteStore.Entry> entries = new ArrayList<>(codes.size());
+        for (String code : codes) {
+            SharedQuoteStore.Entry entry = snapshot.quotes.get(code);
+            if (entry == null || now - entry.time > maxAge || !entry.fields.containsAll(fields)) {
+                return null;
+            }
+            StockBean bean = copyQuote(entry.quote, new StockBean(code, codeMap));
+            entries.add(new SharedQuoteStore.Entry(entry.time, entry.fields, bean));
+        }
+        List<StockBean> beans = new ArrayList<>(entries.size());
+        for (SharedQuoteStore.Entry entry : entries) {
+            // 保留主进程的请求时间，本进程接替后再发布时不会把旧行情当作新的
+            snapshots.put(entry.quote.getCode(), entry);
+            beans.add(entry.quote);
+        }
+        return beans;
+    }
+
+    private static boolean isShareEnabled() {
+        return PropertiesComponent.getInstance().getBoolean("key_share_quotes");
+    }
+
+    private static StockBean copyQuote(StockBean snapshot, StockBean bean) {
+        bean.setName(snapshot.getName());
+        bean.setNow(snapshot.getNow());
+        bean.setChange(snapshot.getChange());
+        bean.setChangePercent(snapshot.getChangePercent());
+        bean.setTime(snapshot.getTime());
+        bean.setMax(snapshot.getMax());
+        bean.setMin(snapshot.getMin());
+        bean.setPostPrice(snapshot.getPostPrice());
+        bean.setOvernightPrice(snapshot.getOvernightPrice());
+        bean.setPrePrice(snapshot.getPrePrice());
+        ProfitCalculator.fillIncome(bean, snapshot.getNow());
+        return bean;
+    }
+
+    /**
+     * @return 最近一次的行情，没有时返回null
+     */
+    public StockBean getSnapshot(String code) {
+        SharedQuoteStore.Entry entry = snapshots.get(code);
+        return entry == null ? null : entry.quote;
+    }
+
+    /**
+     * @return 实际发出的请求数
+     */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * @return 共用进行中请求的次数
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    /**
+     * 成本价、持仓参与收益计算，配置或字段不同的请求不能共用
+     */
+    private static String requestKey(QuoteProvider provider, List<String> codes, Map<String, String[]> codeMap,
+                                     Set<QuoteField> fields) {
+        StringBuilder key = new StringBuilder(provider.getName()).append(fields);
+        for (String code : codes) {
+            key.append('|');
+            String[] config = codeMap.get(code);
+            key.append(config == null ? code : String.join(",", config));
+        }
+        return key.toString();
+    }
+}
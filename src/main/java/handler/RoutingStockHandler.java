@@ -0,0 +1,118 @@
+package handler;
+
+import utils.LogUtil;
+import utils.MarketSession;
+
+import javax.swing.*;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 按市场把代码分给不同的数据源，如沪深走腾讯、港美股走长桥<br>
+ * 各数据源在同一次刷新中并发请求，各自按{@link QuoteProvider#getBatchSize()}分批，全部结束后更新一次刷新时间。
+ * 无法识别市场或没有配置路由的代码交给默认数据源
+ */
+public class RoutingStockHandler extends StockRefreshHandler {
+    private final JLabel refreshTimeLabel;
+    private final Map<MarketSession, QuoteProvider> routes;
+    private final QuoteProvider fallback;
+
+    /**
+     * @param routes   市场 -> 数据源
+     * @param fallback 默认数据源
+     * @throws IllegalArgumentException 数据源不支持路由到它的市场
+     */
+    public RoutingStockHandler(JTable table, JLabel refreshTimeLabel, Map<MarketSession, QuoteProvider> routes,
+                               QuoteProvider fallback) {
+        super(table);
+        routes.forEach((market, provider) -> {
+            if (!provider.getMarkets().contains(market)) {
+                throw new IllegalArgumentException(provider.getName() + "不支持" + market);
+            }
+        });
+        this.refreshTimeLabel = refreshTimeLabel;
+        this.routes = new EnumMap<>(routes);
+        this.fallback = fallback;
+    }
+
+    @Override
+    public CompletableFuture<Void> handle(List<String> code) {
+        if (code.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        //股票编码，英文分号分隔（成本价和成本接在编码后用逗号分隔）
+        Map<String, String[]> codeMap = new HashMap<>();
+        Map<QuoteProvider, List<String>> groups = new LinkedHashMap<>();
+        for (String str : code) {
+            //兼容原有设置
+            String[] strArray;
+            if (str.contains(",")) {
+                strArray = str.split(",");
+            } else {
+                strArray = new String[]{str};
+            }
+            codeMap.put(strArray[0], strArray);
+            groups.computeIfAbsent(route(strArray[0]), k -> new ArrayList<>()).add(strArray[0]);
+        }
+
+        List<CompletableFuture<String>> results = new ArrayList<>(groups.size());
+        groups.forEach((provider, codes) -> results.add(fetch(provider, codes, codeMap)));
+        return CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0]))
+                .thenRun(() -> {
+                    StringJoiner summary = new StringJoiner("，");
+                    results.forEach(result -> summary.add(result.join()));
+                    for (QuoteProvider provider : providers()) {
+                        String health = provider.describeHealth();
+                        if (health != null) {
+                            summary.add(health);
+                        }
+                    }
+                    updateUI(summary.toString());
+                });
+    }
+
+    /**
+     * @return 该数据源的结果描述，如“腾讯12个”
+     */
+    private CompletableFuture<String> fetch(QuoteProvider provider, List<String> codes, Map<String, String[]> codeMap) {
+        return fetchInBatches(codes, provider.getBatchSize(), batch ->
+                QuoteService.getInstance().fetch(provider, batch, codeMap, getQuoteFields())
+                        .thenAccept(beans -> beans.forEach(this::updateData))
+                        .whenComplete((v, e) -> {
+                            if (e != null) {
+                                LogUtil.info("Leeks " + provider.getName() + "行情请求失败：" + e.getMessage());
+                            }
+                        }))
+                .thenApply(failed -> provider.getName() + codes.size() + "个" + (failed > 0 ? "（失败" + failed + "批）" : ""));
+    }
+
+    QuoteProvider route(String code) {
+        QuoteProvider provider = routes.get(MarketSession.of(code));
+        return provider != null ? provider : fallback;
+    }
+
+    private void updateUI(String summary) {
+        SwingUtilities.invokeLater(() -> {
+            refreshTimeLabel.setText(LocalDateTime.now().format(TianTianFundHandler.timeFormatter));
+            refreshTimeLabel.setToolTipText("最后刷新时间，" + summary);
+        });
+    }
+
+    /**
+     * @return 所有数据源，去重
+     */
+    private Set<QuoteProvider> providers() {
+        Set<QuoteProvider> providers = Collections.newSetFromMap(new IdentityHashMap<>());
+        providers.addAll(routes.values());
+        providers.add(fallback);
+        return providers;
+    }
+
+    @Override
+    public void stopHandle() {
+        providers().forEach(QuoteProvider::close);
+        LogUtil.info("Leeks 准备停止更新Stock编码数据.");
+    }
+}
@@ -0,0 +1,273 @@
+package handler;
+
+import bean.StockBean;
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * 同一台机器上多个IDE进程共享行情<br>
+ * 通过leader.lock文件锁选出一个主进程负责请求，主进程把行情快照写入内存映射的quotes.dat，其他进程直接读取。
+ * 主进程退出时系统释放文件锁，其他进程下一次刷新时即可抢到锁接替。<br>
+ * quotes.dat格式：magic(int) | seq(long，写入中为奇数) | 长度(int) | json([{time, fields, quote}])<br>
+ * 每个代码带着自己的请求时间和字段，主进程本轮没有刷新的代码不会被当作新数据。
+ * 读取时直接从映射内存解码，不先拷贝成byte[]和String；对象只能在各自进程的堆里，无法做到完全零拷贝
+ */
+class SharedQuoteStore {
+    private static final int FILE_SIZE = 1 << 20;
+    private static final int MAGIC = 0x4C45454C;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int SEQ_OFFSET = 8;
+    private static final int LENGTH_OFFSET = 16;
+    private static final int DATA_OFFSET = 24;
+    private static final int MAX_READ_RETRY = 3;
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private static final Gson gson = new Gson();
+
+    private final Path lockPath;
+    private final Path dataPath;
+    private final Consumer<String> log;
+    private FileChannel lockChannel;
+    private FileLock lock;
+    private MappedByteBuffer buffer;
+    /**
+     * 上次读取的结果，seq不变时直接复用，不必重新解析
+     */
+    private Snapshot lastRead;
+
+    /**
+     * @param log 输出提示信息，如LogUtil::info
+     */
+    SharedQuoteStore(Path dir, Consumer<String> log) {
+        this.lockPath = dir.resolve("leader.lock");
+        this.dataPath = dir.resolve("quotes.dat");
+        this.log = log;
+    }
+
+    /**
+     * 是否为主进程，不是时尝试抢锁
+     */
+    synchronized boolean isLeader() {
+        if (lock != null && lock.isValid()) {
+            return true;
+        }
+        try {
+            if (lockChannel == null) {
+                Files.createDirectories(lockPath.getParent());
+                lockChannel = FileChannel.open(lockPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            }
+            lock = lockChannel.tryLock();
+        } catch (IOException | OverlappingFileLockException e) {
+            lock = null;
+        }
+        if (lock != null) {
+            log.accept("Leeks 当前进程负责请求行情，其他IDE共享");
+        }
+        return lock != null;
+    }
+
+    /**
+     * 放弃主进程身份，停止刷新时调用，让其他进程接替
+     */
+    synchronized void release() {
+        if (lock != null) {
+            try {
+                lock.release();
+            } catch (IOException e) {
+                // 进程退出时系统也会释放
+            }
+            lock = null;
+        }
+    }
+
+    /**
+     * 主进程发布行情快照，超出文件大小时放弃
+     */
+    synchronized void publish(Collection<Entry> entries) {
+        MappedByteBuffer buf = buffer();
+        if (buf == null) {
+            return;
+        }
+        byte[] json = gson.toJson(entries).getBytes(StandardCharsets.UTF_8);
+        if (json.length > FILE_SIZE - DATA_OFFSET) {
+            log.accept("Leeks 共享行情过大，未发布：" + json.length);
+            return;
+        }
+        long seq = (long) LONGS.getAcquire(buf, SEQ_OFFSET);
+        long writing = (seq & 1) == 0 ? seq + 1 : seq;
+        LONGS.setOpaque(buf, SEQ_OFFSET, writing);
+        // 数据不能先于奇数seq写入，否则读取方可能在seq不变的情况下读到一半的数据
+        VarHandle.storeStoreFence();
+        buf.put(DATA_OFFSET, json);
+        buf.putInt(LENGTH_OFFSET, json.length);
+        buf.putInt(MAGIC_OFFSET, MAGIC);
+        LONGS.setRelease(buf, SEQ_OFFSET, writing + 1);
+    }
+
+    /**
+     * 读取主进程发布的快照
+     *
+     * @return 还没有发布或一直在写入时返回null
+     */
+    synchronized Snapshot read() {
+        MappedByteBuffer buf = buffer();
+        if (buf == null || buf.getInt(MAGIC_OFFSET) != MAGIC) {
+            return null;
+        }
+        for (int retry = 0; retry < MAX_READ_RETRY; retry++) {
+            long seq = (long) LONGS.getAcquire(buf, SEQ_OFFSET);
+            if ((seq & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            if (lastRead != null && lastRead.seq == seq) {
+                return lastRead;
+            }
+            int length = buf.getInt(LENGTH_OFFSET);
+            Map<String, Entry> quotes = null;
+            if (length >= 0 && length <= FILE_SIZE - DATA_OFFSET) {
+                quotes = parse(buf.duplicate().position(DATA_OFFSET).limit(DATA_OFFSET + length));
+            }
+            // 数据的读取不能晚于下面seq的检查
+            VarHandle.acquireFence();
+            if ((long) LONGS.getOpaque(buf, SEQ_OFFSET) != seq) {
+                // 读取期间主进程写入了新数据，读到的可能是两次写入拼起来的
+                continue;
+            }
+            lastRead = new Snapshot(seq, quotes == null ? Collections.emptyMap() : quotes);
+            return lastRead;
+        }
+        return null;
+    }
+
+    private MappedByteBuffer buffer() {
+        if (buffer == null) {
+            try {
+                Files.createDirectories(dataPath.getParent());
+                try (FileChannel channel = FileChannel.open(dataPath, StandardOpenOption.CREATE,
+                        StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                    // 映射在关闭channel后仍然有效
+                    buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, FILE_SIZE);
+                }
+            } catch (IOException e) {
+                log.accept("Leeks 共享行情文件打开失败：" + e.getMessage());
+            }
+        }
+        return buffer;
+    }
+
+    /**
+     * @param data 映射内存中的json
+     * @return 格式不对(包括读到写入一半的数据)时返回null
+     */
+    private static Map<String, Entry> parse(ByteBuffer data) {
+        try (JsonReader reader = new JsonReader(new InputStreamReader(new BufferInputStream(data), StandardCharsets.UTF_8))) {
+            Entry[] entries = gson.fromJson(reader, Entry[].class);
+            Map<String, Entry> map = new HashMap<>();
+            if (entries != null) {
+                for (Entry entry : entries) {
+                    if (entry != null && entry.quote != null && entry.quote.getCode() != null) {
+                        map.put(entry.quote.getCode(), entry.normalize());
+                    }
+                }
+            }
+            return map;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 一个代码的行情快照
+     */
+    static class Entry {
+        /**
+         * 主进程拿到这条行情的时间
+         */
+        final long time;
+        /**
+         * 请求这条行情时的字段，其他进程需要的字段更多时不能使用
+         */
+        final Set<QuoteField> fields;
+        final StockBean quote;
+
+        Entry(long time, Set<QuoteField> fields, StockBean quote) {
+            this.time = time;
+            this.fields = fields;
+            this.quote = quote;
+        }
+
+        /**
+         * json解析出的fields可能为null或含有本版本不认识的字段(null)
+         */
+        private Entry normalize() {
+            Set<QuoteField> known = EnumSet.noneOf(QuoteField.class);
+            if (fields != null) {
+                fields.stream().filter(Objects::nonNull).forEach(known::add);
+            }
+            return new Entry(time, known, quote);
+        }
+    }
+
+    static class Snapshot {
+        final long seq;
+        /**
+         * 代码 -> 行情
+         */
+        final Map<String, Entry> quotes;
+
+        Snapshot(long seq, Map<String, Entry> quotes) {
+            this.seq = seq;
+            this.quotes = quotes;
+        }
+    }
+
+    /**
+     * 直接读取映射内存，避免先拷贝成byte[]
+     */
+    private static class BufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        BufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+    }
+}
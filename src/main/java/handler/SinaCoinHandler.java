@@ -13,6 +13,7 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.concurrent.CompletableFuture;
 @Deprecated
 public class SinaCoinHandler extends CoinRefreshHandler {
     private final String URL = "http://hq.sinajs.cn/list=";
@@ -25,24 +26,22 @@ public class SinaCoinHandler extends CoinRefreshHandler {
     }
 
     @Override
-    public void handle(List<String> code) {
+    public CompletableFuture<Void> handle(List<String> code) {
         if (code.isEmpty()) {
-            return;
+            return CompletableFuture.completedFuture(null);
         }
 
-        pollStock(code);
+        return pollStock(code);
     }
 
-    private void pollStock(List<String> code) {
+    private CompletableFuture<Void> pollStock(List<String> code) {
         String params = Joiner.on(",").join(code);
-        try {
-            String res = HttpClientPool.getHttpClient().get(URL + params);
-//            String time = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss,SSS"));
-//            System.out.printf("%s,%s%n", time, res);
-            handleResponse(res);
-        } catch (Exception e) {
-            LogUtil.info(e.getMessage());
-        }
+        return HttpClientPool.getHttpClient().getAsync(URL + params)
+                .thenAccept(this::handleResponse)
+                .exceptionally(e -> {
+                    LogUtil.info(e.getMessage());
+                    return null;
+                });
     }
 
     public void handleResponse(String response) {
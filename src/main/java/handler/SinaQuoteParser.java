@@ -0,0 +1,118 @@
+package handler;
+
+import utils.QuoteFieldScanner;
+import utils.ResponseBody;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 新浪行情接口(hq.sinajs.cn)的解析器<br>
+ * 每行格式：{@code var hq_str_sh600519="贵州茅台,1700.00,1690.00,...,2021-01-01,15:00:00,00";}<br>
+ * 替代原来的正则 {@code var hq_str_(\w+?)="(.*?)";} 加 split，单次扫描原始GBK字节，只解码用到的字段。
+ * 非线程安全
+ */
+class SinaQuoteParser {
+    static final Charset GBK = Charset.forName("GBK");
+    private static final byte[] PREFIX = "var hq_str_".getBytes(StandardCharsets.ISO_8859_1);
+
+    static final int NAME = 0;
+    static final int YESTERDAY = 2;
+    static final int NOW = 3;
+    static final int MAX = 4;
+    static final int MIN = 5;
+    static final int TIME = 31;
+
+    private final QuoteFieldScanner fields = new QuoteFieldScanner(',', TIME);
+    private byte[] buf;
+    private int pos;
+    private int limit;
+    private String code;
+
+    private Charset charset = GBK;
+
+    /**
+     * 响应头没有声明编码时按GBK解析
+     */
+    void reset(ResponseBody body) {
+        reset(body.array(), body.length(), body.charset(GBK));
+    }
+
+    void reset(byte[] buf, int length, Charset charset) {
+        this.buf = buf;
+        this.pos = 0;
+        this.limit = length;
+        this.code = null;
+        this.charset = charset;
+        fields.setCharset(charset);
+    }
+
+    /**
+     * 移动到下一条行情，格式不符或字段不足32个的行（停牌、港股等格式）直接跳过
+     *
+     * @return false表示已解析完
+     */
+    boolean next() {
+        while (pos < limit) {
+            int lineStart = pos;
+            int lineEnd = lineStart;
+            while (lineEnd < limit && buf[lineEnd] != '\n') {
+                lineEnd++;
+            }
+            pos = lineEnd + 1;
+            if (!startsWith(lineStart, lineEnd)) {
+                continue;
+            }
+            int codeStart = lineStart + PREFIX.length;
+            int eq = codeStart;
+            while (eq < lineEnd && isWordChar(buf[eq])) {
+                eq++;
+            }
+            if (eq == codeStart || eq + 1 >= lineEnd || buf[eq] != '=' || buf[eq + 1] != '"') {
+                continue;
+            }
+            int recordEnd = fields.scan(buf, eq + 2, lineEnd, '"');
+            // 行尾必须是 ";
+            if (recordEnd + 2 != lineEnd || buf[recordEnd] != '"' || buf[recordEnd + 1] != ';') {
+                continue;
+            }
+            if (fields.lastNonEmpty() < TIME) {
+                continue;
+            }
+            code = new String(buf, codeStart, eq - codeStart, StandardCharsets.ISO_8859_1);
+            return true;
+        }
+        return false;
+    }
+
+    String code() {
+        return code;
+    }
+
+    String name() {
+        return fields.string(NAME, charset);
+    }
+
+    /**
+     * 数字和时间字段
+     */
+    String field(int index) {
+        return fields.ascii(index);
+    }
+
+    private boolean startsWith(int from, int to) {
+        if (to - from < PREFIX.length) {
+            return false;
+        }
+        for (int i = 0; i < PREFIX.length; i++) {
+            if (buf[from + i] != PREFIX[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isWordChar(byte b) {
+        return b >= 'a' && b <= 'z' || b >= 'A' && b <= 'Z' || b >= '0' && b <= '9' || b == '_';
+    }
+}
@@ -0,0 +1,83 @@
+package handler;
+
+import bean.StockBean;
+import com.google.common.base.Joiner;
+import com.google.common.base.Strings;
+import utils.HttpClientPool;
+import utils.MarketSession;
+import utils.ResponseBody;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 新浪行情(hq.sinajs.cn)，只解析沪深格式，港股美股的行会被跳过
+ */
+public class SinaQuoteProvider implements QuoteProvider {
+    private static final int DEFAULT_BATCH_SIZE = 60;
+    private final String URL = "http://hq.sinajs.cn/list=";
+    private final SinaQuoteParser parser = new SinaQuoteParser();
+
+    @Override
+    public String getName() {
+        return "新浪";
+    }
+
+    @Override
+    public Set<MarketSession> getMarkets() {
+        return EnumSet.of(MarketSession.CN);
+    }
+
+    @Override
+    public int getBatchSize() {
+        return StockRefreshHandler.getBatchSize("key_sina_batch_size", DEFAULT_BATCH_SIZE);
+    }
+
+    @Override
+    public CompletableFuture<List<StockBean>> fetch(List<String> codes, Map<String, String[]> codeMap, Set<QuoteField> fields) {
+        CompletableFuture<ResponseBody> request = HttpClientPool.getHttpClient().getBodyAsync(URL + Joiner.on(",").join(codes));
+        return HttpClientPool.propagateCancel(request.thenApply(res -> {
+            try (res) {
+                return parse(res, codeMap, fields);
+            }
+        }), request);
+    }
+
+    List<StockBean> parse(ResponseBody response, Map<String, String[]> codeMap, Set<QuoteField> fields) {
+        List<StockBean> beans = new ArrayList<>();
+        // 回调可能在不同线程并发执行，复用同一个解析器时需要同步
+        synchronized (parser) {
+            parser.reset(response);
+            while (parser.next()) {
+                beans.add(parseQuote(parser, codeMap, fields));
+            }
+        }
+        return beans;
+    }
+
+    private StockBean parseQuote(SinaQuoteParser parser, Map<String, String[]> codeMap, Set<QuoteField> fields) {
+        StockBean bean = new StockBean(parser.code(), codeMap);
+        if (fields.contains(QuoteField.NAME)) {
+            bean.setName(parser.name());
+        }
+        String now = parser.field(SinaQuoteParser.NOW);
+        String yesterday = parser.field(SinaQuoteParser.YESTERDAY);
+
+        bean.setNow(now);
+        bean.setChange(ProfitCalculator.change(now, yesterday));
+        bean.setChangePercent(ProfitCalculator.changePercent(now, yesterday));
+        // 新浪只有时分秒，补齐日期位，表格显示时截掉前8位；刷新时间标签也用它，总是解析
+        bean.setTime(Strings.repeat("0", 8) + parser.field(SinaQuoteParser.TIME));
+        if (fields.contains(QuoteField.RANGE)) {
+            bean.setMax(parser.field(SinaQuoteParser.MAX));
+            bean.setMin(parser.field(SinaQuoteParser.MIN));
+        }
+
+        ProfitCalculator.fillIncome(bean, now);
+        return bean;
+    }
+}
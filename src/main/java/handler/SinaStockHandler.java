@@ -1,26 +1,29 @@
 package handler;
 
 import bean.StockBean;
-import com.google.common.base.Joiner;
-import com.google.common.base.Strings;
-import org.apache.commons.lang.StringUtils;
-import utils.HttpClientPool;
 import utils.LogUtil;
 
 import javax.swing.*;
-import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 public class SinaStockHandler extends StockRefreshHandler {
-    private final String URL = "http://hq.sinajs.cn/list=";
-    private final Pattern DEFAULT_STOCK_PATTERN = Pattern.compile("var hq_str_(\\w+?)=\"(.*?)\";");
+    private final SinaQuoteProvider sina = new SinaQuoteProvider();
+    /**
+     * 新浪只解析A股，港股美股由腾讯请求；新浪失败或熔断时A股也改用腾讯
+     */
+    private final FailoverQuoteProvider provider = new FailoverQuoteProvider(sina, new TencentQuoteProvider());
     private final JLabel refreshTimeLabel;
+    /**
+     * 最近一次取到的行情时间，全部失败时沿用
+     */
+    private volatile String lastQuoteTime = "";
 
     public SinaStockHandler(JTable table, JLabel label) {
         super(table);
@@ -28,15 +31,15 @@ public class SinaStockHandler extends StockRefreshHandler {
     }
 
     @Override
-    public void handle(List<String> code) {
+    public CompletableFuture<Void> handle(List<String> code) {
         if (code.isEmpty()) {
-            return;
+            return CompletableFuture.completedFuture(null);
         }
 
-        pollStock(code);
+        return pollStock(code);
     }
 
-    private void pollStock(List<String> code) {
+    private CompletableFuture<Void> pollStock(List<String> code) {
         //股票编码，英文分号分隔（成本价和成本接在编码后用逗号分隔）
         List<String> codeList = new ArrayList<>();
         Map<String, String[]> codeMap = new HashMap<>();
@@ -52,71 +55,55 @@ public class SinaStockHandler extends StockRefreshHandler {
             codeMap.put(strArray[0], strArray);
         }
 
-        String params = Joiner.on(",").join(codeList);
-        try {
-            String res = HttpClientPool.getHttpClient().get(URL + params);
-//            String time = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss,SSS"));
-//            System.out.printf("%s,%s%n", time, res);
-            handleResponse(res, codeMap);
-        } catch (Exception e) {
-            LogUtil.info(e.getMessage());
-        }
+        // 刷新时间标签取自行情时间，切换到腾讯时也要请求时间，不能用不带时间的简要格式
+        Set<QuoteField> fields = EnumSet.copyOf(getQuoteFields());
+        fields.add(QuoteField.TIME);
+        // 分批并发请求，各批次的行情时间合并后取最早的一个
+        List<String> refreshTimeList = Collections.synchronizedList(new ArrayList<>());
+        return fetchInBatches(codeList, provider.getBatchSize(), batch ->
+                QuoteService.getInstance().fetch(provider, batch, codeMap, fields)
+                        .thenAccept(beans -> refreshTimeList.addAll(update(beans)))
+                        .whenComplete((v, e) -> {
+                            if (e != null) {
+                                LogUtil.info(e.getMessage());
+                            }
+                        }))
+                .thenAccept(failed -> updateRefreshTime(refreshTimeList));
     }
 
-    public void handleResponse(String response, Map<String, String[]> codeMap) {
-        List<String> refreshTimeList = new ArrayList<>();
-        for (String line : response.split("\n")) {
-            Matcher matcher = DEFAULT_STOCK_PATTERN.matcher(line);
-            if (!matcher.matches()) {
-                continue;
-            }
-            String code = matcher.group(1);
-            String[] split = matcher.group(2).split(",");
-            if (split.length < 32) {
-                continue;
+    /**
+     * @return 每条行情的时间，没有时间的不计入
+     */
+    private List<String> update(List<StockBean> beans) {
+        List<String> refreshTimeList = new ArrayList<>(beans.size());
+        for (StockBean bean : beans) {
+            updateData(bean);
+            String time = bean.getTime() == null || bean.getTime().length() <= 8 ? "" : bean.getTime().substring(8);
+            if (time.length() == 6 && time.indexOf(':') < 0) {
+                // 切换到腾讯时为HHmmss，统一成新浪的HH:mm:ss
+                time = time.substring(0, 2) + ":" + time.substring(2, 4) + ":" + time.substring(4);
             }
-            StockBean bean = new StockBean(code, codeMap);
-            bean.setName(split[0]);
-            BigDecimal now = new BigDecimal(split[3]);
-            BigDecimal yesterday = new BigDecimal(split[2]);
-            BigDecimal diff = now.add(yesterday.negate());
-
-            bean.setNow(now.toString());
-            bean.setChange(diff.toString());
-            BigDecimal percent = diff.divide(yesterday, 4, RoundingMode.HALF_UP)
-                    .multiply(BigDecimal.TEN)
-                    .multiply(BigDecimal.TEN)
-                    .setScale(2, RoundingMode.HALF_UP);
-            bean.setChangePercent(percent.toString());
-            bean.setTime(Strings.repeat("0", 8) + split[31]);
-            bean.setMax(split[4]);
-            bean.setMin(split[5]);
-
-            String costPriceStr = bean.getCostPrise();
-            if (StringUtils.isNotEmpty(costPriceStr)) {
-                BigDecimal costPriceDec = new BigDecimal(costPriceStr);
-                BigDecimal incomeDiff = now.add(costPriceDec.negate());
-                BigDecimal incomePercentDec = incomeDiff.divide(costPriceDec, 5, RoundingMode.HALF_UP)
-                        .multiply(BigDecimal.TEN)
-                        .multiply(BigDecimal.TEN)
-                        .setScale(3, RoundingMode.HALF_UP);
-                bean.setIncomePercent(incomePercentDec.toString());
-
-                String bondStr = bean.getBonds();
-                if (StringUtils.isNotEmpty(bondStr)) {
-                    BigDecimal bondDec = new BigDecimal(bondStr);
-                    BigDecimal incomeDec = incomeDiff.multiply(bondDec)
-                            .setScale(2, RoundingMode.HALF_UP);
-                    bean.setIncome(incomeDec.toString());
-                }
+            if (!time.isEmpty()) {
+                refreshTimeList.add(time);
             }
-
-            updateData(bean);
-            refreshTimeList.add(split[31]);
         }
+        return refreshTimeList;
+    }
 
-        String text = refreshTimeList.stream().sorted().findFirst().orElse("");
-        SwingUtilities.invokeLater(() -> refreshTimeLabel.setText(text));
+    /**
+     * 数据源熔断或探测中时在刷新时间后标出，如：10:30:00（新浪熔断）
+     */
+    private void updateRefreshTime(List<String> refreshTimeList) {
+        synchronized (refreshTimeList) {
+            refreshTimeList.stream().sorted().findFirst().ifPresent(time -> lastQuoteTime = time);
+        }
+        String degraded = provider.describeDegraded();
+        String text = degraded.isEmpty() ? lastQuoteTime : lastQuoteTime + "（" + degraded + "）";
+        String health = provider.describeHealth();
+        SwingUtilities.invokeLater(() -> {
+            refreshTimeLabel.setText(text);
+            refreshTimeLabel.setToolTipText("行情时间，" + health);
+        });
     }
 
     @Override
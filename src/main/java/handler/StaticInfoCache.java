@@ -0,0 +1,125 @@
+package handler;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.intellij.ide.util.PropertiesComponent;
+import org.apache.commons.lang.StringUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 证券静态信息（名称）缓存，名称几乎不会变，不必每次刷新都请求<br>
+ * 过期时间内直接使用缓存，过期或没有的才请求；缓存以json保存在配置中，重启IDE后也能立即显示名称
+ */
+class StaticInfoCache {
+    static final long DEFAULT_TTL = TimeUnit.DAYS.toMillis(7);
+    private static final Gson gson = new Gson();
+
+    private final String propertyKey;
+    private final long ttlMillis;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private volatile boolean loaded;
+
+    /**
+     * @param propertyKey 保存缓存的配置项
+     * @param ttlMillis   过期时间
+     */
+    StaticInfoCache(String propertyKey, long ttlMillis) {
+        this.propertyKey = propertyKey;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * @return 名称，过期的也返回；没有缓存时返回null
+     */
+    String getName(String symbol) {
+        load();
+        Entry entry = entries.get(symbol);
+        return entry == null ? null : entry.name;
+    }
+
+    /**
+     * @return 需要请求的代码：没有缓存或已过期
+     */
+    List<String> missing(String[] symbols) {
+        load();
+        long now = System.currentTimeMillis();
+        List<String> result = new ArrayList<>();
+        for (String symbol : symbols) {
+            Entry entry = entries.get(symbol);
+            if (entry == null || now - entry.time >= ttlMillis) {
+                result.add(symbol);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 更新名称并保存
+     *
+     * @param names 代码 -> 名称
+     */
+    void putAll(Map<String, String> names) {
+        if (names.isEmpty()) {
+            return;
+        }
+        load();
+        long now = System.currentTimeMillis();
+        names.forEach((symbol, name) -> {
+            if (StringUtils.isNotEmpty(name)) {
+                entries.put(symbol, new Entry(name, now));
+            }
+        });
+        save();
+    }
+
+    private void load() {
+        if (loaded) {
+            return;
+        }
+        synchronized (this) {
+            if (loaded) {
+                return;
+            }
+            String json = PropertiesComponent.getInstance().getValue(propertyKey);
+            if (StringUtils.isNotEmpty(json)) {
+                try {
+                    Map<String, Entry> saved = gson.fromJson(json, new TypeToken<HashMap<String, Entry>>() {
+                    }.getType());
+                    if (saved != null) {
+                        saved.forEach((symbol, entry) -> {
+                            if (entry != null && entry.name != null) {
+                                entries.put(symbol, entry);
+                            }
+                        });
+                    }
+                } catch (RuntimeException e) {
+                    // 缓存损坏时丢弃，重新请求
+                }
+            }
+            loaded = true;
+        }
+    }
+
+    private synchronized void save() {
+        PropertiesComponent.getInstance().setValue(propertyKey, gson.toJson(new HashMap<>(entries)));
+    }
+
+    private static class Entry {
+        String name;
+        /**
+         * 获取时间
+         */
+        long time;
+
+        Entry(String name, long time) {
+            this.name = name;
+            this.time = time;
+        }
+    }
+}
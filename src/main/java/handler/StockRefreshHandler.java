@@ -6,6 +6,8 @@ import com.intellij.ui.JBColor;
 import com.intellij.ui.table.JBTable;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.math.NumberUtils;
+import com.google.common.collect.Lists;
+import utils.AsyncBatch;
 import utils.PinYinUtils;
 import utils.WindowUtils;
 
@@ -16,9 +18,27 @@ import javax.swing.table.TableRowSorter;
 import java.awt.*;
 import java.util.List;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
-public abstract class StockRefreshHandler extends DefaultTableModel {
+public abstract class StockRefreshHandler extends KeyedTableModel {
     private static String[] columnNames;
+    /**
+     * 按数值排序的列
+     */
+    private static final String SORTED_NUMERIC_COLUMNS = "当前价,涨跌,涨跌幅,最高价,最低价";
+    /**
+     * 同时进行的分批请求数
+     */
+    private static final int MAX_PARALLEL_BATCHES = 4;
+    /**
+     * 各列是否存为{@link NumericCell}：按数值排序的列和按涨跌着色的列
+     */
+    private static boolean[] numericColumns;
+    /**
+     * 显示的列用到的行情字段，数据源据此跳过不需要的字段
+     */
+    private static Set<QuoteField> quoteFields;
     /**
      * 存放【编码】的位置，更新数据时用到
      */
@@ -65,6 +85,8 @@ public abstract class StockRefreshHandler extends DefaultTableModel {
         for (int i = 0; i < configStr.length; i++) {
             columnNames[i] = WindowUtils.remapPinYin(configStr[i]);
         }
+        quoteFields = QuoteField.forColumns(columnNames);
+        numericColumns = NumericCell.flagColumns(columnNames, SORTED_NUMERIC_COLUMNS + ",收益率,收益");
     }
 
     {
@@ -97,23 +119,26 @@ public abstract class StockRefreshHandler extends DefaultTableModel {
             setColumnIdentifiers(PinYinUtils.toPinYin(columnNames));
         }
         TableRowSorter<DefaultTableModel> rowSorter = new TableRowSorter<>(this);
-        Comparator<Object> doubleComparator = (o1, o2) -> {
-            Double v1 = NumberUtils.toDouble(StringUtils.remove((String) o1, '%'));
-            Double v2 = NumberUtils.toDouble(StringUtils.remove((String) o2, '%'));
-            return v1.compareTo(v2);
-        };
-        Arrays.stream("当前价,涨跌,涨跌幅,最高价,最低价".split(",")).map(name -> WindowUtils.getColumnIndexByName(columnNames, name))
-                .filter(index -> index >= 0).forEach(index -> rowSorter.setComparator(index, doubleComparator));
+        Arrays.stream(SORTED_NUMERIC_COLUMNS.split(",")).map(name -> WindowUtils.getColumnIndexByName(columnNames, name))
+                .filter(index -> index >= 0).forEach(index -> rowSorter.setComparator(index, NumericCell.COMPARATOR));
         table.setRowSorter(rowSorter);
         columnColors(colorful);
     }
 
+    /**
+     * @return 表格显示的列用到的行情字段
+     */
+    protected static Set<QuoteField> getQuoteFields() {
+        return quoteFields;
+    }
+
     /**
      * 从网络更新数据
      *
      * @param code
+     * @return 本次刷新结束时完成，定时任务据此避免重叠执行
      */
-    public abstract void handle(List<String> code);
+    public abstract CompletableFuture<Void> handle(List<String> code);
 
     /**
      * 设置表格条纹（斑马线）<br>
@@ -129,9 +154,33 @@ public abstract class StockRefreshHandler extends DefaultTableModel {
         }
     }
 
+    /**
+     * 每批请求的最大代码数，读取隐藏配置propertyKey，未配置或不合法时为defaultSize
+     */
+    protected static int getBatchSize(String propertyKey, int defaultSize) {
+        int batchSize = NumberUtils.toInt(PropertiesComponent.getInstance().getValue(propertyKey), defaultSize);
+        return batchSize > 0 ? batchSize : defaultSize;
+    }
+
+    /**
+     * 代码较多时分批并发请求，避免URL过长、超过接口单次数量限制，也不必等最慢的一个大请求
+     *
+     * @param codes     全部代码
+     * @param batchSize 每批最大代码数
+     * @param fetch     请求并处理一批
+     * @return 所有批次结束后完成，结果为失败的批次数
+     */
+    protected static <T> CompletableFuture<Integer> fetchInBatches(List<T> codes, int batchSize,
+                                                                   Function<List<T>, CompletableFuture<?>> fetch) {
+        return AsyncBatch.forEachLimited(Lists.partition(codes, batchSize), MAX_PARALLEL_BATCHES, fetch);
+    }
+
+    /**
+     * 按配置建立表格，有行情快照的代码直接显示最近的行情，不必等本次请求返回
+     */
     public void setupTable(List<String> code) {
         for (String s : code) {
-            updateData(new StockBean(s));
+            updateData(QuoteService.getInstance().restore(new StockBean(s)));
         }
     }
 
@@ -144,7 +193,7 @@ public abstract class StockRefreshHandler extends DefaultTableModel {
         DefaultTableCellRenderer cellRenderer = new DefaultTableCellRenderer() {
             @Override
             public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int column) {
-                double temp = NumberUtils.toDouble(StringUtils.remove(Objects.toString(value), "%"));
+                double temp = NumericCell.valueOf(value);
                 if (temp > 0) {
                     if (colorful) {
                         setForeground(JBColor.RED);
@@ -185,55 +234,8 @@ public abstract class StockRefreshHandler extends DefaultTableModel {
         if (convertData == null) {
             return;
         }
-        // 获取行
-        int index = findRowIndex(codeColumnIndex, bean.getCode());
-        if (index >= 0) {
-            updateRow(index, convertData);
-        } else {
-            addRow(convertData);
-        }
-    }
-
-    /**
-     * 参考源码{@link DefaultTableModel#setValueAt}，此为直接更新行，提高点效率
-     *
-     * @param rowIndex
-     * @param rowData
-     */
-    protected void updateRow(int rowIndex, Vector<Object> rowData) {
-        dataVector.set(rowIndex, rowData);
-        // 通知listeners刷新ui
-        fireTableRowsUpdated(rowIndex, rowIndex);
-    }
-
-    /**
-     * 参考源码{@link DefaultTableModel#removeRow(int)}，此为直接清除全部行，提高点效率
-     */
-    public void clearRow() {
-        int size = dataVector.size();
-        if (0 < size) {
-            dataVector.clear();
-            // 通知listeners刷新ui
-            fireTableRowsDeleted(0, size - 1);
-        }
-    }
-
-    /**
-     * 查找列项中的valueName所在的行
-     *
-     * @param columnIndex 列号
-     * @param value       值
-     * @return 如果不存在返回-1
-     */
-    protected int findRowIndex(int columnIndex, String value) {
-        int rowCount = getRowCount();
-        for (int rowIndex = 0; rowIndex < rowCount; rowIndex++) {
-            Object valueAt = getValueAt(rowIndex, columnIndex);
-            if (StringUtils.equalsIgnoreCase(value, valueAt.toString())) {
-                return rowIndex;
-            }
-        }
-        return -1;
+        // 交给EDT批量更新
+        enqueueRow(bean.getCode(), convertData);
     }
 
     private Vector<Object> convertData(StockBean stockBean) {
@@ -243,13 +245,14 @@ public abstract class StockRefreshHandler extends DefaultTableModel {
         // 与columnNames中的元素保持一致
         Vector<Object> v = new Vector<Object>(columnNames.length);
         for (int i = 0; i < columnNames.length; i++) {
-            v.addElement(stockBean.getValueByColumn(columnNames[i], colorful));
+            String value = stockBean.getValueByColumn(columnNames[i], colorful);
+            v.addElement(numericColumns[i] ? NumericCell.of(value) : value);
         }
         return v;
     }
 
     @Override
-    public boolean isCellEditable(int row, int column) {
-        return false;
+    protected int getKeyColumnIndex() {
+        return codeColumnIndex;
     }
 }
@@ -0,0 +1,188 @@
+package handler;
+
+import utils.QuoteFieldScanner;
+import utils.ResponseBody;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+/**
+ * 腾讯行情接口(qt.gtimg.cn)的解析器<br>
+ * 每行格式：{@code v_sh600519="1~贵州茅台~600519~1700.00~...~";}，约80个字段，表格只用到其中几个。
+ * 直接扫描原始GBK字节，按下标取需要的字段，一个实例可反复使用。<br>
+ * 简要格式(代码加s_前缀)每行只有十来个字段：{@code v_s_sh600519="1~贵州茅台~600519~1700.00~-10.00~-0.58~...";}，
+ * 没有时间和最高最低价，只需要名称和涨跌时使用，见{@link #TencentQuoteParser(boolean)}
+ * <pre>
+ *     Quote quote = new Quote();
+ *     parser.reset(bytes);
+ *     while (parser.next(quote, fields)) {
+ *         quote.code; quote.name; quote.now;
+ *     }
+ * </pre>
+ * 非线程安全
+ */
+class TencentQuoteParser {
+    static final Charset GBK = Charset.forName("GBK");
+
+    static final int NAME = 1;
+    static final int NOW = 3;
+    static final int TIME = 30;
+    static final int CHANGE = 31;
+    static final int CHANGE_PERCENT = 32;
+    static final int MAX = 33;
+    static final int MIN = 34;
+
+    /**
+     * 简要格式中涨跌、涨跌幅的位置，名称和当前价与完整格式相同
+     */
+    static final int BRIEF_CHANGE = 4;
+    static final int BRIEF_CHANGE_PERCENT = 5;
+    private static final String BRIEF_PREFIX = "s_";
+
+    private final boolean brief;
+    /**
+     * 有效行至少要有的字段下标
+     */
+    private final int required;
+    private final QuoteFieldScanner fields;
+    private byte[] buf;
+    private int pos;
+    private int limit;
+    private String code;
+
+    private Charset charset = GBK;
+
+    TencentQuoteParser() {
+        this(false);
+    }
+
+    /**
+     * @param brief 是否解析简要格式
+     */
+    TencentQuoteParser(boolean brief) {
+        this.brief = brief;
+        this.required = brief ? BRIEF_CHANGE_PERCENT : MIN;
+        this.fields = new QuoteFieldScanner('~', required);
+    }
+
+    /**
+     * 响应头没有声明编码时按GBK解析
+     */
+    void reset(ResponseBody body) {
+        reset(body.array(), body.length(), body.charset(GBK));
+    }
+
+    void reset(byte[] buf, int length, Charset charset) {
+        this.buf = buf;
+        this.pos = 0;
+        this.limit = length;
+        this.code = null;
+        this.charset = charset;
+        fields.setCharset(charset);
+    }
+
+    /**
+     * 移动到下一条行情，字段不全的行（如无效编码返回的 v_pv_none_match="1";）直接跳过
+     *
+     * @return false表示已解析完
+     */
+    boolean next() {
+        while (pos < limit) {
+            int lineStart = pos;
+            int lineEnd = indexOf((byte) '\n', lineStart, limit);
+            pos = lineEnd + 1;
+            // 编码部分都是ASCII，可以直接找分隔符
+            int eq = indexOf((byte) '=', lineStart, lineEnd);
+            int underscore = indexOf((byte) '_', lineStart, eq);
+            if (eq >= lineEnd || underscore >= eq || eq + 1 >= lineEnd || buf[eq + 1] != '"') {
+                continue;
+            }
+            fields.scan(buf, eq + 2, lineEnd, '"');
+            if (!fields.has(required)) {
+                continue;
+            }
+            int codeStart = underscore + 1;
+            if (brief && startsWith(codeStart, eq, BRIEF_PREFIX)) {
+                codeStart += BRIEF_PREFIX.length();
+            }
+            code = new String(buf, codeStart, eq - codeStart, StandardCharsets.ISO_8859_1);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 移动到下一条行情，把表格要显示的字段填到quote中，没请求的字段置为null
+     *
+     * @param quote  复用的行情记录，每条行情覆盖一次
+     * @param fields 需要的字段分组
+     * @return false表示已解析完
+     */
+    boolean next(Quote quote, Set<QuoteField> fields) {
+        if (!next()) {
+            return false;
+        }
+        quote.code = code;
+        quote.name = fields.contains(QuoteField.NAME) ? name() : null;
+        quote.now = field(NOW);
+        quote.change = field(brief ? BRIEF_CHANGE : CHANGE);
+        quote.changePercent = field(brief ? BRIEF_CHANGE_PERCENT : CHANGE_PERCENT);
+        // 简要格式没有时间和最高最低价
+        quote.time = !brief && fields.contains(QuoteField.TIME) ? field(TIME) : null;
+        boolean range = !brief && fields.contains(QuoteField.RANGE);
+        quote.max = range ? field(MAX) : null;
+        quote.min = range ? field(MIN) : null;
+        return true;
+    }
+
+    String code() {
+        return code;
+    }
+
+    String name() {
+        return fields.string(NAME, charset);
+    }
+
+    /**
+     * 数字和时间字段
+     */
+    String field(int index) {
+        return fields.ascii(index);
+    }
+
+    private boolean startsWith(int from, int to, String prefix) {
+        if (to - from < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (buf[from + i] != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int indexOf(byte b, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buf[i] == b) {
+                return i;
+            }
+        }
+        return to;
+    }
+
+    /**
+     * 一条行情中表格用到的字段，由{@link #next(Quote, Set)}填充，同一个实例反复使用
+     */
+    static final class Quote {
+        String code;
+        String name;
+        String now;
+        String change;
+        String changePercent;
+        String time;
+        String max;
+        String min;
+    }
+}
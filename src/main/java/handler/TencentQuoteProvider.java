@@ -0,0 +1,96 @@
+package handler;
+
+import bean.StockBean;
+import utils.HttpClientPool;
+import utils.MarketSession;
+import utils.ResponseBody;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 腾讯行情(qt.gtimg.cn)，沪深、港股、美股都支持<br>
+ * 表格不显示时间和最高最低价时请求简要格式(s_前缀)
+ */
+public class TencentQuoteProvider implements QuoteProvider {
+    private static final int DEFAULT_BATCH_SIZE = 60;
+    private static final String BRIEF_PREFIX = "s_";
+    private final TencentQuoteParser parser = new TencentQuoteParser();
+    private final TencentQuoteParser briefParser = new TencentQuoteParser(true);
+    /**
+     * 与解析器配对复用，在解析器的锁内使用
+     */
+    private final TencentQuoteParser.Quote quote = new TencentQuoteParser.Quote();
+    private final TencentQuoteParser.Quote briefQuote = new TencentQuoteParser.Quote();
+
+    @Override
+    public String getName() {
+        return "腾讯";
+    }
+
+    @Override
+    public Set<MarketSession> getMarkets() {
+        return EnumSet.of(MarketSession.CN, MarketSession.HK, MarketSession.US);
+    }
+
+    @Override
+    public int getBatchSize() {
+        return StockRefreshHandler.getBatchSize("key_tencent_batch_size", DEFAULT_BATCH_SIZE);
+    }
+
+    @Override
+    public CompletableFuture<List<StockBean>> fetch(List<String> codes, Map<String, String[]> codeMap, Set<QuoteField> fields) {
+        // 不显示时间和最高最低价时用简要格式，每只股票的响应从约600字节减到约80字节
+        boolean brief = !fields.contains(QuoteField.RANGE) && !fields.contains(QuoteField.TIME);
+        String query = brief ? BRIEF_PREFIX + String.join("," + BRIEF_PREFIX, codes) : String.join(",", codes);
+        CompletableFuture<ResponseBody> request = HttpClientPool.getHttpClient().getBodyAsync("http://qt.gtimg.cn/q=" + query);
+        return HttpClientPool.propagateCancel(request.thenApply(result -> {
+            try (result) {
+                return brief ? parseBrief(result, codeMap) : parse(result, codeMap, fields);
+            }
+        }), request);
+    }
+
+    List<StockBean> parse(ResponseBody result, Map<String, String[]> codeMap, Set<QuoteField> fields) {
+        return parse(parser, quote, result, codeMap, fields);
+    }
+
+    List<StockBean> parseBrief(ResponseBody result, Map<String, String[]> codeMap) {
+        return parse(briefParser, briefQuote, result, codeMap, EnumSet.of(QuoteField.NAME, QuoteField.PRICE));
+    }
+
+    /**
+     * 解析器把字段填到复用的quote中，这里只为每只股票创建交给表格的StockBean
+     */
+    private List<StockBean> parse(TencentQuoteParser parser, TencentQuoteParser.Quote quote, ResponseBody result,
+                                  Map<String, String[]> codeMap, Set<QuoteField> fields) {
+        List<StockBean> beans = new ArrayList<>();
+        // 回调可能在不同线程并发执行，复用同一个解析器时需要同步
+        synchronized (parser) {
+            parser.reset(result);
+            while (parser.next(quote, fields)) {
+                StockBean bean = new StockBean(quote.code, codeMap);
+                if (quote.name != null) {
+                    bean.setName(quote.name);
+                }
+                bean.setNow(quote.now);
+                bean.setChange(quote.change);
+                bean.setChangePercent(quote.changePercent);
+                if (quote.time != null) {
+                    bean.setTime(quote.time);
+                }
+                if (quote.max != null) {
+                    bean.setMax(quote.max);
+                    bean.setMin(quote.min);
+                }
+                ProfitCalculator.fillIncome(bean, quote.now);
+                beans.add(bean);
+            }
+        }
+        return beans;
+    }
+}
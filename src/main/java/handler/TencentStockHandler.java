@@ -1,20 +1,20 @@
 package handler;
 
-import bean.StockBean;
-import org.apache.commons.lang.StringUtils;
-import utils.HttpClientPool;
 import utils.LogUtil;
 
 import javax.swing.*;
-import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public class TencentStockHandler extends StockRefreshHandler {
-    private String urlPara;
+    /**
+     * 腾讯失败或熔断时改用新浪（新浪只支持沪深）
+     */
+    private final FailoverQuoteProvider provider = new FailoverQuoteProvider(new TencentQuoteProvider(), new SinaQuoteProvider());
+    private List<String> codeList;
     private HashMap<String, String[]> codeMap;
     private JLabel refreshTimeLabel;
 
@@ -25,12 +25,12 @@ public class TencentStockHandler extends StockRefreshHandler {
     }
 
     @Override
-    public void handle(List<String> code) {
+    public CompletableFuture<Void> handle(List<String> code) {
 
         //LogUtil.info("Leeks 更新Stock编码数据.");
 //        clearRow();
         if (code.isEmpty()) {
-            return;
+            return CompletableFuture.completedFuture(null);
         }
 
         //股票编码，英文分号分隔（成本价和成本接在编码后用逗号分隔）
@@ -48,8 +48,8 @@ public class TencentStockHandler extends StockRefreshHandler {
             codeMap.put(strArray[0], strArray);
         }
 
-        urlPara = String.join(",", codeList);
-        stepAction();
+        this.codeList = codeList;
+        return stepAction();
 
     }
 
@@ -58,60 +58,28 @@ public class TencentStockHandler extends StockRefreshHandler {
         LogUtil.info("Leeks 准备停止更新Stock编码数据.");
     }
 
-    private void stepAction() {
-        if (StringUtils.isEmpty(urlPara)) {
-            return;
-        }
-        try {
-            String result = HttpClientPool.getHttpClient().get("http://qt.gtimg.cn/q=" + urlPara);
-            parse(result);
-            updateUI();
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-    }
-
-    private void parse(String result) {
-        String[] lines = result.split("\n");
-        for (String line : lines) {
-            String code = line.substring(line.indexOf("_") + 1, line.indexOf("="));
-            String dataStr = line.substring(line.indexOf("=") + 2, line.length() - 2);
-            String[] values = dataStr.split("~");
-            StockBean bean = new StockBean(code, codeMap);
-            bean.setName(values[1]);
-            bean.setNow(values[3]);
-            bean.setChange(values[31]);
-            bean.setChangePercent(values[32]);
-            bean.setTime(values[30]);
-            bean.setMax(values[33]);//33
-            bean.setMin(values[34]);//34
-
-            BigDecimal now = new BigDecimal(values[3]);
-            String costPriceStr = bean.getCostPrise();
-            if (StringUtils.isNotEmpty(costPriceStr)) {
-                BigDecimal costPriceDec = new BigDecimal(costPriceStr);
-                BigDecimal incomeDiff = now.add(costPriceDec.negate());
-                if (costPriceDec.compareTo(BigDecimal.ZERO) <= 0) {
-                    bean.setIncomePercent("0");
-                } else {
-                    BigDecimal incomePercentDec = incomeDiff.divide(costPriceDec, 5, RoundingMode.HALF_UP)
-                            .multiply(BigDecimal.TEN)
-                            .multiply(BigDecimal.TEN)
-                            .setScale(3, RoundingMode.HALF_UP);
-                    bean.setIncomePercent(incomePercentDec.toString());
-                }
-
-                String bondStr = bean.getBonds();
-                if (StringUtils.isNotEmpty(bondStr)) {
-                    BigDecimal bondDec = new BigDecimal(bondStr);
-                    BigDecimal incomeDec = incomeDiff.multiply(bondDec)
-                            .setScale(2, RoundingMode.HALF_UP);
-                    bean.setIncome(incomeDec.toString());
-                }
-            }
-
-            updateData(bean);
+    private CompletableFuture<Void> stepAction() {
+        if (codeList == null || codeList.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
         }
+        // 分批异步请求，回调中解析，全部结束后更新一次刷新时间
+        HashMap<String, String[]> requestCodeMap = codeMap;
+        List<String> requestCodes = codeList;
+        int batchSize = provider.getBatchSize();
+        return fetchInBatches(requestCodes, batchSize, batch ->
+                QuoteService.getInstance().fetch(provider, batch, requestCodeMap, getQuoteFields())
+                        .thenAccept(beans -> beans.forEach(this::updateData))
+                        .whenComplete((v, e) -> {
+                            if (e != null) {
+                                LogUtil.info("Leeks 行情请求失败：" + e.getMessage());
+                            }
+                        }))
+                .thenAccept(failed -> {
+                    // 全部批次都失败时保留上一次的刷新时间
+                    if (failed < (requestCodes.size() + batchSize - 1) / batchSize) {
+                        updateUI();
+                    }
+                });
     }
 
     public void updateUI() {
@@ -119,7 +87,7 @@ public class TencentStockHandler extends StockRefreshHandler {
             @Override
             public void run() {
                 refreshTimeLabel.setText(LocalDateTime.now().format(TianTianFundHandler.timeFormatter));
-                refreshTimeLabel.setToolTipText("最后刷新时间");
+                refreshTimeLabel.setToolTipText("最后刷新时间，" + provider.describeHealth());
             }
         });
     }
@@ -1,26 +1,48 @@
 package handler;
 
 import bean.FundBean;
-import com.google.gson.Gson;
-import org.apache.commons.lang.StringUtils;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.intellij.ide.util.PropertiesComponent;
+import org.apache.commons.lang.math.NumberUtils;
+import utils.AsyncBatch;
 import utils.HttpClientPool;
 import utils.LogUtil;
+import utils.MarketSession;
+import utils.ResponseBody;
 
 import javax.swing.*;
-import java.math.BigDecimal;
-import java.math.RoundingMode;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class TianTianFundHandler extends FundRefreshHandler {
     public final static DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern("HH:mm:ss");
-    private static Gson gson = new Gson();
+    /**
+     * 响应格式为jsonpgz({...});
+     */
+    private static final int JSONP_PREFIX = "jsonpgz(".length();
+    private static final int JSONP_SUFFIX = ");".length();
+
+    private static final int DEFAULT_FETCH_CONCURRENCY = 6;
 
     private JLabel refreshTimeLabel;
+    /**
+     * 当前这一轮刷新，结束前不会开始下一轮
+     */
+    private volatile CompletableFuture<Integer> currentCycle;
+    /**
+     * 编码 -> 最近一次返回的净值日期(jzrq)
+     */
+    private final Map<String, String> navDates = new ConcurrentHashMap<>();
 
     public TianTianFundHandler(JTable table, JLabel refreshTimeLabel) {
         super(table);
@@ -28,22 +50,27 @@ public class TianTianFundHandler extends FundRefreshHandler {
     }
 
     @Override
-    public void handle(List<String> code) {
+    public CompletableFuture<Void> handle(List<String> code) {
         //LogUtil.info("Leeks 更新Fund编码数据.");
 
         if (code.isEmpty()) {
-            return;
+            return CompletableFuture.completedFuture(null);
         }
 
-        stepAction(code);
+        return stepAction(code);
     }
 
     @Override
     public void stopHandle() {
         LogUtil.info("Leeks 准备停止更新Fund编码数据.");
+        CompletableFuture<Integer> cycle = currentCycle;
+        if (cycle != null) {
+            // 已发出的请求照常结束，不再发起新的
+            cycle.cancel(false);
+        }
     }
 
-    private void stepAction(List<String> codes) {
+    private CompletableFuture<Void> stepAction(List<String> codes) {
 //        LogUtil.info("Leeks 刷新基金数据.");
         List<String> codeList = new ArrayList<>();
         Map<String, String[]> codeMap = new HashMap<>();
@@ -59,57 +86,131 @@ public class TianTianFundHandler extends FundRefreshHandler {
             codeMap.put(strArray[0], strArray);
         }
 
-        for (String code : codeList) {
-            new Thread(() -> {
-                try {
-                    String result = HttpClientPool.getHttpClient().get("http://fundgz.1234567.com.cn/js/" + code + ".js?rt=" + System.currentTimeMillis());
-                    String json = result.substring(8, result.length() - 2);
-                    if (!json.isEmpty()) {
-                        FundBean bean = gson.fromJson(json, FundBean.class);
-                        FundBean.loadFund(bean, codeMap);
-
-                        BigDecimal now = new BigDecimal(bean.getGsz());
-                        String costPriceStr = bean.getCostPrise();
-                        if (StringUtils.isNotEmpty(costPriceStr)) {
-                            BigDecimal costPriceDec = new BigDecimal(costPriceStr);
-                            BigDecimal incomeDiff = now.add(costPriceDec.negate());
-                            if (costPriceDec.compareTo(BigDecimal.ZERO) <= 0) {
-                                bean.setIncomePercent("0");
-                            } else {
-                                BigDecimal incomePercentDec = incomeDiff.divide(costPriceDec, 8, RoundingMode.HALF_UP)
-                                        .multiply(BigDecimal.TEN)
-                                        .multiply(BigDecimal.TEN)
-                                        .setScale(3, RoundingMode.HALF_UP);
-                                bean.setIncomePercent(incomePercentDec.toString());
+        CompletableFuture<Integer> previous = currentCycle;
+        if (previous != null && !previous.isDone()) {
+            // 上一轮还没结束，跳过本次，避免请求越积越多
+            LogUtil.info("Leeks 上一轮基金刷新尚未完成，跳过本次");
+            return previous.thenApply(failed -> null);
+        }
+        navDates.keySet().retainAll(codeList);
+        long startTime = System.currentTimeMillis();
+        CompletableFuture<Integer> cycle = AsyncBatch.forEachLimited(codeList, getFetchConcurrency(), code ->
+                HttpClientPool.getHttpClient().getBodyAsync("http://fundgz.1234567.com.cn/js/" + code + ".js?rt=" + System.currentTimeMillis())
+                        .thenAccept(result -> {
+                            try (result) {
+                                handleResponse(code, result, codeMap);
                             }
-
-                            String bondStr = bean.getBonds();
-                            if (StringUtils.isNotEmpty(bondStr)) {
-                                BigDecimal bondDec = new BigDecimal(bondStr);
-                                BigDecimal incomeDec = incomeDiff.multiply(bondDec)
-                                        .setScale(2, RoundingMode.HALF_UP);
-                                bean.setIncome(incomeDec.toString());
+                        })
+                        .whenComplete((v, e) -> {
+                            if (e != null) {
+                                e.printStackTrace();
                             }
-                        }
-
-                        updateData(bean);
-                    } else {
-                        LogUtil.info("Fund编码:[" + code + "]无法获取数据");
-                    }
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
-            }).start();
+                        }));
+        currentCycle = cycle;
+        // 本轮全部请求结束后才更新刷新时间
+        CompletableFuture<Void> result = cycle.thenAccept(failed -> updateUI(codeList.size(), failed, System.currentTimeMillis() - startTime));
+        // 刷新超时被取消时这一轮也随之结束，下一次刷新不会一直被跳过
+        result.whenComplete((v, e) -> {
+            if (result.isCancelled()) {
+                cycle.cancel(false);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 收盘后是否还要继续刷新：有基金的净值日期还停在上一个交易日，即当日正式净值还没公布<br>
+     * QDII等净值晚一天以上公布的基金，当晚等不到，不计在内
+     */
+    public boolean isNavPending() {
+        String previous = MarketSession.FUND.previousTradingDay(MarketSession.FUND.today()).toString();
+        return navDates.containsValue(previous);
+    }
+
+    private void handleResponse(String code, ResponseBody result, Map<String, String[]> codeMap) {
+        if (result.length() <= JSONP_PREFIX + JSONP_SUFFIX) {
+            LogUtil.info("Fund编码:[" + code + "]无法获取数据");
+            return;
+        }
+        FundBean bean = decode(result.reader(StandardCharsets.UTF_8));
+        FundBean.loadFund(bean, codeMap);
+        if (bean.getJzrq() != null) {
+            navDates.put(code, bean.getJzrq());
         }
-        updateUI();
+
+        ProfitCalculator.fillIncome(bean, bean.getGsz());
+
+        updateData(bean);
+    }
+
+    /**
+     * 跳过jsonp包装直接从响应字节流式解析，只读取表格用到的字段
+     */
+    static FundBean decode(Reader jsonp) {
+        try {
+            jsonp.skip(JSONP_PREFIX);
+            return decodeJson(jsonp);
+        } catch (IOException e) {
+            // 读的是内存中的字节，只有格式错误(MalformedJsonException)会走到这里，与原来的gson解析一致抛出运行时异常
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static FundBean decodeJson(Reader json) throws IOException {
+        JsonReader reader = new JsonReader(json);
+        FundBean bean = new FundBean();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "fundcode":
+                    bean.setFundCode(reader.nextString());
+                    break;
+                case "name":
+                    bean.setFundName(reader.nextString());
+                    break;
+                case "jzrq":
+                    bean.setJzrq(reader.nextString());
+                    break;
+                case "dwjz":
+                    bean.setDwjz(reader.nextString());
+                    break;
+                case "gsz":
+                    bean.setGsz(reader.nextString());
+                    break;
+                case "gszzl":
+                    bean.setGszzl(reader.nextString());
+                    break;
+                case "gztime":
+                    bean.setGztime(reader.nextString());
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return bean;
+    }
+
+    /**
+     * 同时进行的请求数，隐藏配置key_fund_fetch_concurrency
+     */
+    private static int getFetchConcurrency() {
+        String value = PropertiesComponent.getInstance().getValue("key_fund_fetch_concurrency");
+        int concurrency = NumberUtils.toInt(value, DEFAULT_FETCH_CONCURRENCY);
+        return concurrency > 0 ? concurrency : DEFAULT_FETCH_CONCURRENCY;
     }
 
-    public void updateUI() {
+    private void updateUI(int total, int failed, long costMillis) {
         SwingUtilities.invokeLater(new Runnable() {
             @Override
             public void run() {
                 refreshTimeLabel.setText(LocalDateTime.now().format(timeFormatter));
-                refreshTimeLabel.setToolTipText("最后刷新时间");
+                refreshTimeLabel.setToolTipText(String.format("最后刷新时间，共%d个，失败%d个，耗时%dms", total, failed, costMillis));
             }
         });
     }
@@ -1,61 +1,68 @@
 package handler;
 
 import bean.CoinBean;
-import bean.YahooResponse;
 import com.google.common.base.Joiner;
-import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import utils.HttpClientPool;
 import utils.LogUtil;
+import utils.ResponseBody;
 
 import javax.swing.*;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 public class YahooCoinHandler extends CoinRefreshHandler {
     private final String URL = "https://query1.finance.yahoo.com/v7/finance/quote?&symbols=";
     private final String KEYS = "&fields=regularMarketChange,regularMarketChangePercent,regularMarketPrice,regularMarketTime,regularMarketDayHigh,regularMarketDayLow";
     private final JLabel refreshTimeLabel;
 
-    private final Gson gson = new Gson();
-
     public YahooCoinHandler(JTable table, JLabel label) {
         super(table);
         this.refreshTimeLabel = label;
     }
 
     @Override
-    public void handle(List<String> code) {
+    public CompletableFuture<Void> handle(List<String> code) {
         if (code.isEmpty()) {
-            return;
+            return CompletableFuture.completedFuture(null);
         }
 
-        pollStock(code);
+        return pollStock(code);
     }
 
-    private void pollStock(List<String> code) {
+    private CompletableFuture<Void> pollStock(List<String> code) {
         if (code.isEmpty()){
-            return;
+            return CompletableFuture.completedFuture(null);
         }
         String params = Joiner.on(",").join(code);
-        try {
-            String res = HttpClientPool.getHttpClient().get(URL + params + KEYS);
-//            String time = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss,SSS"));
-//            System.out.printf("%s,%s%n", time, res);
-            handleResponse(res);
-        } catch (Exception e) {
-            LogUtil.info(e.getMessage());
-        }
+        return HttpClientPool.getHttpClient().getBodyAsync(URL + params + KEYS)
+                .thenAccept(body -> {
+                    try (body) {
+                        handleResponse(body);
+                    }
+                })
+                .exceptionally(e -> {
+                    LogUtil.info(e.getMessage());
+                    return null;
+                });
     }
 
-    public void handleResponse(String response) {
-//        System.out.println("解析虚拟币："+response);
+    /**
+     * 直接从响应字节流式解析，不先解码成整段字符串
+     */
+    public void handleResponse(ResponseBody response) {
         List<String> refreshTimeList = new ArrayList<>();
         try{
-            YahooResponse yahooResponse = gson.fromJson(response, YahooResponse.class);
-            for (CoinBean coinBean : yahooResponse.getQuoteResponse().getResult()) {
+            decode(response.reader(StandardCharsets.UTF_8), coinBean -> {
                 updateData(coinBean);
                 refreshTimeList.add(coinBean.getValueByColumn("更新时间",false));
-            }
+            });
         }catch (Exception e){
             System.out.println(e.toString());
         }
@@ -64,6 +71,83 @@ public class YahooCoinHandler extends CoinRefreshHandler {
         SwingUtilities.invokeLater(() -> refreshTimeLabel.setText(text));
     }
 
+    /**
+     * 流式解析quoteResponse.result，只读取表格用到的字段，其余字段跳过<br>
+     * 同一个bean在每条结果间复用，consumer返回后不能再持有它
+     *
+     * @param consumer 每解析完一条结果回调一次
+     */
+    static void decode(Reader json, Consumer<CoinBean> consumer) throws IOException {
+        JsonReader reader = new JsonReader(json);
+        CoinBean bean = new CoinBean(null);
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (!"quoteResponse".equals(reader.nextName()) || reader.peek() != JsonToken.BEGIN_OBJECT) {
+                reader.skipValue();
+                continue;
+            }
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (!"result".equals(reader.nextName()) || reader.peek() != JsonToken.BEGIN_ARRAY) {
+                    reader.skipValue();
+                    continue;
+                }
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    readCoin(reader, bean);
+                    consumer.accept(bean);
+                }
+                reader.endArray();
+            }
+            reader.endObject();
+        }
+        reader.endObject();
+    }
+
+    private static void readCoin(JsonReader reader, CoinBean bean) throws IOException {
+        bean.setSymbol(null);
+        bean.setRegularMarketPrice(0);
+        bean.setRegularMarketDayHigh(0);
+        bean.setRegularMarketDayLow(0);
+        bean.setRegularMarketChange(0);
+        bean.setRegularMarketChangePercent(0);
+        bean.setTimeStamp(0);
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "symbol":
+                    bean.setSymbol(reader.nextString());
+                    break;
+                case "regularMarketPrice":
+                    bean.setRegularMarketPrice(reader.nextDouble());
+                    break;
+                case "regularMarketDayHigh":
+                    bean.setRegularMarketDayHigh(reader.nextDouble());
+                    break;
+                case "regularMarketDayLow":
+                    bean.setRegularMarketDayLow(reader.nextDouble());
+                    break;
+                case "regularMarketChange":
+                    bean.setRegularMarketChange(reader.nextDouble());
+                    break;
+                case "regularMarketChangePercent":
+                    bean.setRegularMarketChangePercent(reader.nextDouble());
+                    break;
+                case "regularMarketTime":
+                    bean.setTimeStamp(reader.nextLong());
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
     @Override
     public void stopHandle() {
         LogUtil.info("leeks stock 自动刷新关闭!");
@@ -0,0 +1,419 @@
+package quartz;
+
+import com.intellij.util.ExceptionUtil;
+import org.jetbrains.annotations.NotNull;
+import org.quartz.CronExpression;
+import utils.LogUtil;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 股票、基金、货币三个tab共用的定时刷新，代替每个tab各自创建的Quartz调度器<br>
+ * 只用一个线程计算触发时间，cron表达式仍由{@link CronExpression}解析，支持;分隔多个表达式。
+ * 同一个tab上一次刷新还没结束时，本次定时触发直接跳过，立即执行的刷新等上一次结束后再执行；
+ * 刷新超过{@value #JOB_TIMEOUT_SECONDS}秒未结束按失败处理，不再占着这个tab，超时从提交时开始计算，
+ * 刷新在task里阻塞也同样生效。每次触发都会记录调度延迟
+ * <pre>
+ *     RefreshScheduler.getInstance().runJob(NAME, cronExpression, () -> handler.handle(codes));
+ *     RefreshScheduler.getInstance().stopJob(NAME);
+ * </pre>
+ */
+public class RefreshScheduler {
+    private static final RefreshScheduler INSTANCE = new RefreshScheduler();
+    /**
+     * 股票、基金、货币各一个
+     */
+    private static final int MAX_WORKERS = 3;
+    private static final long JOB_TIMEOUT_SECONDS = 60;
+
+    private final long jobTimeoutMillis;
+    private final ScheduledExecutorService timer;
+    /**
+     * 执行刷新的线程，每个tab同时最多占用一个
+     */
+    private final ExecutorService worker;
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    /**
+     * 每个tab的刷新状态，换任务后仍然沿用，防止新旧任务重叠
+     */
+    private final Map<String, Guard> guards = new ConcurrentHashMap<>();
+
+    private RefreshScheduler() {
+        this(TimeUnit.SECONDS.toMillis(JOB_TIMEOUT_SECONDS));
+    }
+
+    /**
+     * @param jobTimeoutMillis 单次刷新的超时，测试时可以缩短
+     */
+    RefreshScheduler(long jobTimeoutMillis) {
+        this.jobTimeoutMillis = jobTimeoutMillis;
+        timer = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "leeks-scheduler"));
+        AtomicInteger index = new AtomicInteger();
+        // 每个tab同时最多一个刷新，线程和队列都不会超过tab数
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(MAX_WORKERS, MAX_WORKERS, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(MAX_WORKERS), r -> daemon(r, "leeks-refresh-" + index.incrementAndGet()));
+        pool.allowCoreThreadTimeOut(true);
+        worker = pool;
+    }
+
+    public static RefreshScheduler getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 检查是否符合表达式
+     *
+     * @param cronExpression 表达式
+     * @return true表达式正确
+     */
+    public static boolean checkCronExpression(String cronExpression) {
+        try {
+            new CronExpression(cronExpression);
+            return true;
+        } catch (ParseException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 添加定时任务并立即执行一次，同名任务存在时会替换
+     *
+     * @param name           任务名称，一般为tab名称
+     * @param cronExpression cron表达式，支持;分隔
+     * @param task           一次刷新，返回的future完成后才允许下一次定时触发
+     */
+    public void runJob(String name, @NotNull String cronExpression, Supplier<CompletableFuture<?>> task) {
+        runJob(name, cronExpression, task, task);
+    }
+
+    /**
+     * 同{@link #runJob(String, String, Supplier)}，立即执行和定时触发分别执行不同的刷新，
+     * 如定时触发时只刷新正在交易的代码
+     *
+     * @param manualTask    立即执行的刷新
+     * @param scheduledTask 定时触发的刷新
+     */
+    public void runJob(String name, @NotNull String cronExpression, Supplier<CompletableFuture<?>> manualTask,
+                       Supplier<CompletableFuture<?>> scheduledTask) {
+        List<CronExpression> expressions = new ArrayList<>();
+        for (String cron : cronExpression.split(";")) {
+            if (cron.trim().isEmpty()) {
+                continue;
+            }
+            try {
+                expressions.add(new CronExpression(cron.trim()));
+            } catch (ParseException e) {
+                throw new RuntimeException("添加定时任务失败 [ " + cron + " ]", e);
+            }
+        }
+        Job job = new Job(name, cronExpression, expressions, scheduledTask);
+        Job old = jobs.put(name, job);
+        if (old != null) {
+            old.cancel();
+        }
+        LogUtil.info("创建任务 [ " + cronExpression + " ] " + name);
+        // 上一次刷新还没结束时排在它后面，保证配置修改后尽快生效，又不与之重叠
+        execute(job, manualTask, true);
+        job.scheduleNext(new Date());
+    }
+
+    public void stopJob(String name) {
+        Job job = jobs.remove(name);
+        if (job != null) {
+            job.cancel();
+        }
+        Guard guard = guards.get(name);
+        if (guard != null) {
+            synchronized (guard) {
+                guard.pendingJob = null;
+                guard.pendingTask = null;
+            }
+        }
+    }
+
+    /**
+     * @return 任务的运行统计，任务不存在时返回null
+     */
+    public JobStats getStats(String name) {
+        Job job = jobs.get(name);
+        if (job == null) {
+            return null;
+        }
+        return new JobStats(job.runCount.get(), job.skippedCount.get(), job.lastLagMillis, job.maxLagMillis.get());
+    }
+
+    /**
+     * 同一个tab同时只执行一个刷新
+     *
+     * @param queue 上一次还没结束时是否排队，否则跳过；排队的只保留最新的一个
+     * @return 是否马上执行
+     */
+    private boolean execute(Job job, Supplier<CompletableFuture<?>> task, boolean queue) {
+        Guard guard = guards.computeIfAbsent(job.name, k -> new Guard());
+        synchronized (guard) {
+            if (guard.running) {
+                if (queue) {
+                    guard.pendingJob = job;
+                    guard.pendingTask = task;
+                }
+                return false;
+            }
+            guard.running = true;
+        }
+        submit(guard, job, task);
+        return true;
+    }
+
+    private void submit(Guard guard, Job job, Supplier<CompletableFuture<?>> task) {
+        job.runCount.incrementAndGet();
+        Run run = new Run();
+        // 在交给worker之前开始计时，task阻塞或排队时也能按时放开这个tab
+        ScheduledFuture<?> timeout = timer.schedule(run::timeout, jobTimeoutMillis, TimeUnit.MILLISECONDS);
+        run.done.whenComplete((value, e) -> {
+            timeout.cancel(false);
+            if (e != null) {
+                LogUtil.info(job.name + " 刷新出现异常：" + ExceptionUtil.getMessage(e));
+            }
+            finish(guard);
+        });
+        try {
+            worker.execute(() -> run.start(task));
+        } catch (RejectedExecutionException e) {
+            LogUtil.info(job.name + " 刷新线程已满，跳过本次");
+            run.done.complete(null);
+        }
+    }
+
+    /**
+     * 一次刷新结束，有排队的立即执行的刷新时接着执行
+     */
+    private void finish(Guard guard) {
+        Job job;
+        Supplier<CompletableFuture<?>> task;
+        synchronized (guard) {
+            job = guard.pendingJob;
+            task = guard.pendingTask;
+            guard.pendingJob = null;
+            guard.pendingTask = null;
+            if (job == null || job.cancelled) {
+                guard.running = false;
+                return;
+            }
+        }
+        submit(guard, job, task);
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        Thread thread = new Thread(r, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * 一个tab的刷新状态，读写都要持有自身的锁
+     */
+    private static class Guard {
+        boolean running;
+        /**
+         * 等上一次刷新结束后执行的立即刷新
+         */
+        Job pendingJob;
+        Supplier<CompletableFuture<?>> pendingTask;
+    }
+
+    /**
+     * 一次刷新，task返回的future完成或超时时结束，两者先到者为准
+     */
+    private static class Run {
+        final CompletableFuture<Object> done = new CompletableFuture<>();
+        /**
+         * 正在执行task的线程，task返回后清空
+         */
+        private Thread thread;
+        /**
+         * task返回的future，超时后取消，handler据此清理进行中的状态
+         */
+        private CompletableFuture<?> future;
+        private volatile boolean timedOut;
+
+        void start(Supplier<CompletableFuture<?>> task) {
+            synchronized (this) {
+                if (timedOut) {
+                    // 排队期间已经超时
+                    return;
+                }
+                thread = Thread.currentThread();
+            }
+            CompletableFuture<?> result;
+            try {
+                result = task.get();
+            } catch (Exception e) {
+                result = CompletableFuture.failedFuture(e);
+            }
+            if (result == null) {
+                result = CompletableFuture.completedFuture(null);
+            }
+            synchronized (this) {
+                thread = null;
+                future = result;
+                if (timedOut) {
+                    // task在超时之后才返回
+                    result.cancel(true);
+                    return;
+                }
+            }
+            result.whenComplete((value, e) -> {
+                if (timedOut) {
+                    // 超时取消引起的完成，以超时为准
+                    return;
+                }
+                if (e == null) {
+                    done.complete(value);
+                } else {
+                    done.completeExceptionally(e);
+                }
+            });
+        }
+
+        void timeout() {
+            synchronized (this) {
+                if (done.isDone()) {
+                    return;
+                }
+                timedOut = true;
+                if (thread != null) {
+                    // 阻塞在网络请求等可中断的等待时尽快返回
+                    thread.interrupt();
+                }
+                if (future != null) {
+                    // 先让handler清理进行中的状态，再放开这个tab
+                    future.cancel(true);
+                }
+            }
+            done.completeExceptionally(new TimeoutException("刷新超时"));
+        }
+    }
+
+    private class Job {
+        final String name;
+        final String cronExpression;
+        final List<CronExpression> expressions;
+        final Supplier<CompletableFuture<?>> task;
+        final AtomicLong runCount = new AtomicLong();
+        final AtomicLong skippedCount = new AtomicLong();
+        final AtomicLong maxLagMillis = new AtomicLong();
+        volatile long lastLagMillis;
+        volatile ScheduledFuture<?> next;
+        volatile boolean cancelled;
+
+        Job(String name, String cronExpression, List<CronExpression> expressions, Supplier<CompletableFuture<?>> task) {
+            this.name = name;
+            this.cronExpression = cronExpression;
+            this.expressions = expressions;
+            this.task = task;
+        }
+
+        /**
+         * 取所有表达式中最近的一次触发时间
+         */
+        void scheduleNext(Date after) {
+            if (cancelled) {
+                return;
+            }
+            Date fireTime = null;
+            for (CronExpression expression : expressions) {
+                Date time = expression.getNextValidTimeAfter(after);
+                if (time != null && (fireTime == null || time.before(fireTime))) {
+                    fireTime = time;
+                }
+            }
+            if (fireTime == null) {
+                LogUtil.info("任务 [ " + cronExpression + " ] " + name + " 没有下一次运行时间");
+                return;
+            }
+            Date planned = fireTime;
+            long delay = Math.max(0, planned.getTime() - System.currentTimeMillis());
+            next = timer.schedule(() -> fire(planned), delay, TimeUnit.MILLISECONDS);
+        }
+
+        void fire(Date planned) {
+            if (cancelled) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            long lag = now - planned.getTime();
+            lastLagMillis = lag;
+            maxLagMillis.accumulateAndGet(lag, Math::max);
+            // 延迟超过周期时，错过的触发不再补跑
+            scheduleNext(new Date(Math.max(now, planned.getTime())));
+            if (!execute(this, task, false)) {
+                skippedCount.incrementAndGet();
+                LogUtil.info(String.format("%s 上一次刷新尚未结束，跳过本次", name));
+                return;
+            }
+            ScheduledFuture<?> scheduled = next;
+            SimpleDateFormat simpleDateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+            LogUtil.info(String.format("%s 运行 %s ;调度延迟 %dms ;下一次运行时间为 %s",
+                    simpleDateFormat.format(new Date(now)), name, lag,
+                    scheduled == null ? "无" : simpleDateFormat.format(new Date(now + scheduled.getDelay(TimeUnit.MILLISECONDS)))));
+        }
+
+        void cancel() {
+            cancelled = true;
+            ScheduledFuture<?> scheduled = next;
+            if (scheduled != null) {
+                scheduled.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * 任务运行统计
+     */
+    public static class JobStats {
+        /**
+         * 实际执行次数（含立即执行的一次）
+         */
+        public final long runCount;
+        /**
+         * 因上一次未结束而跳过的次数
+         */
+        public final long skippedCount;
+        /**
+         * 最近一次触发相对计划时间的延迟
+         */
+        public final long lastLagMillis;
+        public final long maxLagMillis;
+
+        JobStats(long runCount, long skippedCount, long lastLagMillis, long maxLagMillis) {
+            this.runCount = runCount;
+            this.skippedCount = skippedCount;
+            this.lastLagMillis = lastLagMillis;
+            this.maxLagMillis = maxLagMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("运行%d次，跳过%d次，调度延迟%dms（最大%dms）", runCount, skippedCount, lastLagMillis, maxLagMillis);
+        }
+    }
+}
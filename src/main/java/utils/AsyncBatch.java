@@ -0,0 +1,75 @@
+package utils;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * 限制并发数的批量异步任务<br>
+ * 同时最多有limit个任务在执行，一个完成后再取下一个，不额外占用线程。
+ * 单个任务失败不影响其他任务，全部结束后返回的future才完成；取消返回的future后不再启动新的任务
+ */
+public class AsyncBatch {
+
+    private AsyncBatch() {
+    }
+
+    /**
+     * @param items 任务参数
+     * @param limit 最大并发数
+     * @param task  启动一个异步任务
+     * @return 全部任务结束后完成，结果为失败的任务数
+     */
+    public static <T> CompletableFuture<Integer> forEachLimited(List<T> items, int limit,
+                                                                Function<T, CompletableFuture<?>> task) {
+        CompletableFuture<Integer> result = new CompletableFuture<>();
+        if (items.isEmpty()) {
+            result.complete(0);
+            return result;
+        }
+        AtomicInteger nextIndex = new AtomicInteger();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        int workers = Math.max(1, Math.min(limit, items.size()));
+        running.set(workers);
+        for (int i = 0; i < workers; i++) {
+            runNext(items, task, nextIndex, running, failed, result);
+        }
+        return result;
+    }
+
+    private static <T> void runNext(List<T> items, Function<T, CompletableFuture<?>> task, AtomicInteger nextIndex,
+                                    AtomicInteger running, AtomicInteger failed, CompletableFuture<Integer> result) {
+        while (true) {
+            int index = result.isDone() ? items.size() : nextIndex.getAndIncrement();
+            if (index >= items.size()) {
+                // 这一路没有任务了，最后一路结束时整体完成
+                if (running.decrementAndGet() == 0) {
+                    result.complete(failed.get());
+                }
+                return;
+            }
+            CompletableFuture<?> future;
+            try {
+                future = task.apply(items.get(index));
+            } catch (RuntimeException e) {
+                future = CompletableFuture.failedFuture(e);
+            }
+            if (future.isDone()) {
+                // 同步完成的任务直接循环取下一个，避免回调层层递归
+                if (future.isCompletedExceptionally()) {
+                    failed.incrementAndGet();
+                }
+                continue;
+            }
+            future.whenComplete((value, e) -> {
+                if (e != null) {
+                    failed.incrementAndGet();
+                }
+                runNext(items, task, nextIndex, running, failed, result);
+            });
+            return;
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package utils;
+
+import java.util.Arrays;
+
+/**
+ * 数据源熔断器，按最近windowSize次请求的错误率和p95耗时判断<br>
+ * <ul>
+ *     <li>CLOSED：正常放行，错误率或p95耗时超过阈值时转为OPEN</li>
+ *     <li>OPEN：拒绝请求，openMillis后转为HALF_OPEN</li>
+ *     <li>HALF_OPEN：只放行一个探测请求，成功则恢复CLOSED，失败则重新OPEN</li>
+ * </ul>
+ * 每次状态变化都会记录日志。线程安全
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED("正常"),
+        OPEN("熔断"),
+        HALF_OPEN("探测中");
+
+        private final String desc;
+
+        State(String desc) {
+            this.desc = desc;
+        }
+
+        public String getDesc() {
+            return desc;
+        }
+    }
+
+    private final String name;
+    private final int minCalls;
+    private final double maxErrorRate;
+    private final long slowMillis;
+    private final long openMillis;
+
+    /**
+     * 最近的请求，环形数组
+     */
+    private final long[] latencies;
+    private final boolean[] failures;
+    private int count;
+    private int next;
+
+    private State state = State.CLOSED;
+    private long openUntil;
+    private boolean probing;
+    private long openCount;
+
+    /**
+     * @param name         数据源名称
+     * @param windowSize   统计最近多少次请求
+     * @param minCalls     请求数不足时不熔断
+     * @param maxErrorRate 错误率达到该值时熔断
+     * @param slowMillis   p95耗时达到该值时熔断
+     * @param openMillis   熔断后多久开始探测
+     */
+    public CircuitBreaker(String name, int windowSize, int minCalls, double maxErrorRate, long slowMillis, long openMillis) {
+        this.name = name;
+        this.minCalls = minCalls;
+        this.maxErrorRate = maxErrorRate;
+        this.slowMillis = slowMillis;
+        this.openMillis = openMillis;
+        this.latencies = new long[windowSize];
+        this.failures = new boolean[windowSize];
+    }
+
+    /**
+     * @return true可以请求；HALF_OPEN时只有第一个调用者返回true，结束后必须调用{@link #record}
+     */
+    public synchronized boolean allowRequest() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.currentTimeMillis() < openUntil) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                probing = true;
+                LogUtil.info("Leeks " + name + "数据源开始探测");
+                return true;
+            default:
+                if (probing) {
+                    return false;
+                }
+                probing = true;
+                return true;
+        }
+    }
+
+    /**
+     * 记录一次请求的结果
+     *
+     * @param success       是否成功
+     * @param latencyMillis 耗时
+     */
+    public synchronized void record(boolean success, long latencyMillis) {
+        if (state == State.HALF_OPEN) {
+            probing = false;
+            if (success && latencyMillis < slowMillis) {
+                // 探测成功，旧的统计作废
+                state = State.CLOSED;
+                count = 0;
+                next = 0;
+                LogUtil.info("Leeks " + name + "数据源已恢复");
+            } else {
+                open();
+                return;
+            }
+        }
+        latencies[next] = latencyMillis;
+        failures[next] = !success;
+        next = (next + 1) % latencies.length;
+        count = Math.min(count + 1, latencies.length);
+        if (state == State.CLOSED && count >= minCalls && (errorRate() >= maxErrorRate || p95() >= slowMillis)) {
+            open();
+        }
+    }
+
+    /**
+     * 请求被取消，结果不计入统计；HALF_OPEN时交还探测名额，让下一个请求继续探测
+     */
+    public synchronized void skip() {
+        if (state == State.HALF_OPEN) {
+            probing = false;
+        }
+    }
+
+    public synchronized State getState() {
+        if (state == State.OPEN && System.currentTimeMillis() >= openUntil) {
+            // 还没有请求来探测，界面上显示为待探测
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    /**
+     * 健康度0-100：成功率乘以耗时系数，p95不超过slowMillis的一半时耗时系数为1；熔断时为0
+     */
+    public synchronized int getHealthScore() {
+        if (state == State.OPEN) {
+            return 0;
+        }
+        if (count == 0) {
+            return 100;
+        }
+        long p95 = p95();
+        double latencyFactor = p95 <= slowMillis / 2 ? 1 : (double) slowMillis / (2 * p95);
+        return (int) Math.round(100 * (1 - errorRate()) * latencyFactor);
+    }
+
+    public synchronized double errorRate() {
+        if (count == 0) {
+            return 0;
+        }
+        int failed = 0;
+        for (int i = 0; i < count; i++) {
+            if (failures[i]) {
+                failed++;
+            }
+        }
+        return (double) failed / count;
+    }
+
+    public synchronized long p95() {
+        return percentile(0.95);
+    }
+
+    /**
+     * @param p 0-1之间，如0.9
+     * @return 最近请求耗时的分位数，没有请求时为0
+     */
+    public synchronized long percentile(double p) {
+        if (count == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        return sorted[Math.max(0, (int) Math.ceil(count * p) - 1)];
+    }
+
+    /**
+     * @return 统计窗口内的请求数
+     */
+    public synchronized int getCallCount() {
+        return count;
+    }
+
+    /**
+     * @return 熔断次数
+     */
+    public synchronized long getOpenCount() {
+        return openCount;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 状态描述，用于界面提示，如：腾讯 健康度92（p95 320ms，错误率5%）
+     */
+    public synchronized String describe() {
+        State current = getState();
+        StringBuilder builder = new StringBuilder(name).append(" 健康度").append(getHealthScore());
+        builder.append("（p95 ").append(p95()).append("ms，错误率").append(Math.round(errorRate() * 100)).append("%");
+        if (current != State.CLOSED) {
+            builder.append("，").append(current.getDesc());
+        }
+        return builder.append("）").toString();
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openUntil = System.currentTimeMillis() + openMillis;
+        openCount++;
+        LogUtil.info("Leeks " + name + "数据源熔断，" + openMillis / 1000 + "秒后探测");
+    }
+}
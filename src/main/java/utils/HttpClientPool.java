@@ -7,25 +7,61 @@ import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.conn.HttpClientConnectionManager;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.BasicHttpClientConnectionManager;
 import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
 import org.apache.http.util.EntityUtils;
 
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ProxySelector;
+import java.net.URI;
 import java.net.URLDecoder;
+import java.net.http.HttpRequest;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
 /**
  * @author by laugh on 2016/3/29.
  */
 public class HttpClientPool {
 
+    /**
+     * 异步请求的回调线程数，网络IO由JDK HttpClient的selector线程完成，这里只负责解析回调
+     */
+    private static final int ASYNC_THREADS = 2;
+    private static final AtomicInteger ASYNC_THREAD_INDEX = new AtomicInteger();
+    private static final ExecutorService ASYNC_EXECUTOR = Executors.newFixedThreadPool(ASYNC_THREADS, r -> {
+        Thread thread = new Thread(r, "leeks-http-" + ASYNC_THREAD_INDEX.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 已切换掉、还有请求未结束的旧客户端数量，一直不归零说明有请求没有结束
+     */
+    private static final AtomicInteger RETIRING = new AtomicInteger();
+
     private static volatile HttpClientPool clientInstance;
-    private HttpClient httpClient;
+    /**
+     * 当前使用的客户端，切换代理时整体替换，正在进行的请求继续使用旧的，全部结束后关闭旧连接池
+     */
+    private volatile Clients clients;
 
     public static HttpClientPool getHttpClient() {
         HttpClientPool tmp = clientInstance;
@@ -45,26 +81,47 @@ public class HttpClientPool {
         buildHttpClient(null);
     }
 
-    public void buildHttpClient(String proxyStr){
-        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(100, TimeUnit.SECONDS);
-        connectionManager.setMaxTotal(200);// 连接池
-        connectionManager.setDefaultMaxPerRoute(100);// 每条通道的并发连接数
-        RequestConfig requestConfig = RequestConfig.custom()
-                .setConnectionRequestTimeout(5000)  // 连接请求超时5秒
-                .setConnectTimeout(5000)            // 连接超时5秒
-                .setSocketTimeout(10000)             // Socket超时10秒
-                .build();
-        HttpClientBuilder httpClientBuilder = HttpClients.custom().setConnectionManager(connectionManager);
-        if (proxyStr!=null && !proxyStr.isEmpty()){
-            String[] s = proxyStr.split(":");
-            if (s.length == 2){
-                String host = s[0];
-                int port = Integer.parseInt(s[1]);
-                httpClientBuilder.setProxy(new HttpHost(host,port));
-            }
-            LogUtil.info("Leeks setup proxy success->"+proxyStr);
+    /**
+     * 按代理设置重建客户端，代理没有变化时不重建
+     *
+     * @param proxyStr host:port，为空时不使用代理
+     */
+    public synchronized void buildHttpClient(String proxyStr){
+        String proxy = proxyStr == null ? "" : proxyStr.trim();
+        Clients old = clients;
+        if (old != null && old.proxy.equals(proxy)) {
+            return;
+        }
+        clients = new Clients(proxy);
+        if (!proxy.isEmpty()){
+            LogUtil.info("Leeks setup proxy success->"+proxy);
+        }
+        if (old != null) {
+            LogUtil.info("Leeks 切换连接池，旧连接池：" + old.describeStats());
+            old.retire();
         }
-        httpClient =httpClientBuilder.setDefaultRequestConfig(requestConfig).build();
+    }
+
+    /**
+     * 使用独立的临时客户端请求，用于测试代理，不影响正在使用的连接池
+     *
+     * @param proxyStr host:port
+     */
+    public static String getWithProxy(String proxyStr, String url) throws Exception {
+        // 只发一个同步请求，不需要连接池和异步客户端
+        HttpHost proxy = parseProxy(proxyStr == null ? "" : proxyStr.trim());
+        try (CloseableHttpClient httpClient = newHttpClient(new BasicHttpClientConnectionManager(), proxy)) {
+            return getResponseContent(httpClient, url, new HttpGet(url));
+        }
+    }
+
+    /**
+     * 当前客户端的统计，用于排查连接泄漏；行情请求都走异步客户端，同步连接池只有少数请求使用
+     *
+     * @return 如：异步请求进行中2，累计120，失败3；同步连接池租用0，空闲5，等待0，上限200；待关闭的旧客户端0
+     */
+    public String describePoolStats() {
+        return clients.describeStats() + "；待关闭的旧客户端" + RETIRING.get();
     }
 
     public String get(String url) throws Exception {
@@ -101,6 +158,15 @@ public class HttpClientPool {
     }
 
     private String getResponseContent(String url, HttpRequestBase request) throws Exception {
+        Clients current = acquire();
+        try {
+            return getResponseContent(current.httpClient, url, request);
+        } finally {
+            current.release();
+        }
+    }
+
+    private static String getResponseContent(HttpClient httpClient, String url, HttpRequestBase request) throws Exception {
         HttpResponse response = null;
         try {
             response = httpClient.execute(request);
@@ -133,4 +199,245 @@ public class HttpClientPool {
             request.releaseConnection();
         }
     }
-}
\ No newline at end of file
+
+    public CompletableFuture<String> getAsync(String url) {
+        return getAsync(url, null);
+    }
+
+    /**
+     * 异步GET，不占用调用线程，结果在{@link #ASYNC_EXECUTOR}中回调
+     */
+    public CompletableFuture<String> getAsync(String url, Map<String, String> headers) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url)).GET();
+        // 与同步接口一致：优先使用响应头中的charset，缺省为UTF-8
+        return sendAsync(url, builder, headers, java.net.http.HttpResponse.BodyHandlers.ofString(), body -> body);
+    }
+
+    /**
+     * 异步GET，返回池化数组中的原始字节和响应头声明的编码，由调用方直接扫描字节解析(如GBK的行情接口)，
+     * 省去整段字符串的解码和拷贝；调用方用完必须关闭返回的{@link ResponseBody}
+     */
+    public CompletableFuture<ResponseBody> getBodyAsync(String url) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url)).GET();
+        return sendAsync(url, builder, null, ResponseBody.handler(), body -> {
+            try (body) {
+                return body.string(StandardCharsets.UTF_8);
+            }
+        });
+    }
+
+    public CompletableFuture<String> postAsync(String url, String body, Map<String, String> headers) {
+        HttpRequest.BodyPublisher publisher = body != null && !body.isEmpty()
+                ? HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8)
+                : HttpRequest.BodyPublishers.noBody();
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url)).POST(publisher);
+        return sendAsync(url, builder, headers, java.net.http.HttpResponse.BodyHandlers.ofString(), responseBody -> responseBody);
+    }
+
+    private <T> CompletableFuture<T> sendAsync(String url, HttpRequest.Builder builder, Map<String, String> headers,
+                                               java.net.http.HttpResponse.BodyHandler<T> bodyHandler,
+                                               Function<T, String> errorBody) {
+        builder.timeout(Duration.ofSeconds(10));
+        if (headers != null) {
+            for (Map.Entry<String, String> entry : headers.entrySet()) {
+                builder.setHeader(entry.getKey(), entry.getValue());
+            }
+        }
+        Clients current = acquire();
+        CompletableFuture<java.net.http.HttpResponse<T>> request;
+        current.asyncInFlight.incrementAndGet();
+        current.asyncTotal.incrementAndGet();
+        try {
+            request = current.asyncClient.sendAsync(builder.build(), bodyHandler);
+        } catch (RuntimeException e) {
+            current.asyncFailed.incrementAndGet();
+            current.asyncInFlight.decrementAndGet();
+            current.release();
+            throw e;
+        }
+        request.whenComplete((response, e) -> {
+            if (e != null) {
+                current.asyncFailed.incrementAndGet();
+            }
+            current.asyncInFlight.decrementAndGet();
+            current.release();
+        });
+        return propagateCancel(request.handle((response, e) -> {
+                if (e != null) {
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    throw new CompletionException(new Exception("got an error from HTTP for url : " + decodeUrl(url), cause));
+                }
+                int statusCode = response.statusCode();
+                if (statusCode >= 200 && statusCode < 300) {
+                    return response.body();
+                }
+                String responseBody = errorBody.apply(response.body());
+                String errorMsg = String.format("HTTP %d - URL: %s, Response: %s",
+                        statusCode,
+                        decodeUrl(url),
+                        responseBody.length() > 500 ? responseBody.substring(0, 500) + "..." : responseBody);
+                throw new CompletionException(new Exception(errorMsg));
+            }), request);
+    }
+
+    /**
+     * 取消downstream时一并取消upstream，在异步请求的结果上继续处理后，取消最终结果仍能中止请求
+     *
+     * @return downstream
+     */
+    public static <T> CompletableFuture<T> propagateCancel(CompletableFuture<T> downstream, CompletableFuture<?> upstream) {
+        downstream.whenComplete((value, e) -> {
+            if (downstream.isCancelled()) {
+                upstream.cancel(true);
+            }
+        });
+        return downstream;
+    }
+
+    /**
+     * 取得当前客户端并计数，请求结束后必须调用{@link Clients#release()}
+     */
+    private Clients acquire() {
+        while (true) {
+            Clients current = clients;
+            if (current.acquire()) {
+                return current;
+            }
+            // 刚好被替换，重新读取
+        }
+    }
+
+    private static String decodeUrl(String url) {
+        return URLDecoder.decode(url, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param proxy host:port
+     * @return 为空或格式不对时返回null
+     */
+    private static HttpHost parseProxy(String proxy) {
+        String[] s = proxy.split(":");
+        if (proxy.isEmpty() || s.length != 2) {
+            return null;
+        }
+        return new HttpHost(s[0], Integer.parseInt(s[1]));
+    }
+
+    /**
+     * 同步客户端，关闭时一并关闭connectionManager
+     */
+    private static CloseableHttpClient newHttpClient(HttpClientConnectionManager connectionManager, HttpHost proxy) {
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectionRequestTimeout(5000)  // 连接请求超时5秒
+                .setConnectTimeout(5000)            // 连接超时5秒
+                .setSocketTimeout(10000)             // Socket超时10秒
+                .build();
+        HttpClientBuilder httpClientBuilder = HttpClients.custom().setConnectionManager(connectionManager);
+        if (proxy != null) {
+            httpClientBuilder.setProxy(proxy);
+        }
+        return httpClientBuilder.setDefaultRequestConfig(requestConfig).build();
+    }
+
+    /**
+     * 同一套代理设置下的同步、异步客户端和连接池
+     */
+    private static class Clients {
+        private final String proxy;
+        private final PoolingHttpClientConnectionManager connectionManager;
+        private final CloseableHttpClient httpClient;
+        private final java.net.http.HttpClient asyncClient;
+        /**
+         * 进行中的同步和异步请求，归零后才关闭已切换掉的客户端
+         */
+        private final AtomicInteger active = new AtomicInteger();
+        private final AtomicInteger asyncInFlight = new AtomicInteger();
+        private final AtomicLong asyncTotal = new AtomicLong();
+        /**
+         * 连接失败、超时或被取消的异步请求，不含非2xx响应
+         */
+        private final AtomicLong asyncFailed = new AtomicLong();
+        private volatile boolean retired;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        Clients(String proxy) {
+            this.proxy = proxy;
+            connectionManager = new PoolingHttpClientConnectionManager(100, TimeUnit.SECONDS);
+            connectionManager.setMaxTotal(200);// 连接池
+            connectionManager.setDefaultMaxPerRoute(100);// 每条通道的并发连接数
+            HttpHost proxyHost = parseProxy(proxy);
+            java.net.http.HttpClient.Builder asyncClientBuilder = java.net.http.HttpClient.newBuilder()
+                    .connectTimeout(Duration.ofSeconds(5))
+                    .followRedirects(java.net.http.HttpClient.Redirect.NORMAL)
+                    .executor(ASYNC_EXECUTOR);
+            if (proxyHost != null) {
+                asyncClientBuilder.proxy(ProxySelector.of(new InetSocketAddress(proxyHost.getHostName(), proxyHost.getPort())));
+            }
+            httpClient = newHttpClient(connectionManager, proxyHost);
+            asyncClient = asyncClientBuilder.build();
+        }
+
+        /**
+         * @return 已被替换时返回false
+         */
+        boolean acquire() {
+            active.incrementAndGet();
+            if (retired) {
+                release();
+                return false;
+            }
+            return true;
+        }
+
+        void release() {
+            if (active.decrementAndGet() == 0 && retired) {
+                close();
+            }
+        }
+
+        /**
+         * 不再分配新请求，进行中的请求结束后关闭
+         */
+        void retire() {
+            RETIRING.incrementAndGet();
+            retired = true;
+            if (active.get() == 0) {
+                close();
+            }
+        }
+
+        private void close() {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            RETIRING.decrementAndGet();
+            try {
+                // 同时关闭连接池
+                httpClient.close();
+            } catch (IOException e) {
+                LogUtil.info("Leeks 关闭连接池失败：" + e.getMessage());
+            }
+            LogUtil.info("Leeks 旧客户端已关闭：" + describeStats());
+            // JDK HttpClient从Java 21起可以关闭，释放selector线程和keep-alive连接；close会等待已取消的交换结束，
+            // 不能占用回调线程。更早的版本没有close，不再引用后由GC回收
+            if (asyncClient instanceof AutoCloseable) {
+                Thread closer = new Thread(() -> {
+                    try {
+                        ((AutoCloseable) asyncClient).close();
+                    } catch (Exception e) {
+                        LogUtil.info("Leeks 关闭异步客户端失败：" + e.getMessage());
+                    }
+                }, "leeks-http-close");
+                closer.setDaemon(true);
+                closer.start();
+            }
+        }
+
+        String describeStats() {
+            PoolStats stats = connectionManager.getTotalStats();
+            return "异步请求进行中" + asyncInFlight.get() + "，累计" + asyncTotal.get() + "，失败" + asyncFailed.get()
+                    + "；同步连接池租用" + stats.getLeased() + "，空闲" + stats.getAvailable()
+                    + "，等待" + stats.getPending() + "，上限" + stats.getMax();
+        }
+    }
+}
@@ -3,6 +3,7 @@ package utils;
 import com.intellij.ide.plugins.PluginManager;
 import com.intellij.ide.util.PropertiesComponent;
 import com.intellij.notification.*;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.MessageType;
 import org.apache.commons.lang.StringUtils;
@@ -39,6 +40,10 @@ public class LogUtil {
     }
 
     public static void info(String text){
+        if (ApplicationManager.getApplication() == null) {
+            // 单元测试等没有IDE的环境
+            return;
+        }
         boolean closeLog = PropertiesComponent.getInstance().getBoolean("key_close_log");
         if (!closeLog){
 //            PluginManager.getLogger().info(text);
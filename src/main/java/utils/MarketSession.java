@@ -0,0 +1,231 @@
+package utils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 各市场的交易时段，定时刷新时只请求正在交易（或刚收盘还在等最终价格）的代码<br>
+ * 休市日读取 resources/market/holidays_*.txt，每行一个日期(yyyy-MM-dd)，#开头为注释，周末不用列出。
+ * 文件中没有某一年的日期时，这一年按周一到周五都交易处理（宁可多请求也不漏行情），每个文件只提示一次。
+ * 时间均为交易所当地时间
+ */
+public enum MarketSession {
+    /**
+     * 沪深北，含9:15开始的集合竞价
+     */
+    CN("Asia/Shanghai", "cn", 5, 0, new int[][]{{915, 1130}, {1300, 1500}}),
+    /**
+     * 港股，含16:00-16:10收市竞价
+     */
+    HK("Asia/Hong_Kong", "hk", 5, 0, new int[][]{{930, 1200}, {1300, 1610}}),
+    /**
+     * 美股：盘前4:00-9:30、盘中9:30-16:00、盘后16:00-20:00，
+     * 以及前一天20:00开始的夜盘（属于下一个交易日，对应【夜盘】列）
+     */
+    US("America/New_York", "us", 5, 0, new int[][]{{0, 2000}, {2000, 2400, 1}}),
+    /**
+     * 场内交易时段更新估值，收盘后多等一会儿拿到最终估值；
+     * 当日的正式净值晚上才公布，23:00前还在等待（见{@link #isSettling}）
+     */
+    FUND("Asia/Shanghai", "cn", 30, 2300, new int[][]{{930, 1130}, {1300, 1500}});
+
+    private static final Map<String, Holidays> HOLIDAYS = new ConcurrentHashMap<>();
+    /**
+     * 已提示过缺少休市日的日历，每个日历只提示一次
+     */
+    private static final Set<String> WARNED_CALENDARS = ConcurrentHashMap.newKeySet();
+
+    private final ZoneId zone;
+    private final String calendar;
+    private final int graceMinutes;
+    /**
+     * 收盘后等待正式数据到几点(HHmm)，0表示不等待
+     */
+    private final int settleUntil;
+    /**
+     * {开始HHmm, 结束HHmm, 是否属于下一个交易日(可省略)}
+     */
+    private final int[][] sessions;
+
+    MarketSession(String zone, String calendar, int graceMinutes, int settleUntil, int[][] sessions) {
+        this.zone = ZoneId.of(zone);
+        this.calendar = calendar;
+        this.graceMinutes = graceMinutes;
+        this.settleUntil = settleUntil;
+        this.sessions = sessions;
+    }
+
+    /**
+     * 按代码前缀判断市场，如sh600519、hk00700、usAAPL
+     *
+     * @return 无法识别时返回null
+     */
+    public static MarketSession of(String code) {
+        if (code == null || code.length() < 2) {
+            return null;
+        }
+        switch (code.substring(0, 2).toLowerCase(Locale.ROOT)) {
+            case "sh":
+            case "sz":
+            case "bj":
+                return CN;
+            case "hk":
+                return HK;
+            case "us":
+                return US;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * 过滤出当前需要刷新的股票，无法识别市场的代码一律保留
+     *
+     * @param codes 股票配置，格式同设置页：代码[,成本价,持仓]
+     */
+    public static List<String> filterActive(List<String> codes) {
+        ZonedDateTime now = ZonedDateTime.now();
+        List<String> result = new ArrayList<>(codes.size());
+        for (String code : codes) {
+            int comma = code.indexOf(',');
+            MarketSession market = of(comma < 0 ? code : code.substring(0, comma));
+            if (market == null || market.isActive(now)) {
+                result.add(code);
+            }
+        }
+        return result;
+    }
+
+    public boolean isActive() {
+        return isActive(ZonedDateTime.now());
+    }
+
+    /**
+     * @return 处于交易时段内，或收盘后graceMinutes分钟内
+     */
+    public boolean isActive(ZonedDateTime time) {
+        ZonedDateTime local = time.withZoneSameInstant(zone);
+        int minute = local.getHour() * 60 + local.getMinute();
+        for (int[] session : sessions) {
+            int start = toMinute(session[0]);
+            int end = toMinute(session[1]);
+            if (minute < start || minute >= end + graceMinutes) {
+                continue;
+            }
+            LocalDate tradingDay = session.length > 2 ? local.toLocalDate().plusDays(session[2]) : local.toLocalDate();
+            if (isTradingDay(tradingDay)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean isSettling() {
+        return isSettling(ZonedDateTime.now());
+    }
+
+    /**
+     * @return 交易日收盘（含graceMinutes）之后、settleUntil之前，还在等待当天的正式数据
+     */
+    public boolean isSettling(ZonedDateTime time) {
+        if (settleUntil == 0) {
+            return false;
+        }
+        ZonedDateTime local = time.withZoneSameInstant(zone);
+        int minute = local.getHour() * 60 + local.getMinute();
+        int close = toMinute(sessions[sessions.length - 1][1]) + graceMinutes;
+        return minute >= close && minute < toMinute(settleUntil) && isTradingDay(local.toLocalDate());
+    }
+
+    /**
+     * @return 交易所当地的今天
+     */
+    public LocalDate today() {
+        return LocalDate.now(zone);
+    }
+
+    /**
+     * @return date之前最近的交易日
+     */
+    public LocalDate previousTradingDay(LocalDate date) {
+        LocalDate day = date.minusDays(1);
+        while (!isTradingDay(day)) {
+            day = day.minusDays(1);
+        }
+        return day;
+    }
+
+    public boolean isTradingDay(LocalDate date) {
+        DayOfWeek day = date.getDayOfWeek();
+        if (day == DayOfWeek.SATURDAY || day == DayOfWeek.SUNDAY) {
+            return false;
+        }
+        Holidays holidays = HOLIDAYS.computeIfAbsent(calendar, MarketSession::loadHolidays);
+        if (!holidays.years.contains(date.getYear())) {
+            if (WARNED_CALENDARS.add(calendar)) {
+                LogUtil.info("Leeks holidays_" + calendar + ".txt中没有" + date.getYear()
+                        + "年的休市日，缺少数据的年份周一到周五都按交易日刷新");
+            }
+            return true;
+        }
+        return !holidays.dates.contains(date);
+    }
+
+    private static int toMinute(int hhmm) {
+        return hhmm / 100 * 60 + hhmm % 100;
+    }
+
+    private static Holidays loadHolidays(String calendar) {
+        InputStream in = MarketSession.class.getResourceAsStream("/market/holidays_" + calendar + ".txt");
+        if (in == null) {
+            return new Holidays(Collections.emptySet());
+        }
+        Set<LocalDate> dates = new HashSet<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                try {
+                    dates.add(LocalDate.parse(line));
+                } catch (DateTimeParseException e) {
+                    // 格式不对的行忽略
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return new Holidays(dates);
+    }
+
+    private static final class Holidays {
+        final Set<LocalDate> dates;
+        /**
+         * 文件中出现过的年份，其他年份没有休市日数据
+         */
+        final Set<Integer> years = new HashSet<>();
+
+        Holidays(Set<LocalDate> dates) {
+            this.dates = dates;
+            dates.forEach(date -> years.add(date.getYear()));
+        }
+    }
+}
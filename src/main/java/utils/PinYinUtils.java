@@ -6,40 +6,51 @@ import net.sourceforge.pinyin4j.format.HanyuPinyinOutputFormat;
 import net.sourceforge.pinyin4j.format.HanyuPinyinToneType;
 import net.sourceforge.pinyin4j.format.exception.BadHanyuPinyinOutputFormatCombination;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 隐蔽模式下把名称转为拼音，如：贵州茅台 -> gui_zhou_mao_tai<br>
+ * 每次刷新都会转换所有股票、基金名称，所以整个名称和单个汉字的结果都做了缓存
+ */
 public class PinYinUtils {
     private static final HanyuPinyinOutputFormat format;
-    
+    private static final char CJK_START = '\u4E00';
+    private static final char CJK_END = '\u9FA5';
+    /**
+     * 名称缓存上限，超过时清空重建，自选和列名一般只有几百个
+     */
+    private static final int MAX_CACHED_NAMES = 10_000;
+    private static final Map<String, String> nameCache = new ConcurrentHashMap<>();
+    /**
+     * 单个汉字的拼音，下标为 c - CJK_START，首次用到时填充；并发填充结果相同，无需同步
+     */
+    private static final String[] charCache = new String[CJK_END - CJK_START + 1];
+    /**
+     * 汉字没有拼音时的占位，区别于未填充的null
+     */
+    private static final String NONE = "";
+
     static {
         format = new HanyuPinyinOutputFormat();
         format.setCaseType(HanyuPinyinCaseType.LOWERCASE);
         format.setToneType(HanyuPinyinToneType.WITHOUT_TONE);
     }
-    
+
     public static String toPinYin(String input) {
         if (input == null || input.isEmpty()) {
             return input;
         }
-        StringBuilder result = new StringBuilder();
-        char[] chars = input.toCharArray();
-        for (int i = 0; i < chars.length; i++) {
-            char c = chars[i];
-            if (Character.toString(c).matches("[\\u4E00-\\u9FA5]+")) {
-                try {
-                    String[] pinyinArray = PinyinHelper.toHanyuPinyinStringArray(c, format);
-                    if (pinyinArray != null && pinyinArray.length > 0) {
-                        result.append(pinyinArray[0]);
-                    }
-                } catch (BadHanyuPinyinOutputFormatCombination e) {
-                    result.append(c);
-                }
-            } else {
-                result.append(c);
-            }
-            if (i < chars.length - 1) {
-                result.append("_");
-            }
+        String cached = nameCache.get(input);
+        if (cached != null) {
+            return cached;
         }
-        return result.toString().toLowerCase();
+        String result = transliterate(input);
+        if (nameCache.size() >= MAX_CACHED_NAMES) {
+            nameCache.clear();
+        }
+        nameCache.put(input, result);
+        return result;
     }
 
     public static String[] toPinYin(String[] inputs) {
@@ -52,4 +63,38 @@ public class PinYinUtils {
         }
         return result;
     }
+
+    private static String transliterate(String input) {
+        StringBuilder result = new StringBuilder(input.length() * 4);
+        for (int i = 0; i < input.length(); i++) {
+            char c = input.charAt(i);
+            if (c >= CJK_START && c <= CJK_END) {
+                result.append(charPinYin(c));
+            } else {
+                result.append(c);
+            }
+            if (i < input.length() - 1) {
+                result.append('_');
+            }
+        }
+        return result.toString().toLowerCase();
+    }
+
+    /**
+     * @return 第一个读音，没有拼音时为空串，格式错误时为汉字本身
+     */
+    private static String charPinYin(char c) {
+        int index = c - CJK_START;
+        String pinyin = charCache[index];
+        if (pinyin == null) {
+            try {
+                String[] pinyinArray = PinyinHelper.toHanyuPinyinStringArray(c, format);
+                pinyin = pinyinArray != null && pinyinArray.length > 0 ? pinyinArray[0] : NONE;
+            } catch (BadHanyuPinyinOutputFormatCombination e) {
+                pinyin = String.valueOf(c);
+            }
+            charCache[index] = pinyin;
+        }
+        return pinyin;
+    }
 }
@@ -0,0 +1,142 @@
+package utils;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 行情接口响应的字节级字段扫描器，可重复使用<br>
+ * 腾讯、新浪的行情都是 {@code 前缀="字段~字段~...";} 这种按行返回的GBK文本，
+ * 这里一次扫描原始字节，只记录字段的起止位置，不做split，需要哪个字段再解码哪个。
+ * <p>
+ * GBK双字节字符的第二个字节可能落在0x40-0xFE，包含分隔符'~'(0x7E)，所以遇到前导字节(>=0x81)时连同下一个字节一起跳过；
+ * 响应声明为UTF-8等编码时多字节字符不含ASCII字节，逐字节扫描，见{@link #setCharset}。
+ * <p>
+ * 非线程安全，每个线程/解析器持有一个实例
+ */
+public class QuoteFieldScanner {
+    private final byte delimiter;
+    private final int[] starts;
+    private final int[] ends;
+
+    private byte[] buf;
+    private boolean gbk = true;
+    /**
+     * 本条记录的总字段数（可能大于记录的容量）
+     */
+    private int fieldCount;
+    /**
+     * 最后一个非空字段的下标，没有时为-1
+     */
+    private int lastNonEmpty;
+
+    /**
+     * @param delimiter 字段分隔符
+     * @param maxIndex  需要读取的最大字段下标，超过的字段只计数不记录位置
+     */
+    public QuoteFieldScanner(char delimiter, int maxIndex) {
+        this.delimiter = (byte) delimiter;
+        this.starts = new int[maxIndex + 1];
+        this.ends = new int[maxIndex + 1];
+    }
+
+    /**
+     * 按响应的编码决定是否成对跳过GBK双字节，GB2312、GBK、GB18030都是前导字节加一个尾字节
+     */
+    public void setCharset(Charset charset) {
+        String name = charset.name();
+        gbk = name.startsWith("GB") || name.equals("x-mswin-936");
+    }
+
+    /**
+     * 从from开始扫描一条记录，直到遇到terminator、换行或to为止
+     *
+     * @return 记录结束的位置（terminator所在位置，或to）
+     */
+    public int scan(byte[] buf, int from, int to, char terminator) {
+        this.buf = buf;
+        byte term = (byte) terminator;
+        int capacity = starts.length;
+        int count = 0;
+        int nonEmpty = -1;
+        int fieldStart = from;
+        int i = from;
+        while (i < to) {
+            byte b = buf[i];
+            if (b == term || b == '\n') {
+                break;
+            }
+            if (b == delimiter) {
+                if (count < capacity) {
+                    starts[count] = fieldStart;
+                    ends[count] = i;
+                }
+                if (i > fieldStart) {
+                    nonEmpty = count;
+                }
+                count++;
+                fieldStart = i + 1;
+                i++;
+            } else if (gbk && (b & 0xFF) >= 0x81 && i + 1 < to) {
+                // GBK前导字节，连同尾字节一起跳过
+                i += 2;
+            } else {
+                i++;
+            }
+        }
+        int end = Math.min(i, to);
+        if (count < capacity) {
+            starts[count] = fieldStart;
+            ends[count] = end;
+        }
+        if (end > fieldStart) {
+            nonEmpty = count;
+        }
+        fieldCount = count + 1;
+        lastNonEmpty = nonEmpty;
+        return end;
+    }
+
+    public int fieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * 等价于{@code String.split}去掉末尾空串之后的长度减一
+     */
+    public int lastNonEmpty() {
+        return lastNonEmpty;
+    }
+
+    public boolean has(int index) {
+        return index < fieldCount && index < starts.length;
+    }
+
+    public boolean isEmpty(int index) {
+        return !has(index) || starts[index] == ends[index];
+    }
+
+    public int start(int index) {
+        return starts[index];
+    }
+
+    public int end(int index) {
+        return ends[index];
+    }
+
+    /**
+     * 数字、时间等纯ASCII字段，直接按单字节拷贝
+     */
+    public String ascii(int index) {
+        if (!has(index)) {
+            return null;
+        }
+        return new String(buf, starts[index], ends[index] - starts[index], StandardCharsets.ISO_8859_1);
+    }
+
+    public String string(int index, Charset charset) {
+        if (!has(index)) {
+            return null;
+        }
+        return new String(buf, starts[index], ends[index] - starts[index], charset);
+    }
+}
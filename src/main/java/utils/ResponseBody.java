@@ -0,0 +1,193 @@
+package utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.Reader;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/**
+ * 异步请求的原始响应体，数据放在池化的字节数组中，解析器直接扫描，不经过String<br>
+ * 用完必须{@link #close()}归还数组，之后不能再访问{@link #array()}
+ * <pre>
+ *     try (ResponseBody body = future.join()) {
+ *         parser.reset(body);
+ *     }
+ * </pre>
+ */
+public class ResponseBody implements AutoCloseable {
+    private static final int INITIAL_SIZE = 64 * 1024;
+    /**
+     * 超过这个大小的数组用完直接丢弃，不放回池中
+     */
+    private static final int MAX_POOLED_SIZE = 1024 * 1024;
+    private static final int MAX_POOLED_COUNT = 8;
+    /**
+     * {@link #reader(Charset)}解码缓冲的上限，与InputStreamReader的默认值相同
+     */
+    private static final int READER_BUFFER_SIZE = 8192;
+    private static final ArrayDeque<byte[]> POOL = new ArrayDeque<>();
+
+    private byte[] array;
+    private int length;
+    private final Charset charset;
+
+    private ResponseBody(byte[] array, int length, Charset charset) {
+        this.array = array;
+        this.length = length;
+        this.charset = charset;
+    }
+
+    /**
+     * 池化的响应数组，有效数据为[0, length)
+     */
+    public byte[] array() {
+        return array;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    /**
+     * 只读视图，不拷贝
+     */
+    public ByteBuffer buffer() {
+        return ByteBuffer.wrap(array, 0, length).asReadOnlyBuffer();
+    }
+
+    /**
+     * @param defaultCharset 响应头没有声明charset时使用，如腾讯、新浪接口的GBK
+     * @return 响应头Content-Type中的charset
+     */
+    public Charset charset(Charset defaultCharset) {
+        return charset != null ? charset : defaultCharset;
+    }
+
+    /**
+     * 按响应的编码解码为字符串，用于错误信息等
+     */
+    public String string(Charset defaultCharset) {
+        return new String(array, 0, length, charset(defaultCharset));
+    }
+
+    /**
+     * 按响应的编码边读边解码，直接读池化数组，不先解码成整段字符串；关闭后不能再读<br>
+     * 解码缓冲按响应大小分配，基金估值这类几百字节的响应不会每次分配默认的8K缓冲
+     */
+    public Reader reader(Charset defaultCharset) {
+        CharsetDecoder decoder = charset(defaultCharset).newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        ReadableByteChannel channel = Channels.newChannel(new ByteArrayInputStream(array, 0, length));
+        return Channels.newReader(channel, decoder, Math.min(length, READER_BUFFER_SIZE));
+    }
+
+    @Override
+    public void close() {
+        byte[] released = array;
+        array = null;
+        length = 0;
+        if (released != null && released.length <= MAX_POOLED_SIZE) {
+            synchronized (POOL) {
+                if (POOL.size() < MAX_POOLED_COUNT) {
+                    POOL.push(released);
+                }
+            }
+        }
+    }
+
+    private static byte[] borrow() {
+        synchronized (POOL) {
+            byte[] array = POOL.poll();
+            if (array != null) {
+                return array;
+            }
+        }
+        return new byte[INITIAL_SIZE];
+    }
+
+    /**
+     * 从Content-Type中取charset，不支持的编码按未声明处理
+     */
+    static Charset parseCharset(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        for (String param : contentType.split(";")) {
+            String[] pair = param.trim().split("=", 2);
+            if (pair.length == 2 && pair[0].trim().toLowerCase(Locale.ROOT).equals("charset")) {
+                String name = pair[1].trim().replace("\"", "");
+                try {
+                    return Charset.forName(name);
+                } catch (IllegalArgumentException e) {
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * JDK HttpClient的BodyHandler，把收到的数据依次拷贝进池化数组
+     */
+    static HttpResponse.BodyHandler<ResponseBody> handler() {
+        return info -> new Subscriber(parseCharset(info.headers().firstValue("Content-Type").orElse(null)));
+    }
+
+    private static class Subscriber implements HttpResponse.BodySubscriber<ResponseBody> {
+        private final Charset charset;
+        private final CompletableFuture<ResponseBody> result = new CompletableFuture<>();
+        private byte[] array = borrow();
+        private int length;
+
+        Subscriber(Charset charset) {
+            this.charset = charset;
+        }
+
+        @Override
+        public CompletionStage<ResponseBody> getBody() {
+            return result;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> items) {
+            for (ByteBuffer item : items) {
+                int remaining = item.remaining();
+                if (length + remaining > array.length) {
+                    byte[] grown = new byte[Math.max(array.length * 2, length + remaining)];
+                    System.arraycopy(array, 0, grown, 0, length);
+                    array = grown;
+                }
+                item.get(array, length, remaining);
+                length += remaining;
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            new ResponseBody(array, 0, charset).close();
+            result.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            result.complete(new ResponseBody(array, length, charset));
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package utils;
+
+import java.math.BigDecimal;
+
+/**
+ * 定点小数：long存放去掉小数点后的整数值，scale为小数位数，即 value = unscaled × 10^-scale<br>
+ * 用于行情里价格、份额的加减乘除，代替每次刷新都创建的一串{@link BigDecimal}。
+ * 运算规则（结果精度、HALF_UP舍入、toString格式）与BigDecimal保持一致，
+ * 超出long范围时抛出{@link ArithmeticException}，由调用方退回BigDecimal计算。
+ */
+public final class ScaledDecimal {
+    private static final long[] POW10 = new long[19];
+
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; i++) {
+            POW10[i] = POW10[i - 1] * 10;
+        }
+    }
+
+    public static final ScaledDecimal ZERO = new ScaledDecimal(0, 0);
+    public static final ScaledDecimal HUNDRED = new ScaledDecimal(100, 0);
+
+    private final long unscaled;
+    private final int scale;
+
+    private ScaledDecimal(long unscaled, int scale) {
+        this.unscaled = unscaled;
+        this.scale = scale;
+    }
+
+    public static ScaledDecimal valueOf(long unscaled, int scale) {
+        if (scale < 0 || scale >= POW10.length) {
+            throw new ArithmeticException("scale out of range: " + scale);
+        }
+        return new ScaledDecimal(unscaled, scale);
+    }
+
+    /**
+     * 解析 [+-]数字[.数字] 格式的字符串，与{@code new BigDecimal(str)}结果一致
+     *
+     * @return 无法用long表示或者格式不支持（如科学计数法）时返回null
+     */
+    public static ScaledDecimal parse(String str) {
+        if (str == null) {
+            return null;
+        }
+        int length = str.length();
+        int i = 0;
+        boolean negative = false;
+        if (i < length && (str.charAt(i) == '-' || str.charAt(i) == '+')) {
+            negative = str.charAt(i) == '-';
+            i++;
+        }
+        long value = 0;
+        int digits = 0;
+        int scale = -1;
+        boolean hasDigit = false;
+        for (; i < length; i++) {
+            char c = str.charAt(i);
+            if (c >= '0' && c <= '9') {
+                hasDigit = true;
+                if (value != 0 || c != '0') {
+                    digits++;
+                }
+                if (digits > 18) {
+                    return null;
+                }
+                value = value * 10 + (c - '0');
+                if (scale >= 0) {
+                    scale++;
+                }
+            } else if (c == '.' && scale < 0) {
+                scale = 0;
+            } else {
+                return null;
+            }
+        }
+        if (!hasDigit || scale >= POW10.length) {
+            return null;
+        }
+        return new ScaledDecimal(negative ? -value : value, Math.max(scale, 0));
+    }
+
+    public long unscaledValue() {
+        return unscaled;
+    }
+
+    public int scale() {
+        return scale;
+    }
+
+    public int signum() {
+        return Long.signum(unscaled);
+    }
+
+    /**
+     * 结果精度为两者中较大的scale，同{@link BigDecimal#subtract}
+     */
+    public ScaledDecimal subtract(ScaledDecimal other) {
+        if (scale == other.scale) {
+            return new ScaledDecimal(Math.subtractExact(unscaled, other.unscaled), scale);
+        }
+        if (scale > other.scale) {
+            return new ScaledDecimal(Math.subtractExact(unscaled, upscale(other.unscaled, scale - other.scale)), scale);
+        }
+        return new ScaledDecimal(Math.subtractExact(upscale(unscaled, other.scale - scale), other.unscaled), other.scale);
+    }
+
+    /**
+     * 结果精度为两者scale之和，同{@link BigDecimal#multiply}
+     */
+    public ScaledDecimal multiply(ScaledDecimal other) {
+        return valueOf(Math.multiplyExact(unscaled, other.unscaled), scale + other.scale);
+    }
+
+    /**
+     * 同{@link BigDecimal#divide(BigDecimal, int, java.math.RoundingMode)}，舍入方式HALF_UP
+     */
+    public ScaledDecimal divide(ScaledDecimal divisor, int resultScale) {
+        if (divisor.unscaled == 0) {
+            throw new ArithmeticException("Division by zero");
+        }
+        // this / divisor = (u1 / u2) × 10^(s2 - s1)，要得到 resultScale 位小数，分子需要乘 10^(resultScale - s1 + s2)
+        int shift = resultScale - scale + divisor.scale;
+        long numerator = unscaled;
+        long denominator = divisor.unscaled;
+        if (shift >= 0) {
+            numerator = upscale(numerator, shift);
+        } else {
+            denominator = upscale(denominator, -shift);
+        }
+        return valueOf(divideHalfUp(numerator, denominator), resultScale);
+    }
+
+    /**
+     * 同{@link BigDecimal#setScale(int, java.math.RoundingMode)}，舍入方式HALF_UP
+     */
+    public ScaledDecimal setScale(int newScale) {
+        if (newScale == scale) {
+            return this;
+        }
+        if (newScale > scale) {
+            return valueOf(upscale(unscaled, newScale - scale), newScale);
+        }
+        return valueOf(divideHalfUp(unscaled, pow10(scale - newScale)), newScale);
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(unscaled, scale);
+    }
+
+    /**
+     * 与{@link BigDecimal#toString()}输出一致
+     */
+    @Override
+    public String toString() {
+        if (scale == 0) {
+            return Long.toString(unscaled);
+        }
+        String digits = Long.toString(Math.abs(unscaled));
+        if (unscaled == Long.MIN_VALUE || digits.length() - 1 - scale < -6) {
+            // 数值极小时BigDecimal会输出科学计数法，交给它处理
+            return toBigDecimal().toString();
+        }
+        StringBuilder builder = new StringBuilder(digits.length() + 3);
+        if (unscaled < 0) {
+            builder.append('-');
+        }
+        int pointIndex = digits.length() - scale;
+        if (pointIndex > 0) {
+            builder.append(digits, 0, pointIndex).append('.').append(digits, pointIndex, digits.length());
+        } else {
+            builder.append("0.");
+            for (int i = pointIndex; i < 0; i++) {
+                builder.append('0');
+            }
+            builder.append(digits);
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ScaledDecimal that = (ScaledDecimal) o;
+        return unscaled == that.unscaled && scale == that.scale;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(unscaled) * 31 + scale;
+    }
+
+    private static long pow10(int n) {
+        if (n >= POW10.length) {
+            throw new ArithmeticException("overflow");
+        }
+        return POW10[n];
+    }
+
+    private static long upscale(long value, int n) {
+        return Math.multiplyExact(value, pow10(n));
+    }
+
+    /**
+     * 整数除法，HALF_UP（0.5远离零方向进位）
+     */
+    private static long divideHalfUp(long numerator, long denominator) {
+        long quotient = numerator / denominator;
+        long remainder = Math.abs(numerator % denominator);
+        long absDenominator = Math.abs(denominator);
+        if (remainder >= absDenominator - remainder) {
+            quotient += (numerator < 0) == (denominator < 0) ? 1 : -1;
+        }
+        return quotient;
+    }
+}
@@ -0,0 +1,58 @@
+package handler;
+
+import bean.StockBean;
+import org.junit.Test;
+import utils.CircuitBreaker;
+import utils.MarketSession;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.*;
+
+public class FailoverQuoteProviderTest {
+
+    @Test
+    public void describesOnlyDegradedProviders() {
+        FailoverQuoteProvider provider = new FailoverQuoteProvider(new NamedProvider("新浪"), new NamedProvider("腾讯"));
+        assertEquals("", provider.describeDegraded());
+
+        CircuitBreaker sina = provider.getBreakers().get(0);
+        for (int i = 0; i < 5; i++) {
+            sina.record(false, 10);
+        }
+        assertEquals("新浪熔断", provider.describeDegraded());
+        assertTrue(provider.describeHealth(), provider.describeHealth().contains("新浪 健康度0"));
+    }
+
+    private static class NamedProvider implements QuoteProvider {
+        private final String name;
+
+        NamedProvider(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public Set<MarketSession> getMarkets() {
+            return EnumSet.of(MarketSession.CN);
+        }
+
+        @Override
+        public int getBatchSize() {
+            return 60;
+        }
+
+        @Override
+        public CompletableFuture<List<StockBean>> fetch(List<String> codes, Map<String, String[]> codeMap, Set<QuoteField> fields) {
+            return CompletableFuture.completedFuture(List.of());
+        }
+    }
+}
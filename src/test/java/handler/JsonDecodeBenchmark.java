@@ -0,0 +1,55 @@
+package handler;
+
+import bean.FundBean;
+import com.google.gson.Gson;
+import utils.Benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * 对比原来先把响应解码成字符串再用Gson反射绑定，和直接从响应字节流式解析的耗时、分配
+ */
+public class JsonDecodeBenchmark {
+    private static final Gson gson = new Gson();
+
+    public static void main(String[] args) {
+        Random random = new Random(21);
+        byte[] yahoo = JsonDecodeParityTest.yahooPayload(random, 50).getBytes(StandardCharsets.UTF_8);
+        byte[] fund = ("jsonpgz(" + JsonDecodeParityTest.fundPayload(random) + ");").getBytes(StandardCharsets.UTF_8);
+
+        Benchmarks.run("yahoo 50 coins, string + gson", 20_000, () ->
+                gson.fromJson(new String(yahoo, StandardCharsets.UTF_8), JsonDecodeParityTest.YahooResponse.class));
+        Benchmarks.run("yahoo 50 coins, streaming", 20_000, () -> {
+            int[] count = new int[1];
+            try {
+                YahooCoinHandler.decode(reader(yahoo), bean -> count[0]++);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return count[0];
+        });
+        Benchmarks.run("tiantian fund, string + gson", 200_000, () -> {
+            String jsonp = new String(fund, StandardCharsets.UTF_8);
+            return gson.fromJson(jsonp.substring("jsonpgz(".length(), jsonp.length() - ");".length()), FundBean.class);
+        });
+        Benchmarks.run("tiantian fund, streaming", 200_000, () -> TianTianFundHandler.decode(reader(fund)));
+    }
+
+    /**
+     * 与ResponseBody.reader相同的读法
+     */
+    private static Reader reader(byte[] bytes) {
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        return Channels.newReader(Channels.newChannel(new ByteArrayInputStream(bytes)), decoder, Math.min(bytes.length, 8192));
+    }
+}
@@ -0,0 +1,174 @@
+package handler;
+
+import bean.CoinBean;
+import bean.FundBean;
+import com.google.gson.Gson;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 流式解析与原来的Gson反射绑定结果一致
+ */
+public class JsonDecodeParityTest {
+    private static final Gson gson = new Gson();
+
+    @Test
+    public void yahooMatchesReflectiveGson() throws Exception {
+        Random random = new Random(21);
+        for (int n = 0; n < 200; n++) {
+            String json = yahooPayload(random, random.nextInt(25));
+            List<CoinBean> expected = gson.fromJson(json, YahooResponse.class).quoteResponse.result;
+            List<CoinBean> actual = new ArrayList<>();
+            YahooCoinHandler.decode(new StringReader(json), bean -> actual.add(copy(bean)));
+
+            assertEquals(json, expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertCoinEquals(json, expected.get(i), actual.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void yahooSkipsUnrelatedTopLevelFields() throws Exception {
+        String json = "{\"finance\":{\"result\":[1,2]},\"quoteResponse\":{\"error\":null,\"result\":"
+                + "[{\"symbol\":\"BTC-USD\",\"regularMarketPrice\":\"65000.5\",\"extra\":{\"result\":[]}}]}}";
+        List<CoinBean> actual = new ArrayList<>();
+        YahooCoinHandler.decode(new StringReader(json), bean -> actual.add(copy(bean)));
+        assertEquals(1, actual.size());
+        assertEquals("BTC-USD", actual.get(0).getSymbol());
+        assertEquals(65000.5, actual.get(0).getRegularMarketPrice(), 0);
+    }
+
+    @Test
+    public void yahooReusedBeanIsResetBetweenResults() throws Exception {
+        // 第二条没有价格，不能沿用第一条的
+        String json = "{\"quoteResponse\":{\"result\":[{\"symbol\":\"A\",\"regularMarketPrice\":1.5,\"regularMarketTime\":1700000000},"
+                + "{\"symbol\":\"B\",\"regularMarketPrice\":null}]}}";
+        List<CoinBean> actual = new ArrayList<>();
+        YahooCoinHandler.decode(new StringReader(json), bean -> actual.add(copy(bean)));
+        assertEquals(0, actual.get(1).getRegularMarketPrice(), 0);
+        assertEquals(0, actual.get(1).getTimeStamp());
+    }
+
+    @Test
+    public void tianTianMatchesReflectiveGson() {
+        Random random = new Random(12);
+        for (int n = 0; n < 500; n++) {
+            String json = fundPayload(random);
+            FundBean expected = gson.fromJson(json, FundBean.class);
+            FundBean actual = TianTianFundHandler.decode(new StringReader("jsonpgz(" + json + ");"));
+
+            assertEquals(json, expected.getFundCode(), actual.getFundCode());
+            assertEquals(json, expected.getFundName(), actual.getFundName());
+            assertEquals(json, expected.getJzrq(), actual.getJzrq());
+            assertEquals(json, expected.getDwjz(), actual.getDwjz());
+            assertEquals(json, expected.getGsz(), actual.getGsz());
+            assertEquals(json, expected.getGszzl(), actual.getGszzl());
+            assertEquals(json, expected.getGztime(), actual.getGztime());
+        }
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void tianTianRejectsMalformedPayload() {
+        TianTianFundHandler.decode(new StringReader("jsonpgz({\"fundcode\":);"));
+    }
+
+    static String yahooPayload(Random random, int count) {
+        StringBuilder json = new StringBuilder("{\"quoteResponse\":{\"result\":[");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            List<String> fields = new ArrayList<>();
+            fields.add("\"symbol\":" + (random.nextInt(10) == 0 ? "null" : "\"C" + i + "-USD\""));
+            addNumber(random, fields, "regularMarketPrice");
+            addNumber(random, fields, "regularMarketDayHigh");
+            addNumber(random, fields, "regularMarketDayLow");
+            addNumber(random, fields, "regularMarketChange");
+            addNumber(random, fields, "regularMarketChangePercent");
+            if (random.nextBoolean()) {
+                fields.add("\"regularMarketTime\":" + (1_700_000_000L + random.nextInt(1_000_000)));
+            }
+            // 表格用不到的字段，含嵌套对象和数组
+            fields.add("\"quoteType\":\"CRYPTOCURRENCY\"");
+            fields.add("\"pageViews\":{\"shortTermTrend\":\"UP\",\"result\":[1,{\"a\":null}]}");
+            fields.add("\"tradeable\":" + random.nextBoolean());
+            Collections.shuffle(fields, random);
+            json.append('{').append(String.join(",", fields)).append('}');
+        }
+        return json.append("],\"error\":null}}").toString();
+    }
+
+    private static void addNumber(Random random, List<String> fields, String name) {
+        switch (random.nextInt(4)) {
+            case 0:
+                return;
+            case 1:
+                fields.add("\"" + name + "\":null");
+                return;
+            case 2:
+                fields.add("\"" + name + "\":" + (random.nextInt(2_000_000) - 1_000_000) / 100.0);
+                return;
+            default:
+                fields.add("\"" + name + "\":" + random.nextDouble() * 1e5);
+        }
+    }
+
+    static String fundPayload(Random random) {
+        String[] names = {"fundcode", "name", "jzrq", "dwjz", "gsz", "gszzl", "gztime"};
+        String[] values = {"\"110011\"", "\"易方达中小盘混合\"", "\"2026-04-14\"", "\"5.1234\"", "\"5.2001\"", "\"-1.50\"",
+                "\"2026-04-15 15:00\""};
+        List<String> fields = new ArrayList<>();
+        for (int i = 0; i < names.length; i++) {
+            int choice = random.nextInt(5);
+            if (choice == 0) {
+                continue;
+            }
+            fields.add("\"" + names[i] + "\":" + (choice == 1 ? "null" : values[i]));
+        }
+        if (random.nextBoolean()) {
+            fields.add("\"unknown\":{\"nested\":[1,2,3]}");
+        }
+        Collections.shuffle(fields, random);
+        return "{" + String.join(",", fields) + "}";
+    }
+
+    private static CoinBean copy(CoinBean bean) {
+        CoinBean copy = new CoinBean(bean.getSymbol());
+        copy.setRegularMarketPrice(bean.getRegularMarketPrice());
+        copy.setRegularMarketDayHigh(bean.getRegularMarketDayHigh());
+        copy.setRegularMarketDayLow(bean.getRegularMarketDayLow());
+        copy.setRegularMarketChange(bean.getRegularMarketChange());
+        copy.setRegularMarketChangePercent(bean.getRegularMarketChangePercent());
+        copy.setTimeStamp(bean.getTimeStamp());
+        return copy;
+    }
+
+    private static void assertCoinEquals(String message, CoinBean expected, CoinBean actual) {
+        assertEquals(message, expected.getSymbol(), actual.getSymbol());
+        assertEquals(message, expected.getRegularMarketPrice(), actual.getRegularMarketPrice(), 0);
+        assertEquals(message, expected.getRegularMarketDayHigh(), actual.getRegularMarketDayHigh(), 0);
+        assertEquals(message, expected.getRegularMarketDayLow(), actual.getRegularMarketDayLow(), 0);
+        assertEquals(message, expected.getRegularMarketChange(), actual.getRegularMarketChange(), 0);
+        assertEquals(message, expected.getRegularMarketChangePercent(), actual.getRegularMarketChangePercent(), 0);
+        assertEquals(message, expected.getTimeStamp(), actual.getTimeStamp());
+    }
+
+    /**
+     * 原来的bean.YahooResponse，用于反射绑定
+     */
+    static class YahooResponse {
+        Result quoteResponse;
+
+        private static class Result {
+            List<CoinBean> result;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package handler;
+
+import org.apache.commons.lang.StringUtils;
+import utils.Benchmarks;
+
+import java.util.Arrays;
+import java.util.Vector;
+
+/**
+ * 5000行的表格，每次刷新按编码找到所在行并更新当前价，对比原来逐行equalsIgnoreCase查找和编码索引
+ */
+public class KeyedTableModelBenchmark {
+    private static final int ROWS = 5_000;
+
+    public static void main(String[] args) {
+        BenchmarkModel model = new BenchmarkModel();
+        String[] codes = new String[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            codes[i] = (i % 2 == 0 ? "sh" : "sz") + (600000 + i);
+            model.addRow(new Vector<>(Arrays.asList(codes[i], "0")));
+        }
+        // 行情返回的编码大小写不一定与配置一致
+        String[] quoted = Arrays.stream(codes).map(String::toUpperCase).toArray(String[]::new);
+        int[] tick = new int[1];
+
+        Benchmarks.run("update 5000 rows, linear scan", 10, () -> {
+            String price = String.valueOf(++tick[0]);
+            for (String code : quoted) {
+                model.setValueAt(price, model.scanRowIndex(code), 1);
+            }
+            return price;
+        });
+        Benchmarks.run("update 5000 rows, keyed index", 500, () -> {
+            String price = String.valueOf(++tick[0]);
+            for (String code : quoted) {
+                model.setValueAt(price, model.findRowIndex(0, code), 1);
+            }
+            return price;
+        });
+    }
+
+    private static class BenchmarkModel extends KeyedTableModel {
+        BenchmarkModel() {
+            setColumnIdentifiers(new Object[]{"编码", "当前价"});
+        }
+
+        @Override
+        protected int getKeyColumnIndex() {
+            return 0;
+        }
+
+        /**
+         * 原来各RefreshHandler的findRowIndex
+         */
+        int scanRowIndex(String value) {
+            int rowCount = getRowCount();
+            for (int rowIndex = 0; rowIndex < rowCount; rowIndex++) {
+                if (StringUtils.equalsIgnoreCase(value, getValueAt(rowIndex, 0).toString())) {
+                    return rowIndex;
+                }
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package handler;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.swing.*;
+import javax.swing.event.TableModelEvent;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Vector;
+
+import static org.junit.Assert.*;
+
+public class KeyedTableModelTest {
+    private TestModel model;
+    private final List<TableModelEvent> events = new ArrayList<>();
+    private final List<String> problems = new ArrayList<>();
+    private int announcedRowCount;
+
+    @Before
+    public void setUp() {
+        model = new TestModel();
+        model.addTableModelListener(e -> {
+            events.add(e);
+            if (e.getType() == TableModelEvent.INSERT) {
+                announcedRowCount += e.getLastRow() - e.getFirstRow() + 1;
+            } else if (e.getType() == TableModelEvent.DELETE) {
+                announcedRowCount -= e.getLastRow() - e.getFirstRow() + 1;
+            }
+            // 每个事件发出时，表格的行数必须是已经通知过的
+            if (model.getRowCount() != announcedRowCount) {
+                problems.add(e.getType() + ": rows " + model.getRowCount() + " announced " + announcedRowCount);
+            }
+        });
+    }
+
+    @Test
+    public void newRowsAreInsertedInOneEvent() throws Exception {
+        drain(row("sh600519", "1"), row("sz000001", "2"), row("SH600519", "3"));
+
+        assertEquals(2, model.getRowCount());
+        assertEquals("3", model.getValueAt(0, 1));
+        assertEquals(1, events.size());
+        assertEquals(TableModelEvent.INSERT, events.get(0).getType());
+        assertTrue(problems.isEmpty());
+    }
+
+    @Test
+    public void updatesAreFiredBeforeInsertsInTheSameBatch() throws Exception {
+        drain(row("sh600519", "1"), row("sz000001", "2"));
+        events.clear();
+
+        drain(row("sz000001", "5"), row("hk00700", "6"), row("sh600519", "1"));
+
+        assertTrue(problems.toString(), problems.isEmpty());
+        assertEquals(2, events.size());
+        assertEquals(TableModelEvent.UPDATE, events.get(0).getType());
+        assertEquals(1, events.get(0).getFirstRow());
+        assertEquals(TableModelEvent.INSERT, events.get(1).getType());
+        assertEquals(2, events.get(1).getFirstRow());
+        assertEquals("5", model.getValueAt(1, 1));
+        assertEquals("6", model.getValueAt(2, 1));
+    }
+
+    @Test
+    public void unchangedRowsAreSuppressed() throws Exception {
+        drain(row("sh600519", "1"), row("sz000001", "2"));
+        events.clear();
+        assertEquals(2, model.getNotifiedRowCount());
+
+        drain(row("sh600519", "1"), row("sz000001", "2"));
+
+        assertTrue(events.isEmpty());
+        assertEquals(2, model.getSuppressedRowCount());
+        assertEquals(2, model.getNotifiedRowCount());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void updatesAreCoalescedIntoContiguousRuns() throws Exception {
+        List<Vector<Object>> rows = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            rows.add(row("sh" + (600000 + i), "0"));
+        }
+        drain(rows.toArray(new Vector[0]));
+        events.clear();
+        long suppressed = model.getSuppressedRowCount();
+        long notified = model.getNotifiedRowCount();
+
+        // 首尾两行、中间连续的三行，其中第0行编码大小写也变了，两个单元格变化
+        drain(row("SH600000", "1"), row("sh600500", "1"), row("sh600501", "1"), row("sh600502", "1"), row("sh600999", "1"),
+                row("sh600001", "0"));
+
+        assertEquals(3, events.size());
+        assertEquals(List.of(0, 500, 999), Arrays.asList(events.get(0).getFirstRow(), events.get(1).getFirstRow(), events.get(2).getFirstRow()));
+        assertEquals(List.of(0, 502, 999), Arrays.asList(events.get(0).getLastRow(), events.get(1).getLastRow(), events.get(2).getLastRow()));
+        assertEquals(TableModelEvent.ALL_COLUMNS, events.get(0).getColumn());
+        assertEquals(TableModelEvent.ALL_COLUMNS, events.get(1).getColumn());
+        assertEquals(1, events.get(2).getColumn());
+        assertEquals(suppressed + 1, model.getSuppressedRowCount());
+        assertEquals(notified + 5, model.getNotifiedRowCount());
+    }
+
+    @Test
+    public void singleChangedCellFiresCellEvent() throws Exception {
+        drain(row("sh600519", "1"), row("sz000001", "2"));
+        events.clear();
+
+        drain(row("sz000001", "3"));
+
+        assertEquals(1, events.size());
+        assertEquals(1, events.get(0).getFirstRow());
+        assertEquals(1, events.get(0).getColumn());
+    }
+
+    @Test
+    public void rowIndexFollowsModelChanges() {
+        model.addRow(row("sh600519", "1"));
+        model.addRow(row("sz000001", "2"));
+        assertEquals(0, model.findRowIndex(0, "SH600519"));
+        assertEquals(1, model.findRowIndex(0, "sz000001"));
+
+        // 中间插入，之后的行号都变了
+        model.insertRow(0, row("hk00700", "3"));
+        assertEquals(0, model.findRowIndex(0, "hk00700"));
+        assertEquals(1, model.findRowIndex(0, "sh600519"));
+        assertEquals(2, model.findRowIndex(0, "sz000001"));
+
+        // 拖动排序
+        model.moveRow(2, 2, 0);
+        assertEquals(0, model.findRowIndex(0, "sz000001"));
+        assertEquals(1, model.findRowIndex(0, "hk00700"));
+
+        model.removeRow(1);
+        assertEquals(-1, model.findRowIndex(0, "hk00700"));
+        assertEquals(1, model.findRowIndex(0, "sh600519"));
+
+        // 编码被改掉
+        model.setValueAt("usAAPL", 1, 0);
+        assertEquals(-1, model.findRowIndex(0, "sh600519"));
+        assertEquals(1, model.findRowIndex(0, "usaapl"));
+
+        model.clearRow();
+        assertEquals(-1, model.findRowIndex(0, "sz000001"));
+        model.addRow(row("sz000001", "4"));
+        assertEquals(0, model.findRowIndex(0, "sz000001"));
+        assertEquals(-1, model.findRowIndex(0, null));
+    }
+
+    @Test
+    public void rowIndexMatchesScanUnderRandomEdits() {
+        Random random = new Random(5);
+        String[] codes = new String[40];
+        for (int i = 0; i < codes.length; i++) {
+            codes[i] = (i % 2 == 0 ? "sh" : "SZ") + (600000 + i);
+        }
+        for (int step = 0; step < 5_000; step++) {
+            int rows = model.getRowCount();
+            String code = codes[random.nextInt(codes.length)];
+            switch (random.nextInt(8)) {
+                case 0:
+                case 1:
+                    model.addRow(row(code, String.valueOf(step)));
+                    break;
+                case 2:
+                    model.insertRow(random.nextInt(rows + 1), row(code, String.valueOf(step)));
+                    break;
+                case 3:
+                    if (rows > 0) {
+                        model.removeRow(random.nextInt(rows));
+                    }
+                    break;
+                case 4:
+                    if (rows > 1) {
+                        int start = random.nextInt(rows);
+                        int end = start + random.nextInt(rows - start);
+                        model.moveRow(start, end, random.nextInt(rows - (end - start)));
+                    }
+                    break;
+                case 5:
+                    if (rows > 0) {
+                        model.setValueAt(code, random.nextInt(rows), 0);
+                    }
+                    break;
+                case 6:
+                    if (rows > 0) {
+                        model.setValueAt(String.valueOf(step), random.nextInt(rows), 1);
+                    }
+                    break;
+                default:
+                    if (random.nextInt(50) == 0) {
+                        model.clearRow();
+                    }
+            }
+            String probe = codes[random.nextInt(codes.length)];
+            assertEquals(probe + " at step " + step, scan(probe), model.findRowIndex(0, probe.toUpperCase()));
+        }
+    }
+
+    /**
+     * 逐行查找，编码重复时取第一行
+     */
+    private int scan(String code) {
+        for (int row = 0; row < model.getRowCount(); row++) {
+            if (code.equalsIgnoreCase(model.getValueAt(row, 0).toString())) {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    @SafeVarargs
+    private final void drain(Vector<Object>... rows) throws Exception {
+        // 在EDT上提交，保证同一批的行由同一次drain处理
+        SwingUtilities.invokeAndWait(() -> {
+            for (Vector<Object> row : rows) {
+                model.enqueue(row);
+            }
+        });
+        // 等EDT执行完安排的drain
+        SwingUtilities.invokeAndWait(() -> {
+        });
+    }
+
+    private static Vector<Object> row(String code, String price) {
+        return new Vector<>(Arrays.asList(code, price));
+    }
+
+    private static class TestModel extends KeyedTableModel {
+        TestModel() {
+            setColumnIdentifiers(new Object[]{"编码", "当前价"});
+        }
+
+        @Override
+        protected int getKeyColumnIndex() {
+            return 0;
+        }
+
+        void enqueue(Vector<Object> row) {
+            enqueueRow((String) row.get(0), row);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package handler;
+
+import com.longport.quote.QuoteContext;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class LongbridgeConnectionTest {
+    private final List<FakeContext> created = new ArrayList<>();
+    private final AtomicInteger connected = new AtomicInteger();
+    private final AtomicInteger resourcesClosed = new AtomicInteger();
+    private volatile String[] credentials = {"key", "secret", "token"};
+    /**
+     * 不为null时connect返回它，用于模拟一直连不上
+     */
+    private volatile CompletableFuture<QuoteContext> pendingConnect;
+    private LongbridgeConnection connection;
+
+    @Before
+    public void setUp() {
+        connection = new LongbridgeConnection((credentials, resources) -> {
+            resources.accept(resourcesClosed::incrementAndGet);
+            if (pendingConnect != null) {
+                return pendingConnect;
+            }
+            FakeContext context = new FakeContext();
+            synchronized (created) {
+                created.add(context);
+            }
+            return CompletableFuture.completedFuture(context);
+        }, () -> credentials, context -> connected.incrementAndGet());
+    }
+
+    @Test
+    public void connectsOnceAndReuses() {
+        QuoteContext context = connection.get();
+        assertNotNull(context);
+        assertSame(context, connection.get());
+        assertEquals(1, connected.get());
+        assertEquals(LongbridgeConnection.State.CONNECTED, connection.getState());
+    }
+
+    @Test
+    public void droppedConnectionIsClosedAndBacksOff() throws Exception {
+        FakeContext context = (FakeContext) connection.get();
+        context.drop();
+
+        try {
+            connection.await(context, context.call());
+            fail();
+        } catch (ExecutionException expected) {
+            // 连接断开
+        }
+        assertTrue(context.closed);
+        assertEquals(1, resourcesClosed.get());
+        assertEquals(LongbridgeConnection.State.RECONNECTING, connection.getState());
+        assertEquals(1, connection.getErrorCount());
+        // 退避期内不重连
+        assertNull(connection.get());
+        assertEquals(1, created.size());
+
+        Thread.sleep(1100);
+        FakeContext reconnected = (FakeContext) connection.get();
+        assertNotNull(reconnected);
+        assertNotSame(context, reconnected);
+        assertEquals("ok", connection.await(reconnected, reconnected.call()));
+        assertEquals(LongbridgeConnection.State.CONNECTED, connection.getState());
+        assertEquals(2, connection.getConnectCount());
+    }
+
+    @Test
+    public void asyncFailureClosesConnection() {
+        FakeContext context = (FakeContext) connection.get();
+        context.drop();
+        connection.track(context, context.call()).handle((v, e) -> null).join();
+        assertTrue(context.closed);
+        assertNull(connection.current());
+    }
+
+    @Test
+    public void failureOnReplacedContextKeepsCurrentOne() throws Exception {
+        FakeContext old = (FakeContext) connection.get();
+        credentials = new String[]{"key", "secret", "rotated"};
+        FakeContext current = (FakeContext) connection.get();
+        assertTrue(old.closed);
+        assertNotSame(old, current);
+
+        old.drop();
+        try {
+            connection.await(old, old.call());
+            fail();
+        } catch (ExecutionException expected) {
+            // 旧连接上的调用失败
+        }
+        assertFalse(current.closed);
+        assertSame(current, connection.current());
+        assertEquals(LongbridgeConnection.State.CONNECTED, connection.getState());
+        assertEquals(1, connection.getErrorCount());
+    }
+
+    @Test
+    public void missingCredentialsCloseConnection() {
+        FakeContext context = (FakeContext) connection.get();
+        credentials = null;
+        assertNull(connection.get());
+        assertTrue(context.closed);
+        assertEquals(LongbridgeConnection.State.IDLE, connection.getState());
+    }
+
+    @Test
+    public void closeDoesNotWaitForPendingConnect() throws Exception {
+        pendingConnect = new CompletableFuture<>();
+        FutureTask<QuoteContext> caller = new FutureTask<>(connection::get);
+        new Thread(caller).start();
+        // 等调用方开始建立连接
+        Thread.sleep(200);
+
+        long start = System.nanoTime();
+        connection.close();
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 500);
+        assertNull(caller.get(1, TimeUnit.SECONDS));
+
+        // 连接在close之后才建立，直接丢弃
+        FakeContext late = new FakeContext();
+        pendingConnect.complete(late);
+        assertEquals(LongbridgeConnection.State.CLOSED, connection.getState());
+        assertNull(connection.current());
+    }
+
+    @Test
+    public void concurrentCallersShareOneConnect() throws Exception {
+        pendingConnect = new CompletableFuture<>();
+        List<Future<QuoteContext>> callers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            FutureTask<QuoteContext> caller = new FutureTask<>(connection::get);
+            callers.add(caller);
+            new Thread(caller).start();
+        }
+        Thread.sleep(200);
+        FakeContext context = new FakeContext();
+        pendingConnect.complete(context);
+        for (Future<QuoteContext> caller : callers) {
+            assertSame(context, caller.get(1, TimeUnit.SECONDS));
+        }
+        assertEquals(1, connected.get());
+    }
+
+    /**
+     * 可以模拟断线的QuoteContext
+     */
+    private static class FakeContext extends QuoteContext {
+        volatile boolean dropped;
+        volatile boolean closed;
+
+        void drop() {
+            dropped = true;
+        }
+
+        CompletableFuture<String> call() {
+            return dropped ? CompletableFuture.failedFuture(new IllegalStateException("connection reset"))
+                    : CompletableFuture.completedFuture("ok");
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package handler;
+
+import utils.Benchmarks;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import javax.swing.table.TableRowSorter;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * 1000行按涨跌幅排序，每次刷新后整体重排，对比原来每次比较都解析字符串和预先解析好的{@link NumericCell}
+ */
+public class NumericCellBenchmark {
+    private static final int ROWS = 1_000;
+
+    public static void main(String[] args) {
+        Random random = new Random(25);
+        DefaultTableModel strings = new DefaultTableModel(new Object[]{"涨跌幅"}, 0);
+        DefaultTableModel cells = new DefaultTableModel(new Object[]{"涨跌幅"}, 0);
+        for (int i = 0; i < ROWS; i++) {
+            String text = String.format(Locale.ROOT, "%.2f%%", random.nextGaussian() * 3);
+            strings.addRow(new Object[]{text});
+            cells.addRow(new Object[]{NumericCell.of(text)});
+        }
+
+        TableRowSorter<DefaultTableModel> stringSorter = sorter(strings);
+        stringSorter.setComparator(0, NumericCellTest.ORIGINAL);
+        TableRowSorter<DefaultTableModel> cellSorter = sorter(cells);
+        cellSorter.setComparator(0, NumericCell.COMPARATOR);
+
+        Benchmarks.run("resort 1000 rows, parse strings", 500, () -> {
+            stringSorter.allRowsChanged();
+            return stringSorter.convertRowIndexToModel(0);
+        });
+        Benchmarks.run("resort 1000 rows, numeric cells", 500, () -> {
+            cellSorter.allRowsChanged();
+            return cellSorter.convertRowIndexToModel(0);
+        });
+    }
+
+    private static TableRowSorter<DefaultTableModel> sorter(DefaultTableModel model) {
+        TableRowSorter<DefaultTableModel> sorter = new TableRowSorter<>(model);
+        sorter.setSortKeys(Collections.singletonList(new RowSorter.SortKey(0, SortOrder.ASCENDING)));
+        return sorter;
+    }
+}
@@ -0,0 +1,88 @@
+package handler;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.math.NumberUtils;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class NumericCellTest {
+    private static final String[] SPECIAL = {"--", "", "0", "-0", "0.00", "-0.00", "0.00%", "-0.00%", "NaN", "1e3", "1E-2",
+            "12.5%%", " 12", "abc", "+1.5", "99999999999999999999", "-1.7976931348623157E308", "Infinity"};
+
+    /**
+     * 改为NumericCell之前的字符串比较
+     */
+    static final Comparator<Object> ORIGINAL = (o1, o2) -> {
+        Double v1 = NumberUtils.toDouble(StringUtils.remove((String) o1, '%'));
+        Double v2 = NumberUtils.toDouble(StringUtils.remove((String) o2, '%'));
+        return v1.compareTo(v2);
+    };
+
+    @Test
+    public void sortsLikeOriginalStringComparator() {
+        Random random = new Random(25);
+        for (int n = 0; n < 200; n++) {
+            List<String> texts = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                texts.add(randomText(random));
+            }
+            List<String> expected = new ArrayList<>(texts);
+            expected.sort(ORIGINAL);
+            List<NumericCell> cells = texts.stream().map(NumericCell::of).collect(Collectors.toList());
+            cells.sort(NumericCell.COMPARATOR);
+
+            assertEquals(expected, cells.stream().map(NumericCell::toString).collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void pairwiseSignMatchesOriginal() {
+        Random random = new Random(52);
+        for (int n = 0; n < 100_000; n++) {
+            String a = randomText(random);
+            String b = randomText(random);
+            int expected = Integer.signum(ORIGINAL.compare(a, b));
+            assertEquals(a + " vs " + b, expected, Integer.signum(NumericCell.COMPARATOR.compare(NumericCell.of(a), NumericCell.of(b))));
+            // 表格里混有未转换的字符串时也一致
+            assertEquals(a + " vs " + b, expected, Integer.signum(NumericCell.COMPARATOR.compare(a, NumericCell.of(b))));
+        }
+    }
+
+    @Test
+    public void equalityFollowsText() {
+        // 数值相同但文本不同仍视为变化，界面要显示新文本
+        assertNotEquals(NumericCell.of("1.0"), NumericCell.of("1.00"));
+        assertEquals(NumericCell.of("1.00%"), NumericCell.of("1.00%"));
+        assertEquals(NumericCell.of("1.00%").hashCode(), NumericCell.of("1.00%").hashCode());
+        assertNotEquals(NumericCell.of("1.00"), "1.00");
+        assertNull(NumericCell.of(null));
+        assertEquals(-2.5, NumericCell.valueOf(NumericCell.of("-2.50%")), 0);
+        assertEquals(-2.5, NumericCell.valueOf("-2.50%"), 0);
+        assertEquals(0, NumericCell.valueOf(null), 0);
+    }
+
+    @Test
+    public void flagColumnsByName() {
+        String[] columns = {"编码", "股票名称", "涨跌", "涨跌幅", "收益"};
+        assertArrayEquals(new boolean[]{false, false, true, true, false}, NumericCell.flagColumns(columns, "涨跌,涨跌幅,最高价"));
+    }
+
+    private static String randomText(Random random) {
+        switch (random.nextInt(4)) {
+            case 0:
+                return SPECIAL[random.nextInt(SPECIAL.length)];
+            case 1:
+                return String.format(Locale.ROOT, "%.2f%%", (random.nextInt(4001) - 2000) / 100.0);
+            default:
+                return String.format(Locale.ROOT, "%.3f", (random.nextInt(2_000_001) - 1_000_000) / 1000.0);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package handler;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 与原来各handler中BigDecimal的算法逐字符比较
+ */
+public class ProfitCalculatorTest {
+
+    @Test
+    public void corpusMatchesBigDecimal() throws IOException {
+        List<String[]> rows = readCorpus();
+        assertFalse(rows.isEmpty());
+        for (String[] row : rows) {
+            assertSameAsBigDecimal(row[0], row[1], row[2], row[3]);
+        }
+    }
+
+    @Test
+    public void randomQuotesMatchBigDecimal() {
+        Random random = new Random(20260416L);
+        for (int i = 0; i < 200_000; i++) {
+            String now = randomDecimal(random, false);
+            String prevClose = random.nextInt(50) == 0 ? "0" : randomDecimal(random, false);
+            String cost = randomDecimal(random, true);
+            String bonds = randomDecimal(random, true);
+            assertSameAsBigDecimal(now, prevClose, cost, bonds);
+        }
+    }
+
+    @Test
+    public void longInputsFallBackToBigDecimal() {
+        String huge = "1234567890123456789.25";
+        assertEquals(bigChange(huge, "1"), ProfitCalculator.change(huge, "1"));
+        assertEquals(bigIncome(huge, "2", "3"), ProfitCalculator.income(huge, "2", "3"));
+        assertEquals(bigIncomePercent(huge, "2", 5), ProfitCalculator.incomePercent(huge, "2", 5));
+        assertEquals("2469135780246913578.50", ProfitCalculator.income(huge, "0", "2"));
+    }
+
+    @Test
+    public void scientificNotation() {
+        assertEquals("1E-7", ProfitCalculator.change("0.0000001", "0"));
+        assertEquals(bigChange("1E+3", "999"), ProfitCalculator.change("1E+3", "999"));
+        assertEquals("1", ProfitCalculator.change("1E+3", "999"));
+    }
+
+    @Test
+    public void invalidInputs() {
+        assertNull(ProfitCalculator.change("--", "1"));
+        assertNull(ProfitCalculator.income("1", "--", "1"));
+        assertEquals("0", ProfitCalculator.changePercent("1", "0"));
+        assertEquals("0", ProfitCalculator.incomePercent("1", "-1", 5));
+    }
+
+    private static void assertSameAsBigDecimal(String now, String prevClose, String cost, String bonds) {
+        String row = now + "," + prevClose + "," + cost + "," + bonds;
+        assertEquals(row, bigChange(now, prevClose), ProfitCalculator.change(now, prevClose));
+        assertEquals(row, bigChange(now, prevClose, 2), ProfitCalculator.change(now, prevClose, 2));
+        assertEquals(row, bigChangePercent(now, prevClose), ProfitCalculator.changePercent(now, prevClose));
+        assertEquals(row, bigIncomePercent(now, cost, ProfitCalculator.STOCK_INCOME_PERCENT_SCALE),
+                ProfitCalculator.incomePercent(now, cost, ProfitCalculator.STOCK_INCOME_PERCENT_SCALE));
+        assertEquals(row, bigIncomePercent(now, cost, ProfitCalculator.FUND_INCOME_PERCENT_SCALE),
+                ProfitCalculator.incomePercent(now, cost, ProfitCalculator.FUND_INCOME_PERCENT_SCALE));
+        assertEquals(row, bigIncome(now, cost, bonds), ProfitCalculator.income(now, cost, bonds));
+    }
+
+    private static List<String[]> readCorpus() throws IOException {
+        List<String[]> rows = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                ProfitCalculatorTest.class.getResourceAsStream("/profit/corpus.csv"), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    rows.add(line.split(","));
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * 0~4位小数，价格集中在几个常见区间，偶尔为负
+     */
+    private static String randomDecimal(Random random, boolean allowNegative) {
+        long unscaled = random.nextInt(4) == 0 ? random.nextInt(100) : random.nextInt(10_000_000);
+        if (allowNegative && random.nextInt(20) == 0) {
+            unscaled = -unscaled;
+        }
+        return BigDecimal.valueOf(unscaled, random.nextInt(5)).toPlainString();
+    }
+
+    // 以下为原来各handler中的BigDecimal算法
+
+    private static String bigChange(String now, String prevClose) {
+        try {
+            return new BigDecimal(now).subtract(new BigDecimal(prevClose)).toString();
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static String bigChange(String now, String prevClose, int scale) {
+        try {
+            return new BigDecimal(now).subtract(new BigDecimal(prevClose)).setScale(scale, RoundingMode.HALF_UP).toString();
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static String bigChangePercent(String now, String prevClose) {
+        try {
+            BigDecimal prev = new BigDecimal(prevClose);
+            if (prev.signum() == 0) {
+                return "0";
+            }
+            return new BigDecimal(now).subtract(prev).divide(prev, 4, RoundingMode.HALF_UP)
+                    .multiply(BigDecimal.TEN).multiply(BigDecimal.TEN)
+                    .setScale(2, RoundingMode.HALF_UP).toString();
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static String bigIncomePercent(String now, String costPrice, int divideScale) {
+        try {
+            BigDecimal cost = new BigDecimal(costPrice);
+            if (cost.compareTo(BigDecimal.ZERO) <= 0) {
+                return "0";
+            }
+            return new BigDecimal(now).add(cost.negate()).divide(cost, divideScale, RoundingMode.HALF_UP)
+                    .multiply(BigDecimal.TEN).multiply(BigDecimal.TEN)
+                    .setScale(3, RoundingMode.HALF_UP).toString();
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static String bigIncome(String now, String costPrice, String bonds) {
+        try {
+            return new BigDecimal(now).add(new BigDecimal(costPrice).negate()).multiply(new BigDecimal(bonds))
+                    .setScale(2, RoundingMode.HALF_UP).toString();
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package handler;
+
+import bean.StockBean;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class SharedQuoteStoreTest {
+    private static final int CODE_COUNT = 200;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private SharedQuoteStore leader;
+    private SharedQuoteStore follower;
+
+    @Before
+    public void setUp() {
+        Path dir = folder.getRoot().toPath();
+        leader = new SharedQuoteStore(dir, message -> {
+        });
+        follower = new SharedQuoteStore(dir, message -> {
+        });
+    }
+
+    @After
+    public void tearDown() {
+        leader.release();
+        follower.release();
+    }
+
+    @Test
+    public void onlyOneStoreHoldsTheLock() {
+        assertTrue(leader.isLeader());
+        assertFalse(follower.isLeader());
+        assertTrue(leader.isLeader());
+    }
+
+    @Test
+    public void followerTakesOverAfterRelease() {
+        assertTrue(leader.isLeader());
+        leader.publish(entries(1, 1000L, EnumSet.of(QuoteField.PRICE)));
+        leader.release();
+
+        assertTrue(follower.isLeader());
+        assertFalse(leader.isLeader());
+        // 新的主进程接着旧数据发布
+        assertEquals("1", follower.read().quotes.get("sh000000").quote.getNow());
+        follower.publish(entries(2, 2000L, EnumSet.of(QuoteField.PRICE)));
+        assertEquals("2", leader.read().quotes.get("sh000000").quote.getNow());
+    }
+
+    @Test
+    public void nothingPublished() {
+        assertNull(follower.read());
+    }
+
+    @Test
+    public void keepsPerCodeTimeAndFields() {
+        List<SharedQuoteStore.Entry> entries = new ArrayList<>();
+        entries.add(new SharedQuoteStore.Entry(1000L, EnumSet.of(QuoteField.PRICE), bean("sh600519", "1")));
+        entries.add(new SharedQuoteStore.Entry(2000L, QuoteField.ALL, bean("hk00700", "2")));
+        leader.publish(entries);
+
+        SharedQuoteStore.Snapshot snapshot = follower.read();
+        SharedQuoteStore.Entry stale = snapshot.quotes.get("sh600519");
+        SharedQuoteStore.Entry fresh = snapshot.quotes.get("hk00700");
+        assertEquals(1000L, stale.time);
+        assertEquals(EnumSet.of(QuoteField.PRICE), stale.fields);
+        assertEquals(2000L, fresh.time);
+        assertEquals(QuoteField.ALL, fresh.fields);
+        assertSame(snapshot, follower.read());
+    }
+
+    @Test
+    public void neverReturnsTornSnapshot() throws Exception {
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<String> failure = new AtomicReference<>();
+        AtomicInteger reads = new AtomicInteger();
+        Thread writer = new Thread(() -> {
+            int round = 0;
+            while (running.get()) {
+                leader.publish(entries(round++, round, QuoteField.ALL));
+            }
+        });
+        Thread reader = new Thread(() -> {
+            while (running.get() && failure.get() == null) {
+                SharedQuoteStore.Snapshot snapshot = follower.read();
+                if (snapshot == null || snapshot.quotes.isEmpty()) {
+                    continue;
+                }
+                reads.incrementAndGet();
+                if (snapshot.quotes.size() != CODE_COUNT) {
+                    failure.set("size " + snapshot.quotes.size());
+                }
+                // 同一次发布的行情价格相同，不同说明读到了两次写入拼起来的数据
+                String now = snapshot.quotes.get("sh000000").quote.getNow();
+                for (SharedQuoteStore.Entry entry : snapshot.quotes.values()) {
+                    if (!now.equals(entry.quote.getNow())) {
+                        failure.set(now + " != " + entry.quote.getNow());
+                    }
+                }
+            }
+        });
+        writer.start();
+        reader.start();
+        Thread.sleep(1000);
+        running.set(false);
+        writer.join();
+        reader.join();
+        assertNull(failure.get());
+        assertTrue(reads.get() > 0);
+    }
+
+    private static List<SharedQuoteStore.Entry> entries(int price, long time, Set<QuoteField> fields) {
+        List<SharedQuoteStore.Entry> entries = new ArrayList<>(CODE_COUNT);
+        for (int i = 0; i < CODE_COUNT; i++) {
+            entries.add(new SharedQuoteStore.Entry(time, fields, bean(String.format("sh%06d", i), String.valueOf(price))));
+        }
+        return entries;
+    }
+
+    private static StockBean bean(String code, String now) {
+        StockBean bean = new StockBean(code);
+        bean.setName("贵州茅台");
+        bean.setNow(now);
+        return bean;
+    }
+}
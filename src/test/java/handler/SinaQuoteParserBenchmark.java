@@ -0,0 +1,61 @@
+package handler;
+
+import utils.Benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 把src/test/resources/sina/hq.txt重复到约400行，对比原来的正则加split和单次字节扫描
+ */
+public class SinaQuoteParserBenchmark {
+    private static final Charset GBK = Charset.forName("GBK");
+    private static final Pattern OLD_PATTERN = Pattern.compile("var hq_str_(\\w+?)=\"(.*?)\";");
+    private static final int COPIES = 30;
+
+    public static void main(String[] args) throws IOException {
+        byte[] corpus = SinaQuoteParserTest.corpus();
+        byte[] bytes = new byte[corpus.length * COPIES];
+        for (int i = 0; i < COPIES; i++) {
+            System.arraycopy(corpus, 0, bytes, i * corpus.length, corpus.length);
+        }
+        SinaQuoteParser parser = new SinaQuoteParser();
+
+        Benchmarks.run("sina regex + split", 2_000, () -> regexParse(bytes));
+        Benchmarks.run("sina scanner", 2_000, () -> scannerParse(parser, bytes));
+    }
+
+    /**
+     * 原SinaStockHandler.handleResponse的做法
+     */
+    private static List<String[]> regexParse(byte[] bytes) {
+        List<String[]> quotes = new ArrayList<>();
+        for (String line : new String(bytes, GBK).split("\n")) {
+            Matcher matcher = OLD_PATTERN.matcher(line);
+            if (!matcher.matches()) {
+                continue;
+            }
+            String[] split = matcher.group(2).split(",");
+            if (split.length < 32) {
+                continue;
+            }
+            quotes.add(new String[]{matcher.group(1), split[0], split[2], split[3], split[4], split[5], split[31]});
+        }
+        return quotes;
+    }
+
+    private static List<String[]> scannerParse(SinaQuoteParser parser, byte[] bytes) {
+        List<String[]> quotes = new ArrayList<>();
+        parser.reset(bytes, bytes.length, GBK);
+        while (parser.next()) {
+            quotes.add(new String[]{parser.code(), parser.name(), parser.field(SinaQuoteParser.YESTERDAY),
+                    parser.field(SinaQuoteParser.NOW), parser.field(SinaQuoteParser.MAX),
+                    parser.field(SinaQuoteParser.MIN), parser.field(SinaQuoteParser.TIME)});
+        }
+        return quotes;
+    }
+}
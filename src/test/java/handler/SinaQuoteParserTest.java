@@ -0,0 +1,162 @@
+package handler;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+public class SinaQuoteParserTest {
+    private static final Charset GBK = Charset.forName("GBK");
+    private static final Pattern OLD_PATTERN = Pattern.compile("var hq_str_(\\w+?)=\"(.*?)\";");
+
+    @Test
+    public void gbkNamesWithAsciiTrailBytes() {
+        // 杶(0x96 0x7E)、丂(0x81 0x40)的尾字节在ASCII范围内
+        byte[] bytes = (line("sh600000", "杶丂科技", "10.50") + line("sz000001", "平安银行", "12.30")).getBytes(GBK);
+        SinaQuoteParser parser = new SinaQuoteParser();
+        parser.reset(bytes, bytes.length, GBK);
+
+        assertTrue(parser.next());
+        assertEquals("sh600000", parser.code());
+        assertEquals("杶丂科技", parser.name());
+        assertEquals("10.50", parser.field(SinaQuoteParser.NOW));
+        assertEquals("15:00:00", parser.field(SinaQuoteParser.TIME));
+
+        assertTrue(parser.next());
+        assertEquals("平安银行", parser.name());
+        assertFalse(parser.next());
+    }
+
+    @Test
+    public void commaIsNeverAGbkTrailByte() {
+        // GBK尾字节范围是0x40-0xFE，新浪的分隔符','(0x2C)和引号不会出现在双字节字符中
+        for (char c = '一'; c <= '龥'; c++) {
+            byte[] bytes = String.valueOf(c).getBytes(GBK);
+            if (bytes.length == 2) {
+                assertNotEquals(',', bytes[1]);
+                assertNotEquals('"', bytes[1]);
+            }
+        }
+    }
+
+    @Test
+    public void declaredUtf8IsScannedByteByByte() {
+        byte[] bytes = line("sh600000", "中国平安", "10.50").getBytes(StandardCharsets.UTF_8);
+        SinaQuoteParser parser = new SinaQuoteParser();
+        parser.reset(bytes, bytes.length, StandardCharsets.UTF_8);
+
+        assertTrue(parser.next());
+        assertEquals("中国平安", parser.name());
+        assertEquals("10.50", parser.field(SinaQuoteParser.NOW));
+        assertEquals("15:00:00", parser.field(SinaQuoteParser.TIME));
+    }
+
+    @Test
+    public void matchesRegexAndSplitParsing() {
+        Random random = new Random(3);
+        String[] names = {"贵州茅台", "杶丂科技", "XD平安银行", "ST*中", ""};
+        StringBuilder response = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            String code = (random.nextBoolean() ? "sh" : "sz") + (600000 + i);
+            String line = line(code, names[random.nextInt(names.length)], String.format("%d.%02d", random.nextInt(3000), random.nextInt(100)));
+            switch (random.nextInt(6)) {
+                case 0:
+                    // 停牌、港股等字段不足32个的格式
+                    line = line.substring(0, ordinalIndexOf(line, ',', 20)) + "\";\n";
+                    break;
+                case 1:
+                    // 无效代码
+                    line = "var hq_str_" + code + "=\"\";\n";
+                    break;
+                case 2:
+                    line = "garbage " + line;
+                    break;
+                default:
+            }
+            response.append(line);
+        }
+        assertMatchesRegexAndSplit(response.toString().getBytes(GBK));
+    }
+
+    /**
+     * 接口原样返回的一段响应(GBK)，含指数、停牌、港股(字段不足)和无效代码
+     */
+    @Test
+    public void corpusMatchesRegexAndSplit() throws IOException {
+        assertEquals(12, assertMatchesRegexAndSplit(corpus()));
+    }
+
+    /**
+     * 逐行与原来的正则加split结果比对
+     *
+     * @return 解析出的行情数
+     */
+    private static int assertMatchesRegexAndSplit(byte[] bytes) {
+        int count = 0;
+        SinaQuoteParser parser = new SinaQuoteParser();
+        parser.reset(bytes, bytes.length, GBK);
+        // 原来的做法：整段解码后逐行匹配正则再split
+        for (String line : new String(bytes, GBK).split("\n")) {
+            Matcher matcher = OLD_PATTERN.matcher(line);
+            if (!matcher.matches()) {
+                continue;
+            }
+            String[] split = matcher.group(2).split(",");
+            if (split.length < 32) {
+                continue;
+            }
+            assertTrue(line, parser.next());
+            count++;
+            assertEquals(matcher.group(1), parser.code());
+            assertEquals(split[0], parser.name());
+            assertEquals(split[2], parser.field(SinaQuoteParser.YESTERDAY));
+            assertEquals(split[3], parser.field(SinaQuoteParser.NOW));
+            assertEquals(split[4], parser.field(SinaQuoteParser.MAX));
+            assertEquals(split[5], parser.field(SinaQuoteParser.MIN));
+            assertEquals(split[31], parser.field(SinaQuoteParser.TIME));
+        }
+        assertFalse(parser.next());
+        return count;
+    }
+
+    static byte[] corpus() throws IOException {
+        try (InputStream in = SinaQuoteParserTest.class.getResourceAsStream("/sina/hq.txt")) {
+            // 文件按UTF-8保存便于阅读，接口返回的是GBK
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8).getBytes(GBK);
+        }
+    }
+
+    /**
+     * A股格式的一行，32个字段之后还有状态字段
+     */
+    static String line(String code, String name, String now) {
+        String[] fields = new String[33];
+        Arrays.fill(fields, "0");
+        fields[SinaQuoteParser.NAME] = name;
+        fields[1] = "10.00";
+        fields[SinaQuoteParser.YESTERDAY] = "10.00";
+        fields[SinaQuoteParser.NOW] = now;
+        fields[SinaQuoteParser.MAX] = "11.00";
+        fields[SinaQuoteParser.MIN] = "9.90";
+        fields[30] = "2026-04-15";
+        fields[SinaQuoteParser.TIME] = "15:00:00";
+        fields[32] = "00";
+        return "var hq_str_" + code + "=\"" + String.join(",", fields) + "\";\n";
+    }
+
+    private static int ordinalIndexOf(String s, char c, int n) {
+        int index = -1;
+        for (int i = 0; i < n; i++) {
+            index = s.indexOf(c, index + 1);
+        }
+        return index;
+    }
+}
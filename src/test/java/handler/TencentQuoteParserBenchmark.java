@@ -0,0 +1,82 @@
+package handler;
+
+import bean.StockBean;
+import utils.Benchmarks;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * 400只股票的腾讯完整格式响应，对比原来整段解码后split和字节扫描加复用行情记录的耗时、分配
+ */
+public class TencentQuoteParserBenchmark {
+    private static final Charset GBK = TencentQuoteParser.GBK;
+    private static final int SYMBOLS = 400;
+    private static final Map<String, String[]> CODE_MAP = Collections.emptyMap();
+
+    public static void main(String[] args) {
+        byte[] bytes = response();
+        TencentQuoteParser parser = new TencentQuoteParser();
+        TencentQuoteParser.Quote quote = new TencentQuoteParser.Quote();
+
+        Benchmarks.run("tencent split", 2_000, () -> splitParse(bytes));
+        Benchmarks.run("tencent scanner", 2_000, () -> scannerParse(parser, quote, bytes, QuoteField.ALL));
+        Benchmarks.run("tencent scanner (price only)", 2_000,
+                () -> scannerParse(parser, quote, bytes, Collections.singleton(QuoteField.PRICE)));
+    }
+
+    /**
+     * 原TencentStockHandler.parse的做法，不含收益计算
+     */
+    private static List<StockBean> splitParse(byte[] bytes) {
+        List<StockBean> beans = new ArrayList<>();
+        for (String line : new String(bytes, GBK).split("\n")) {
+            String code = line.substring(line.indexOf("_") + 1, line.indexOf("="));
+            String[] values = line.substring(line.indexOf("=") + 2, line.length() - 2).split("~");
+            StockBean bean = new StockBean(code, CODE_MAP);
+            bean.setName(values[1]);
+            bean.setNow(values[3]);
+            bean.setChange(values[31]);
+            bean.setChangePercent(values[32]);
+            bean.setTime(values[30]);
+            bean.setMax(values[33]);
+            bean.setMin(values[34]);
+            beans.add(bean);
+        }
+        return beans;
+    }
+
+    private static List<StockBean> scannerParse(TencentQuoteParser parser, TencentQuoteParser.Quote quote,
+                                                byte[] bytes, Set<QuoteField> fields) {
+        List<StockBean> beans = new ArrayList<>();
+        parser.reset(bytes, bytes.length, GBK);
+        while (parser.next(quote, fields)) {
+            StockBean bean = new StockBean(quote.code, CODE_MAP);
+            bean.setName(quote.name);
+            bean.setNow(quote.now);
+            bean.setChange(quote.change);
+            bean.setChangePercent(quote.changePercent);
+            bean.setTime(quote.time);
+            bean.setMax(quote.max);
+            bean.setMin(quote.min);
+            beans.add(bean);
+        }
+        return beans;
+    }
+
+    private static byte[] response() {
+        Random random = new Random(1);
+        String[] names = {"贵州茅台", "平安银行", "招商银行", "宁德时代", "中国平安"};
+        StringBuilder response = new StringBuilder();
+        for (int i = 0; i < SYMBOLS; i++) {
+            String now = String.format("%d.%02d", random.nextInt(3000), random.nextInt(100));
+            response.append(TencentQuoteParserTest.line("sh" + (600000 + i), names[i % names.length], now));
+        }
+        return response.toString().getBytes(GBK);
+    }
+}
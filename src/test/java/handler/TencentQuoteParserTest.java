@@ -0,0 +1,214 @@
+package handler;
+
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TencentQuoteParserTest {
+    private static final Charset GBK = Charset.forName("GBK");
+    /**
+     * 杶(0x96 0x7E)、珇(0xAB 0x7E)的尾字节就是分隔符'~'
+     */
+    private static final String TILDE_NAME = "杶珇科技";
+
+    @Test
+    public void gbkTrailByteIsNotDelimiter() {
+        byte[] bytes = (line("sh600000", TILDE_NAME, "10.50") + line("sz000001", "平安银行", "12.30")).getBytes(GBK);
+        TencentQuoteParser parser = new TencentQuoteParser();
+        parser.reset(bytes, bytes.length, GBK);
+
+        assertTrue(parser.next());
+        assertEquals("sh600000", parser.code());
+        assertEquals(TILDE_NAME, parser.name());
+        assertEquals("10.50", parser.field(TencentQuoteParser.NOW));
+        assertEquals("20260415150000", parser.field(TencentQuoteParser.TIME));
+        assertEquals("11.00", parser.field(TencentQuoteParser.MAX));
+        assertEquals("10.00", parser.field(TencentQuoteParser.MIN));
+
+        assertTrue(parser.next());
+        assertEquals("sz000001", parser.code());
+        assertEquals("平安银行", parser.name());
+        assertFalse(parser.next());
+    }
+
+    @Test
+    public void declaredUtf8IsScannedByteByByte() {
+        // UTF-8的多字节字符按GBK成对跳过会吞掉后面的'~'
+        byte[] bytes = line("sh600000", "中国", "10.50").getBytes(StandardCharsets.UTF_8);
+        TencentQuoteParser parser = new TencentQuoteParser();
+        parser.reset(bytes, bytes.length, StandardCharsets.UTF_8);
+
+        assertTrue(parser.next());
+        assertEquals("中国", parser.name());
+        assertEquals("10.50", parser.field(TencentQuoteParser.NOW));
+        assertEquals("20260415150000", parser.field(TencentQuoteParser.TIME));
+    }
+
+    @Test
+    public void parserIsReusableAcrossCharsets() {
+        TencentQuoteParser parser = new TencentQuoteParser();
+        byte[] utf8 = line("sh600000", "中国", "10.50").getBytes(StandardCharsets.UTF_8);
+        parser.reset(utf8, utf8.length, StandardCharsets.UTF_8);
+        assertTrue(parser.next());
+
+        byte[] gbk = line("sh600001", TILDE_NAME, "9.90").getBytes(GBK);
+        parser.reset(gbk, gbk.length, GBK);
+        assertTrue(parser.next());
+        assertEquals(TILDE_NAME, parser.name());
+        assertEquals("9.90", parser.field(TencentQuoteParser.NOW));
+    }
+
+    @Test
+    public void skipsInvalidCodeLine() {
+        byte[] bytes = ("v_pv_none_match=\"1\";\n" + line("sh600000", TILDE_NAME, "10.50")).getBytes(GBK);
+        TencentQuoteParser parser = new TencentQuoteParser();
+        parser.reset(bytes, bytes.length, GBK);
+        assertTrue(parser.next());
+        assertEquals("sh600000", parser.code());
+        assertFalse(parser.next());
+    }
+
+    @Test
+    public void matchesSplitParsing() {
+        Random random = new Random(2);
+        String[] names = {"贵州茅台", TILDE_NAME, "丂A股", "XD平安银行", "ST*中", ""};
+        StringBuilder response = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            String code = (random.nextBoolean() ? "sh" : "sz") + (600000 + i);
+            String now = String.format("%d.%02d", random.nextInt(3000), random.nextInt(100));
+            response.append(line(code, names[random.nextInt(names.length)], now));
+        }
+        byte[] bytes = response.toString().getBytes(GBK);
+        // 原来的做法：整段解码后按行split
+        String[] lines = new String(bytes, GBK).split("\n");
+        TencentQuoteParser parser = new TencentQuoteParser();
+        parser.reset(bytes, bytes.length, GBK);
+        for (String line : lines) {
+            String code = line.substring(line.indexOf("_") + 1, line.indexOf("="));
+            String[] values = line.substring(line.indexOf("=") + 2, line.length() - 2).split("~");
+            assertTrue(parser.next());
+            assertEquals(code, parser.code());
+            assertEquals(values[1], parser.name());
+            assertEquals(values[3], parser.field(TencentQuoteParser.NOW));
+            assertEquals(values[30], parser.field(TencentQuoteParser.TIME));
+            assertEquals(values[31], parser.field(TencentQuoteParser.CHANGE));
+            assertEquals(values[32], parser.field(TencentQuoteParser.CHANGE_PERCENT));
+            assertEquals(values[33], parser.field(TencentQuoteParser.MAX));
+            assertEquals(values[34], parser.field(TencentQuoteParser.MIN));
+        }
+        assertFalse(parser.next());
+    }
+
+    @Test
+    public void briefFormatMatchesFullFormat() {
+        Random random = new Random(23);
+        String[] names = {"贵州茅台", TILDE_NAME, "丂A股", ""};
+        StringBuilder full = new StringBuilder();
+        StringBuilder brief = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            String code = (random.nextBoolean() ? "sh" : "sz") + (600000 + i);
+            String name = names[random.nextInt(names.length)];
+            String now = String.format("%d.%02d", random.nextInt(3000), random.nextInt(100));
+            String change = String.format(Locale.ROOT, "%.2f", random.nextGaussian());
+            String percent = String.format(Locale.ROOT, "%.2f", random.nextGaussian());
+            full.append(line(code, name, now).replace("~0.10~0.96~", "~" + change + "~" + percent + "~"));
+            brief.append(briefLine(code, name, now, change, percent));
+        }
+        byte[] fullBytes = full.toString().getBytes(GBK);
+        byte[] briefBytes = brief.toString().getBytes(GBK);
+        TencentQuoteParser fullParser = new TencentQuoteParser();
+        TencentQuoteParser briefParser = new TencentQuoteParser(true);
+        fullParser.reset(fullBytes, fullBytes.length, GBK);
+        briefParser.reset(briefBytes, briefBytes.length, GBK);
+        while (fullParser.next()) {
+            assertTrue(briefParser.next());
+            // 简要格式的代码去掉s_前缀后与完整格式一致
+            assertEquals(fullParser.code(), briefParser.code());
+            assertEquals(fullParser.name(), briefParser.name());
+            assertEquals(fullParser.field(TencentQuoteParser.NOW), briefParser.field(TencentQuoteParser.NOW));
+            assertEquals(fullParser.field(TencentQuoteParser.CHANGE), briefParser.field(TencentQuoteParser.BRIEF_CHANGE));
+            assertEquals(fullParser.field(TencentQuoteParser.CHANGE_PERCENT), briefParser.field(TencentQuoteParser.BRIEF_CHANGE_PERCENT));
+        }
+        assertFalse(briefParser.next());
+    }
+
+    @Test
+    public void briefParserSkipsShortAndInvalidLines() {
+        String response = "v_pv_none_match=\"1\";\n"
+                + "v_s_sh600000=\"1~浦发银行~600000~10.50\";\n"
+                + briefLine("sz000001", "平安银行", "12.30", "0.10", "0.82");
+        byte[] bytes = response.getBytes(GBK);
+        TencentQuoteParser parser = new TencentQuoteParser(true);
+        parser.reset(bytes, bytes.length, GBK);
+        assertTrue(parser.next());
+        assertEquals("sz000001", parser.code());
+        assertEquals("0.82", parser.field(TencentQuoteParser.BRIEF_CHANGE_PERCENT));
+        assertFalse(parser.next());
+    }
+
+    @Test
+    public void quoteRecordIsRefilledWithRequestedFields() {
+        byte[] bytes = (line("sh600000", TILDE_NAME, "10.50") + line("sz000001", "平安银行", "12.30")).getBytes(GBK);
+        TencentQuoteParser parser = new TencentQuoteParser();
+        TencentQuoteParser.Quote quote = new TencentQuoteParser.Quote();
+        parser.reset(bytes, bytes.length, GBK);
+
+        assertTrue(parser.next(quote, QuoteField.ALL));
+        assertEquals("sh600000", quote.code);
+        assertEquals(TILDE_NAME, quote.name);
+        assertEquals("20260415150000", quote.time);
+        assertEquals("11.00", quote.max);
+
+        // 同一个记录被下一条行情覆盖，没请求的字段置空
+        assertTrue(parser.next(quote, EnumSet.of(QuoteField.PRICE)));
+        assertEquals("sz000001", quote.code);
+        assertEquals("12.30", quote.now);
+        assertEquals("0.96", quote.changePercent);
+        assertNull(quote.name);
+        assertNull(quote.time);
+        assertNull(quote.max);
+        assertFalse(parser.next(quote, QuoteField.ALL));
+    }
+
+    @Test
+    public void fullParserSkipsBriefLines() {
+        byte[] bytes = briefLine("sh600000", TILDE_NAME, "10.50", "0.10", "0.96").getBytes(GBK);
+        TencentQuoteParser parser = new TencentQuoteParser();
+        parser.reset(bytes, bytes.length, GBK);
+        // 简要格式没有时间和最高最低价
+        assertFalse(parser.next());
+    }
+
+    /**
+     * 简要格式的一行
+     */
+    static String briefLine(String code, String name, String now, String change, String percent) {
+        return "v_s_" + code + "=\"1~" + name + "~" + code.substring(2) + "~" + now + "~" + change + "~" + percent
+                + "~123456~7890.12~~345678.90~GP-A\";\n";
+    }
+
+    /**
+     * 完整格式的一行，字段位置与接口一致，没用到的字段填0
+     */
+    static String line(String code, String name, String now) {
+        String[] fields = new String[50];
+        Arrays.fill(fields, "0");
+        fields[0] = "1";
+        fields[TencentQuoteParser.NAME] = name;
+        fields[2] = code.substring(2);
+        fields[TencentQuoteParser.NOW] = now;
+        fields[TencentQuoteParser.TIME] = "20260415150000";
+        fields[TencentQuoteParser.CHANGE] = "0.10";
+        fields[TencentQuoteParser.CHANGE_PERCENT] = "0.96";
+        fields[TencentQuoteParser.MAX] = "11.00";
+        fields[TencentQuoteParser.MIN] = "10.00";
+        return "v_" + code + "=\"" + String.join("~", fields) + "~\";\n";
+    }
+}
@@ -0,0 +1,169 @@
+package quartz;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class RefreshSchedulerTest {
+    /**
+     * 不会触发的表达式，只测试立即执行
+     */
+    private static final String NEVER = "0 0 0 1 1 ? 2099";
+    private static final String NAME = "RefreshSchedulerTest";
+
+    /**
+     * 每个测试单独一个调度器，上一个测试的刷新还没放开时不会影响下一个
+     */
+    private RefreshScheduler scheduler = new RefreshScheduler(60_000);
+
+    @After
+    public void stop() {
+        scheduler.stopJob(NAME);
+    }
+
+    @Test
+    public void manualRunWaitsForRunningRefresh() throws Exception {
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        CompletableFuture<Void> first = new CompletableFuture<>();
+        CountDownLatch secondDone = new CountDownLatch(1);
+
+        scheduler.runJob(NAME, NEVER, () -> {
+            order.add("first");
+            return first;
+        });
+        // 配置修改，第一次刷新还没结束
+        scheduler.runJob(NAME, NEVER, () -> {
+            order.add("second");
+            secondDone.countDown();
+            return CompletableFuture.completedFuture(null);
+        });
+        Thread.sleep(200);
+        assertEquals(Collections.singletonList("first"), order);
+
+        first.complete(null);
+        assertTrue(secondDone.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("first", "second"), order);
+    }
+
+    @Test
+    public void onlyLatestQueuedManualRunExecutes() throws Exception {
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        CompletableFuture<Void> first = new CompletableFuture<>();
+        CountDownLatch thirdDone = new CountDownLatch(1);
+
+        scheduler.runJob(NAME, NEVER, () -> {
+            order.add("first");
+            return first;
+        });
+        scheduler.runJob(NAME, NEVER, () -> {
+            order.add("second");
+            return CompletableFuture.completedFuture(null);
+        });
+        scheduler.runJob(NAME, NEVER, () -> {
+            order.add("third");
+            thirdDone.countDown();
+            return CompletableFuture.completedFuture(null);
+        });
+        first.complete(null);
+        assertTrue(thirdDone.await(5, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        assertEquals(List.of("first", "third"), order);
+    }
+
+    @Test
+    public void stoppedJobDropsQueuedRun() throws Exception {
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        CompletableFuture<Void> first = new CompletableFuture<>();
+
+        scheduler.runJob(NAME, NEVER, () -> {
+            order.add("first");
+            return first;
+        });
+        scheduler.runJob(NAME, NEVER, () -> {
+            order.add("second");
+            return CompletableFuture.completedFuture(null);
+        });
+        scheduler.stopJob(NAME);
+        first.complete(null);
+        Thread.sleep(200);
+        assertEquals(Collections.singletonList("first"), order);
+    }
+
+    @Test
+    public void failedTaskReleasesGuard() throws Exception {
+        CountDownLatch done = new CountDownLatch(1);
+        scheduler.runJob(NAME, NEVER, () -> {
+            throw new IllegalStateException("boom");
+        });
+        Thread.sleep(100);
+        scheduler.runJob(NAME, NEVER, () -> {
+            done.countDown();
+            return null;
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void blockedTaskTimesOutAndIsInterrupted() throws Exception {
+        scheduler = new RefreshScheduler(200);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        // task在返回future之前就阻塞住
+        scheduler.runJob(NAME, NEVER, () -> {
+            try {
+                Thread.sleep(60_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return CompletableFuture.completedFuture(null);
+        });
+        scheduler.runJob(NAME, NEVER, () -> {
+            done.countDown();
+            return CompletableFuture.completedFuture(null);
+        });
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void timeoutCancelsRunningFuture() throws Exception {
+        scheduler = new RefreshScheduler(200);
+        CompletableFuture<Void> hung = new CompletableFuture<>();
+        CountDownLatch done = new CountDownLatch(1);
+        scheduler.runJob(NAME, NEVER, () -> hung);
+        scheduler.runJob(NAME, NEVER, () -> {
+            done.countDown();
+            return CompletableFuture.completedFuture(null);
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        // handler据此结束自己进行中的一轮
+        assertTrue(hung.isCancelled());
+    }
+
+    @Test
+    public void futureReturnedAfterTimeoutIsCancelled() throws Exception {
+        scheduler = new RefreshScheduler(100);
+        CompletableFuture<Void> late = new CompletableFuture<>();
+        CountDownLatch returned = new CountDownLatch(1);
+        scheduler.runJob(NAME, NEVER, () -> {
+            // 不响应中断的阻塞，超时之后才返回
+            long end = System.currentTimeMillis() + 300;
+            while (System.currentTimeMillis() < end) {
+                Thread.onSpinWait();
+            }
+            returned.countDown();
+            return late;
+        });
+        assertTrue(returned.await(5, TimeUnit.SECONDS));
+        Thread.sleep(50);
+        assertTrue(late.isCancelled());
+    }
+}
@@ -0,0 +1,75 @@
+package utils;
+
+import com.google.common.collect.Lists;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 400只股票对本地模拟行情接口分批并发请求，比较不同批大小下一轮刷新的耗时<br>
+ * 模拟接口每个请求固定延迟30ms，每只股票再加0.2ms，与腾讯接口的响应时间量级相近
+ */
+public class AsyncBatchBenchmark {
+    private static final int SYMBOLS = 400;
+    private static final int PARALLEL = 4;
+    private static final long BASE_DELAY_MICROS = 30_000;
+    private static final long PER_SYMBOL_DELAY_MICROS = 200;
+
+    public static void main(String[] args) throws IOException {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/", exchange -> {
+            String query = exchange.getRequestURI().getRawQuery();
+            String[] codes = query.substring(query.indexOf('=') + 1).split(",");
+            sleepMicros(BASE_DELAY_MICROS + PER_SYMBOL_DELAY_MICROS * codes.length);
+            StringBuilder body = new StringBuilder();
+            for (String code : codes) {
+                body.append("v_").append(code).append("=\"1~").append(code).append("~10.00~\";\n");
+            }
+            byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.start();
+        try {
+            String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/?q=";
+            List<String> codes = new ArrayList<>();
+            for (int i = 0; i < SYMBOLS; i++) {
+                codes.add("sh" + (600000 + i));
+            }
+            HttpClientPool pool = HttpClientPool.getHttpClient();
+            pool.buildHttpClient(null);
+            for (int batchSize : new int[]{SYMBOLS, 200, 100, 60, 30, 10}) {
+                Benchmarks.run("batch " + batchSize + ", parallel " + PARALLEL, 3, () -> {
+                    int failed = AsyncBatch.forEachLimited(Lists.partition(codes, batchSize), PARALLEL,
+                            batch -> pool.getAsync(url + String.join(",", batch))).join();
+                    if (failed > 0) {
+                        throw new IllegalStateException(failed + " batches failed");
+                    }
+                    return failed;
+                });
+            }
+        } finally {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+
+    private static void sleepMicros(long micros) {
+        try {
+            Thread.sleep(micros / 1000, (int) (micros % 1000) * 1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+public class AsyncBatchTest {
+
+    @Test
+    public void emptyListCompletesImmediately() {
+        CompletableFuture<Integer> result = AsyncBatch.forEachLimited(Collections.emptyList(), 4,
+                item -> CompletableFuture.completedFuture(null));
+        assertEquals(Integer.valueOf(0), result.getNow(-1));
+    }
+
+    @Test
+    public void neverExceedsLimitAndRunsEachItemOnce() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Integer> items = range(500);
+            AtomicInteger running = new AtomicInteger();
+            AtomicInteger maxRunning = new AtomicInteger();
+            Set<Integer> seen = ConcurrentHashMap.newKeySet();
+            AtomicInteger duplicates = new AtomicInteger();
+            CompletableFuture<Integer> result = AsyncBatch.forEachLimited(items, 4, item -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                if (!seen.add(item)) {
+                    duplicates.incrementAndGet();
+                }
+                return CompletableFuture.runAsync(() -> {
+                    sleepQuietly(item % 3);
+                    running.decrementAndGet();
+                }, executor);
+            });
+            assertEquals(Integer.valueOf(0), result.get(30, TimeUnit.SECONDS));
+            assertEquals(items.size(), seen.size());
+            assertEquals(0, duplicates.get());
+            assertTrue("max " + maxRunning.get(), maxRunning.get() <= 4);
+            assertEquals(0, running.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void countsSyncAndAsyncFailures() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            CompletableFuture<Integer> result = AsyncBatch.forEachLimited(range(100), 3, item -> {
+                if (item % 10 == 0) {
+                    throw new IllegalStateException("sync " + item);
+                }
+                if (item % 10 == 1) {
+                    return CompletableFuture.failedFuture(new IllegalStateException("done " + item));
+                }
+                return CompletableFuture.runAsync(() -> {
+                    if (item % 10 == 2) {
+                        throw new IllegalStateException("async " + item);
+                    }
+                }, executor);
+            });
+            assertEquals(Integer.valueOf(30), result.get(30, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void synchronousTasksDoNotRecurse() {
+        // 同步完成的任务在循环里取下一个，数量很多也不会栈溢出
+        AtomicInteger count = new AtomicInteger();
+        CompletableFuture<Integer> result = AsyncBatch.forEachLimited(range(200_000), 2, item -> {
+            count.incrementAndGet();
+            return CompletableFuture.completedFuture(null);
+        });
+        assertEquals(Integer.valueOf(0), result.join());
+        assertEquals(200_000, count.get());
+    }
+
+    @Test
+    public void limitOneRunsTasksOneAfterAnother() {
+        List<CompletableFuture<Void>> started = new ArrayList<>();
+        CompletableFuture<Integer> result = AsyncBatch.forEachLimited(range(1_000), 1, item -> {
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            started.add(future);
+            return future;
+        });
+        for (int i = 0; i < 1_000; i++) {
+            // 前一个结束后才启动下一个
+            assertEquals(i + 1, started.size());
+            started.get(i).complete(null);
+        }
+        assertEquals(Integer.valueOf(0), result.join());
+    }
+
+    @Test
+    public void cancelStopsStartingNewTasks() {
+        List<CompletableFuture<Void>> started = Collections.synchronizedList(new ArrayList<>());
+        CompletableFuture<Integer> result = AsyncBatch.forEachLimited(range(100), 3, item -> {
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            started.add(future);
+            return future;
+        });
+        assertEquals(3, started.size());
+
+        result.cancel(false);
+        new ArrayList<>(started).forEach(future -> future.complete(null));
+
+        assertTrue(result.isCancelled());
+        // 进行中的任务照常结束，但不再启动新的
+        assertEquals(3, started.size());
+    }
+
+    @Test
+    public void limitLargerThanItemsUsesOneWorkerPerItem() {
+        List<CompletableFuture<Void>> started = new ArrayList<>();
+        CompletableFuture<Integer> result = AsyncBatch.forEachLimited(range(2), 8, item -> {
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            started.add(future);
+            return future;
+        });
+        assertEquals(2, started.size());
+        started.get(1).complete(null);
+        assertFalse(result.isDone());
+        started.get(0).completeExceptionally(new IllegalStateException());
+        assertEquals(Integer.valueOf(1), result.join());
+    }
+
+    private static List<Integer> range(int n) {
+        return IntStream.range(0, n).boxed().collect(Collectors.toList());
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
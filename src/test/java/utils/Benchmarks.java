@@ -0,0 +1,53 @@
+package utils;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * 各*Benchmark共用的简易计时，项目没有引入JMH，直接运行对应类的main方法即可：
+ * <pre>
+ *     java -cp build/classes/java/test:build/classes/java/main:... handler.TencentQuoteParserBenchmark
+ * </pre>
+ * 先预热再计时，输出每次操作的耗时和当前线程分配的字节数
+ */
+public final class Benchmarks {
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURE_ROUNDS = 5;
+    /**
+     * 防止结果没被使用而被JIT优化掉
+     */
+    private static volatile Object sink;
+
+    private Benchmarks() {
+    }
+
+    /**
+     * @param name       输出时的名称
+     * @param iterations 每轮执行次数
+     * @param op         被测操作，返回值只用于防止被优化掉
+     */
+    public static void run(String name, int iterations, Supplier<?> op) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            loop(iterations, op);
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long bestNanos = Long.MAX_VALUE;
+        long bytes = 0;
+        for (int i = 0; i < MEASURE_ROUNDS; i++) {
+            long allocated = threads.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            loop(iterations, op);
+            bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+            bytes = threads.getCurrentThreadAllocatedBytes() - allocated;
+        }
+        System.out.printf(Locale.ROOT, "%-40s %12.1f ns/op %12d B/op%n", name,
+                (double) bestNanos / iterations, bytes / iterations);
+    }
+
+    private static void loop(int iterations, Supplier<?> op) {
+        for (int i = 0; i < iterations; i++) {
+            sink = op.get();
+        }
+    }
+}
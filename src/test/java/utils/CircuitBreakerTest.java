@@ -0,0 +1,148 @@
+package utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CircuitBreakerTest {
+
+    /**
+     * 窗口10次，至少5次才判断，错误率50%或p95达到1000ms熔断
+     */
+    private static CircuitBreaker breaker(long openMillis) {
+        return new CircuitBreaker("test", 10, 5, 0.5, 1000, openMillis);
+    }
+
+    @Test
+    public void staysClosedBelowMinCalls() {
+        CircuitBreaker breaker = breaker(60_000);
+        for (int i = 0; i < 4; i++) {
+            breaker.record(false, 10);
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.allowRequest());
+        assertEquals(0, breaker.getOpenCount());
+    }
+
+    @Test
+    public void opensOnErrorRate() {
+        CircuitBreaker breaker = breaker(60_000);
+        for (int i = 0; i < 3; i++) {
+            breaker.record(true, 10);
+        }
+        breaker.record(false, 10);
+        // 2/5 = 40%
+        breaker.record(false, 10);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        // 3/6 = 50%
+        breaker.record(false, 10);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+        assertEquals(1, breaker.getOpenCount());
+        assertEquals(0, breaker.getHealthScore());
+    }
+
+    @Test
+    public void opensOnSlowP95() {
+        CircuitBreaker breaker = breaker(60_000);
+        for (int i = 0; i < 4; i++) {
+            breaker.record(true, 10);
+        }
+        breaker.record(true, 1000);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(1000, breaker.p95());
+    }
+
+    @Test
+    public void halfOpenAllowsSingleProbe() {
+        CircuitBreaker breaker = tripped(0);
+        // 到时间后显示为待探测
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.allowRequest());
+        assertFalse(breaker.allowRequest());
+        assertFalse(breaker.allowRequest());
+    }
+
+    @Test
+    public void probeSuccessClosesAndResetsWindow() {
+        CircuitBreaker breaker = tripped(0);
+        assertTrue(breaker.allowRequest());
+        breaker.record(true, 10);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        // 熔断前的失败不再计入
+        assertEquals(1, breaker.getCallCount());
+        assertEquals(0, breaker.errorRate(), 0);
+        assertTrue(breaker.allowRequest());
+    }
+
+    @Test
+    public void probeFailureReopens() {
+        CircuitBreaker breaker = tripped(0);
+        assertTrue(breaker.allowRequest());
+        breaker.record(false, 10);
+        assertEquals(2, breaker.getOpenCount());
+        // openMillis为0，重新熔断后马上可以再探测
+        assertTrue(breaker.allowRequest());
+        assertFalse(breaker.allowRequest());
+    }
+
+    @Test
+    public void slowProbeReopens() {
+        CircuitBreaker breaker = tripped(0);
+        assertTrue(breaker.allowRequest());
+        breaker.record(true, 1000);
+        assertEquals(2, breaker.getOpenCount());
+    }
+
+    @Test
+    public void rejectsUntilOpenMillis() {
+        CircuitBreaker breaker = tripped(60_000);
+        assertFalse(breaker.allowRequest());
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertTrue(breaker.describe().contains("熔断"));
+    }
+
+    @Test
+    public void skipReleasesProbe() {
+        CircuitBreaker breaker = tripped(0);
+        assertTrue(breaker.allowRequest());
+        assertFalse(breaker.allowRequest());
+        // 探测请求被取消，名额交给下一个请求
+        breaker.skip();
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.allowRequest());
+        assertEquals(1, breaker.getOpenCount());
+    }
+
+    @Test
+    public void skipDoesNotCountInClosedState() {
+        CircuitBreaker breaker = breaker(60_000);
+        breaker.record(true, 10);
+        breaker.skip();
+        assertEquals(1, breaker.getCallCount());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void windowKeepsOnlyRecentCalls() {
+        CircuitBreaker breaker = new CircuitBreaker("test", 5, 5, 0.5, 1000, 60_000);
+        breaker.record(false, 10);
+        breaker.record(false, 10);
+        for (int i = 0; i < 5; i++) {
+            breaker.record(true, 10);
+        }
+        // 最早的两次失败已被挤出窗口
+        assertEquals(5, breaker.getCallCount());
+        assertEquals(0, breaker.errorRate(), 0);
+        assertEquals(100, breaker.getHealthScore());
+    }
+
+    private static CircuitBreaker tripped(long openMillis) {
+        CircuitBreaker breaker = breaker(openMillis);
+        for (int i = 0; i < 5; i++) {
+            breaker.record(false, 10);
+        }
+        assertEquals(1, breaker.getOpenCount());
+        return breaker;
+    }
+}
@@ -0,0 +1,67 @@
+package utils;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class HttpClientPoolTest {
+    private HttpServer server;
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch received = new CountDownLatch(1);
+
+    @Before
+    public void start() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            received.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = "ok".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @After
+    public void stop() {
+        release.countDown();
+        server.stop(0);
+        HttpClientPool.getHttpClient().buildHttpClient(null);
+    }
+
+    @Test
+    public void statsCoverAsyncRequestsAndRetiredClients() throws Exception {
+        HttpClientPool pool = HttpClientPool.getHttpClient();
+        pool.buildHttpClient(null);
+        CompletableFuture<String> response = pool.getAsync("http://127.0.0.1:" + server.getAddress().getPort() + "/");
+        assertTrue(received.await(5, TimeUnit.SECONDS));
+        assertTrue(pool.describePoolStats(), pool.describePoolStats().startsWith("异步请求进行中1，累计"));
+
+        // 切换代理，请求还没结束，旧客户端等它结束后再关闭
+        pool.buildHttpClient("127.0.0.1:1");
+        assertTrue(pool.describePoolStats(), pool.describePoolStats().startsWith("异步请求进行中0，累计0，失败0"));
+        assertTrue(pool.describePoolStats(), pool.describePoolStats().endsWith("待关闭的旧客户端1"));
+
+        release.countDown();
+        assertEquals("ok", response.get(5, TimeUnit.SECONDS));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!pool.describePoolStats().endsWith("待关闭的旧客户端0") && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(pool.describePoolStats(), pool.describePoolStats().endsWith("待关闭的旧客户端0"));
+    }
+}
@@ -0,0 +1,120 @@
+package utils;
+
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MarketSessionTest {
+    private static final ZoneId SHANGHAI = ZoneId.of("Asia/Shanghai");
+    private static final ZoneId HONG_KONG = ZoneId.of("Asia/Hong_Kong");
+    private static final ZoneId NEW_YORK = ZoneId.of("America/New_York");
+
+    @Test
+    public void marketOfCode() {
+        assertEquals(MarketSession.CN, MarketSession.of("sh600519"));
+        assertEquals(MarketSession.CN, MarketSession.of("SZ000001"));
+        assertEquals(MarketSession.CN, MarketSession.of("bj430047"));
+        assertEquals(MarketSession.HK, MarketSession.of("hk00700"));
+        assertEquals(MarketSession.US, MarketSession.of("usAAPL"));
+        assertNull(MarketSession.of("x"));
+        assertNull(MarketSession.of("of000001"));
+    }
+
+    @Test
+    public void cnSessionBoundaries() {
+        // 2026-04-15 周三
+        assertFalse(MarketSession.CN.isActive(at(SHANGHAI, "2026-04-15T09:14")));
+        assertTrue(MarketSession.CN.isActive(at(SHANGHAI, "2026-04-15T09:15")));
+        // 11:30收盘后5分钟内还在等最终价格
+        assertTrue(MarketSession.CN.isActive(at(SHANGHAI, "2026-04-15T11:34")));
+        assertFalse(MarketSession.CN.isActive(at(SHANGHAI, "2026-04-15T11:35")));
+        assertFalse(MarketSession.CN.isActive(at(SHANGHAI, "2026-04-15T12:59")));
+        assertTrue(MarketSession.CN.isActive(at(SHANGHAI, "2026-04-15T13:00")));
+        assertTrue(MarketSession.CN.isActive(at(SHANGHAI, "2026-04-15T15:04")));
+        assertFalse(MarketSession.CN.isActive(at(SHANGHAI, "2026-04-15T15:05")));
+    }
+
+    @Test
+    public void holidaysAndWeekends() {
+        assertFalse(MarketSession.CN.isActive(at(SHANGHAI, "2026-01-01T10:00")));
+        assertFalse(MarketSession.CN.isActive(at(SHANGHAI, "2026-04-18T10:00")));
+        assertFalse(MarketSession.CN.isTradingDay(LocalDate.parse("2026-04-06")));
+        assertTrue(MarketSession.CN.isTradingDay(LocalDate.parse("2026-04-07")));
+    }
+
+    @Test
+    public void holidaysCover2027() {
+        assertFalse(MarketSession.CN.isTradingDay(LocalDate.parse("2027-02-08")));
+        assertFalse(MarketSession.HK.isTradingDay(LocalDate.parse("2027-03-26")));
+        assertFalse(MarketSession.US.isTradingDay(LocalDate.parse("2027-11-25")));
+        assertTrue(MarketSession.US.isTradingDay(LocalDate.parse("2027-11-26")));
+    }
+
+    @Test
+    public void otherZonesAreConverted() {
+        // 上海时间10:00 = 香港时间10:00，= 纽约前一天22:00(夏令时)
+        ZonedDateTime time = at(SHANGHAI, "2026-04-15T10:00");
+        assertTrue(MarketSession.HK.isActive(time));
+        assertTrue(MarketSession.US.isActive(time));
+        assertTrue(MarketSession.HK.isActive(at(HONG_KONG, "2026-04-15T16:14")));
+        assertFalse(MarketSession.HK.isActive(at(HONG_KONG, "2026-04-15T16:15")));
+    }
+
+    @Test
+    public void usOvernightBelongsToNextTradingDay() {
+        // 周日20:00开始的夜盘属于周一
+        assertTrue(MarketSession.US.isActive(at(NEW_YORK, "2026-04-19T20:00")));
+        assertFalse(MarketSession.US.isActive(at(NEW_YORK, "2026-04-19T19:59")));
+        // 周五20:00之后属于周六，不交易
+        assertTrue(MarketSession.US.isActive(at(NEW_YORK, "2026-04-17T19:59")));
+        assertFalse(MarketSession.US.isActive(at(NEW_YORK, "2026-04-17T20:05")));
+        // 盘前
+        assertTrue(MarketSession.US.isActive(at(NEW_YORK, "2026-04-15T04:00")));
+    }
+
+    @Test
+    public void fundWaitsForEveningNav() {
+        assertTrue(MarketSession.FUND.isActive(at(SHANGHAI, "2026-04-15T15:29")));
+        assertFalse(MarketSession.FUND.isActive(at(SHANGHAI, "2026-04-15T15:30")));
+        assertFalse(MarketSession.FUND.isSettling(at(SHANGHAI, "2026-04-15T15:29")));
+        assertTrue(MarketSession.FUND.isSettling(at(SHANGHAI, "2026-04-15T15:30")));
+        assertTrue(MarketSession.FUND.isSettling(at(SHANGHAI, "2026-04-15T22:59")));
+        assertFalse(MarketSession.FUND.isSettling(at(SHANGHAI, "2026-04-15T23:00")));
+        assertFalse(MarketSession.FUND.isSettling(at(SHANGHAI, "2026-04-18T20:00")));
+        assertFalse(MarketSession.CN.isSettling(at(SHANGHAI, "2026-04-15T20:00")));
+    }
+
+    @Test
+    public void previousTradingDaySkipsWeekendsAndHolidays() {
+        assertEquals(LocalDate.parse("2026-04-17"), MarketSession.FUND.previousTradingDay(LocalDate.parse("2026-04-20")));
+        assertEquals(LocalDate.parse("2026-04-14"), MarketSession.FUND.previousTradingDay(LocalDate.parse("2026-04-15")));
+        // 2026-01-01、01-02休市
+        assertEquals(LocalDate.parse("2025-12-31"), MarketSession.FUND.previousTradingDay(LocalDate.parse("2026-01-05")));
+    }
+
+    @Test
+    public void yearsWithoutHolidayDataTradeOnWeekdays() {
+        // 文件中没有2030年，元旦也按交易日处理
+        assertTrue(MarketSession.CN.isTradingDay(LocalDate.parse("2030-01-01")));
+        assertTrue(MarketSession.CN.isActive(at(SHANGHAI, "2030-01-01T10:00")));
+        assertFalse(MarketSession.CN.isTradingDay(LocalDate.parse("2030-01-05")));
+    }
+
+    @Test
+    public void filterActiveKeepsUnknownMarkets() {
+        List<String> codes = Arrays.asList("xx123", "sh600519,1800,100");
+        List<String> active = MarketSession.filterActive(codes);
+        assertTrue(active.contains("xx123"));
+    }
+
+    private static ZonedDateTime at(ZoneId zone, String localDateTime) {
+        return LocalDateTime.parse(localDateTime).atZone(zone);
+    }
+}
@@ -0,0 +1,102 @@
+package utils;
+
+import net.sourceforge.pinyin4j.PinyinHelper;
+import net.sourceforge.pinyin4j.format.HanyuPinyinCaseType;
+import net.sourceforge.pinyin4j.format.HanyuPinyinOutputFormat;
+import net.sourceforge.pinyin4j.format.HanyuPinyinToneType;
+import net.sourceforge.pinyin4j.format.exception.BadHanyuPinyinOutputFormatCombination;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PinYinUtilsTest {
+    private static final String[] COMMON = {"贵州茅台", "中国平安", "招商银行", "易方达中小盘混合(LOF)A", "腾讯控股",
+            "XD平安银", "ST*长药", "重庆啤酒", "行业ETF", "长江电力", "Apple Inc.", ""};
+
+    @Test
+    public void matchesOriginalImplementation() {
+        Random random = new Random(24);
+        // 超过名称缓存上限，覆盖清空重建
+        for (int n = 0; n < 12_000; n++) {
+            String name = randomName(random);
+            assertEquals(name, original(name), PinYinUtils.toPinYin(name));
+        }
+        // 第二遍走缓存
+        random = new Random(24);
+        for (int n = 0; n < 2_000; n++) {
+            String name = randomName(random);
+            assertEquals(name, original(name), PinYinUtils.toPinYin(name));
+        }
+    }
+
+    @Test
+    public void rangeBoundaries() {
+        String name = "一龥龦䷿";
+        assertEquals(original(name), PinYinUtils.toPinYin(name));
+        assertEquals("yi_" + original("龥") + "_龦_䷿", PinYinUtils.toPinYin(name));
+    }
+
+    @Test
+    public void examples() {
+        assertEquals("gui_zhou_mao_tai", PinYinUtils.toPinYin("贵州茅台"));
+        assertEquals("x_d_p_i_n_g", PinYinUtils.toPinYin("XDPing"));
+        assertNull(PinYinUtils.toPinYin((String) null));
+        assertEquals("", PinYinUtils.toPinYin(""));
+        assertNull(PinYinUtils.toPinYin((String[]) null));
+        assertArrayEquals(new String[]{"zhong_guo", null, "a"}, PinYinUtils.toPinYin(new String[]{"中国", null, "A"}));
+    }
+
+    private static String randomName(Random random) {
+        if (random.nextInt(3) == 0) {
+            return COMMON[random.nextInt(COMMON.length)];
+        }
+        int length = 1 + random.nextInt(8);
+        StringBuilder name = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            switch (random.nextInt(4)) {
+                case 0:
+                    name.append((char) ('A' + random.nextInt(26)));
+                    break;
+                case 1:
+                    name.append("()*-.0123456789".charAt(random.nextInt(15)));
+                    break;
+                default:
+                    // 含生僻字和没有拼音的字
+                    name.append((char) (0x4E00 + random.nextInt(0x9FA5 - 0x4E00 + 1)));
+            }
+        }
+        return name.toString();
+    }
+
+    /**
+     * 缓存之前的实现
+     */
+    private static String original(String input) {
+        HanyuPinyinOutputFormat format = new HanyuPinyinOutputFormat();
+        format.setCaseType(HanyuPinyinCaseType.LOWERCASE);
+        format.setToneType(HanyuPinyinToneType.WITHOUT_TONE);
+        StringBuilder result = new StringBuilder();
+        char[] chars = input.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            char c = chars[i];
+            if (Character.toString(c).matches("[\\u4E00-\\u9FA5]+")) {
+                try {
+                    String[] pinyinArray = PinyinHelper.toHanyuPinyinStringArray(c, format);
+                    if (pinyinArray != null && pinyinArray.length > 0) {
+                        result.append(pinyinArray[0]);
+                    }
+                } catch (BadHanyuPinyinOutputFormatCombination e) {
+                    result.append(c);
+                }
+            } else {
+                result.append(c);
+            }
+            if (i < chars.length - 1) {
+                result.append("_");
+            }
+        }
+        return result.toString().toLowerCase();
+    }
+}
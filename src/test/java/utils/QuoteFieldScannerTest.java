@@ -0,0 +1,110 @@
+package utils;
+
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class QuoteFieldScannerTest {
+    private static final Charset GBK = Charset.forName("GBK");
+    /**
+     * 含尾字节为'~'(杶、珇)和'@'(丂)的名称
+     */
+    private static final String[] VALUES = {"", "0", "10.50", "-0.58", "20260415150000", "贵州茅台", "杶珇科技",
+            "丂A股", "XD平安", "N/A", "1.2e3"};
+
+    @Test
+    public void matchesSplitOnGbkRecords() {
+        Random random = new Random(42);
+        QuoteFieldScanner scanner = new QuoteFieldScanner('~', 40);
+        for (int n = 0; n < 20_000; n++) {
+            String record = randomRecord(random, '~', 60);
+            byte[] bytes = ("v_sh600000=\"" + record + "\";").getBytes(GBK);
+            int from = "v_sh600000=\"".length();
+            int end = scanner.scan(bytes, from, bytes.length, '"');
+            assertEquals('"', bytes[end]);
+            assertMatchesSplit(record, "~", scanner, GBK);
+        }
+    }
+
+    @Test
+    public void matchesSplitOnUtf8Records() {
+        Random random = new Random(7);
+        QuoteFieldScanner scanner = new QuoteFieldScanner(',', 40);
+        scanner.setCharset(StandardCharsets.UTF_8);
+        for (int n = 0; n < 20_000; n++) {
+            String record = randomRecord(random, ',', 60);
+            byte[] bytes = record.getBytes(StandardCharsets.UTF_8);
+            assertEquals(bytes.length, scanner.scan(bytes, 0, bytes.length, '"'));
+            assertMatchesSplit(record, ",", scanner, StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    public void lastNonEmptyMatchesTrimmedSplitLength() {
+        QuoteFieldScanner scanner = new QuoteFieldScanner(',', 10);
+        String[] records = {"a,b,c", "a,b,,", "a,,c,", ",", "", "a"};
+        for (String record : records) {
+            byte[] bytes = record.getBytes(GBK);
+            scanner.scan(bytes, 0, bytes.length, '"');
+            // split去掉末尾的空串，全空时为[""]或[]
+            String[] split = record.split(",");
+            int expected = split.length == 1 && split[0].isEmpty() ? -1 : split.length - 1;
+            assertEquals(record, expected, scanner.lastNonEmpty());
+        }
+    }
+
+    @Test
+    public void stopsAtNewline() {
+        byte[] bytes = "1~贵州茅台~600519\n2~x~y".getBytes(GBK);
+        QuoteFieldScanner scanner = new QuoteFieldScanner('~', 5);
+        int end = scanner.scan(bytes, 0, bytes.length, '"');
+        assertEquals('\n', bytes[end]);
+        assertEquals(3, scanner.fieldCount());
+        assertEquals("贵州茅台", scanner.string(1, GBK));
+        assertEquals("600519", scanner.ascii(2));
+    }
+
+    @Test
+    public void fieldsBeyondCapacityAreCountedOnly() {
+        byte[] bytes = "0~1~2~3~4~5".getBytes(GBK);
+        QuoteFieldScanner scanner = new QuoteFieldScanner('~', 2);
+        scanner.scan(bytes, 0, bytes.length, '"');
+        assertEquals(6, scanner.fieldCount());
+        assertEquals(5, scanner.lastNonEmpty());
+        assertTrue(scanner.has(2));
+        assertFalse(scanner.has(3));
+        assertNull(scanner.ascii(3));
+    }
+
+    private static void assertMatchesSplit(String record, String delimiter, QuoteFieldScanner scanner, Charset charset) {
+        String[] parts = record.split(delimiter, -1);
+        assertEquals(record, parts.length, scanner.fieldCount());
+        int lastNonEmpty = -1;
+        for (int i = 0; i < parts.length; i++) {
+            if (!parts[i].isEmpty()) {
+                lastNonEmpty = i;
+            }
+            if (scanner.has(i)) {
+                assertEquals(record, parts[i], scanner.string(i, charset));
+                assertEquals(record, parts[i].isEmpty(), scanner.isEmpty(i));
+            }
+        }
+        assertEquals(record, lastNonEmpty, scanner.lastNonEmpty());
+    }
+
+    private static String randomRecord(Random random, char delimiter, int maxFields) {
+        int count = 1 + random.nextInt(maxFields);
+        StringBuilder record = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                record.append(delimiter);
+            }
+            record.append(VALUES[random.nextInt(VALUES.length)]);
+        }
+        return record.toString();
+    }
+}
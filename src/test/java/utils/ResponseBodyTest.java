@@ -0,0 +1,128 @@
+package utils;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Flow;
+
+import static org.junit.Assert.*;
+
+public class ResponseBodyTest {
+    private static final Charset GBK = Charset.forName("GBK");
+
+    @Test
+    public void parseDeclaredCharset() {
+        assertEquals(GBK, ResponseBody.parseCharset("application/javascript; charset=GBK"));
+        assertEquals(StandardCharsets.UTF_8, ResponseBody.parseCharset("text/plain;CHARSET=\"utf-8\""));
+        assertEquals(Charset.forName("GB18030"), ResponseBody.parseCharset("text/html; foo=bar; charset = gb18030"));
+        assertNull(ResponseBody.parseCharset("text/html"));
+        assertNull(ResponseBody.parseCharset("text/html; charset=no-such-charset"));
+        assertNull(ResponseBody.parseCharset(null));
+    }
+
+    @Test
+    public void undeclaredCharsetFallsBackToDefault() {
+        try (ResponseBody body = receive(null, "贵州茅台".getBytes(GBK))) {
+            assertEquals(GBK, body.charset(GBK));
+            assertEquals("贵州茅台", body.string(GBK));
+        }
+    }
+
+    @Test
+    public void declaredCharsetWinsOverDefault() {
+        byte[] utf8 = "杶珇科技".getBytes(StandardCharsets.UTF_8);
+        try (ResponseBody body = receive("text/plain; charset=UTF-8", utf8)) {
+            assertEquals(StandardCharsets.UTF_8, body.charset(GBK));
+            assertEquals("杶珇科技", body.string(GBK));
+        }
+    }
+
+    @Test
+    public void chunksAreJoinedAcrossMultiByteBoundaries() {
+        // 杶(0x96 0x7E)的两个字节分在两块里
+        byte[] gbk = "v_sh600000=\"1~杶珇~\";".getBytes(GBK);
+        int split = indexOf(gbk, (byte) 0x96) + 1;
+        try (ResponseBody body = receive("text/plain; charset=GBK",
+                Arrays.copyOfRange(gbk, 0, split), Arrays.copyOfRange(gbk, split, gbk.length))) {
+            assertEquals(gbk.length, body.length());
+            assertArrayEquals(gbk, Arrays.copyOf(body.array(), body.length()));
+            // 声明了GBK，传入的默认编码不起作用
+            assertEquals("v_sh600000=\"1~杶珇~\";", body.string(StandardCharsets.ISO_8859_1));
+        }
+    }
+
+    @Test
+    public void readerDecodesWithResponseCharset() throws Exception {
+        String json = "jsonpgz({\"name\":\"易方达蓝筹精选混合\"});";
+        try (ResponseBody body = receive(null, json.getBytes(StandardCharsets.UTF_8));
+             BufferedReader reader = new BufferedReader(body.reader(StandardCharsets.UTF_8))) {
+            assertEquals(json, reader.readLine());
+        }
+        try (ResponseBody body = receive("application/json; charset=GBK", json.getBytes(GBK));
+             BufferedReader reader = new BufferedReader(body.reader(StandardCharsets.UTF_8))) {
+            assertEquals(json, reader.readLine());
+        }
+    }
+
+    private static ResponseBody receive(String contentType, byte[]... chunks) {
+        Map<String, List<String>> headers = contentType == null ? Collections.emptyMap()
+                : Collections.singletonMap("Content-Type", Collections.singletonList(contentType));
+        HttpResponse.BodySubscriber<ResponseBody> subscriber = ResponseBody.handler().apply(new Info(headers));
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+            }
+
+            @Override
+            public void cancel() {
+            }
+        });
+        for (byte[] chunk : chunks) {
+            subscriber.onNext(Collections.singletonList(ByteBuffer.wrap(chunk)));
+        }
+        subscriber.onComplete();
+        return subscriber.getBody().toCompletableFuture().join();
+    }
+
+    private static int indexOf(byte[] bytes, byte b) {
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] == b) {
+                return i;
+            }
+        }
+        throw new AssertionError();
+    }
+
+    private static class Info implements HttpResponse.ResponseInfo {
+        private final HttpHeaders headers;
+
+        Info(Map<String, List<String>> headers) {
+            this.headers = HttpHeaders.of(headers, (name, value) -> true);
+        }
+
+        @Override
+        public int statusCode() {
+            return 200;
+        }
+
+        @Override
+        public HttpHeaders headers() {
+            return headers;
+        }
+
+        @Override
+        public HttpClient.Version version() {
+            return HttpClient.Version.HTTP_1_1;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package utils;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ScaledDecimalTest {
+
+    @Test
+    public void parseMatchesBigDecimal() {
+        String[] values = {"0", "-0", "+1.50", "0.000", "1688.00", "-0.0015", "123456789012345678", ".5", "5."};
+        for (String value : values) {
+            assertEquals(value, new BigDecimal(value), ScaledDecimal.parse(value).toBigDecimal());
+        }
+    }
+
+    @Test
+    public void parseRejectsUnsupported() {
+        assertNull(ScaledDecimal.parse(null));
+        assertNull(ScaledDecimal.parse(""));
+        assertNull(ScaledDecimal.parse("--"));
+        assertNull(ScaledDecimal.parse("1E+3"));
+        assertNull(ScaledDecimal.parse("1.2.3"));
+        assertNull(ScaledDecimal.parse("1234567890123456789"));
+    }
+
+    @Test
+    public void halfUpTiesRoundAwayFromZero() {
+        assertEquals("0.13", ScaledDecimal.parse("0.125").setScale(2).toString());
+        assertEquals("-0.13", ScaledDecimal.parse("-0.125").setScale(2).toString());
+        assertEquals("0.12", ScaledDecimal.parse("0.1249").setScale(2).toString());
+        assertEquals("0.3333", ScaledDecimal.valueOf(1, 0).divide(ScaledDecimal.valueOf(3, 0), 4).toString());
+        assertEquals("0.5", ScaledDecimal.valueOf(1, 0).divide(ScaledDecimal.valueOf(2, 0), 1).toString());
+        assertEquals("1", ScaledDecimal.valueOf(1, 0).divide(ScaledDecimal.valueOf(2, 0), 0).toString());
+        assertEquals("-1", ScaledDecimal.valueOf(-1, 0).divide(ScaledDecimal.valueOf(2, 0), 0).toString());
+        assertEquals("-1", ScaledDecimal.valueOf(1, 0).divide(ScaledDecimal.valueOf(-2, 0), 0).toString());
+    }
+
+    @Test
+    public void toStringMatchesBigDecimalIncludingScientificNotation() {
+        long[] unscaled = {0, 1, -1, 5, 12, 123456, -123456, Long.MAX_VALUE, Long.MIN_VALUE};
+        for (long u : unscaled) {
+            for (int scale = 0; scale <= 18; scale++) {
+                assertEquals(u + "/" + scale, BigDecimal.valueOf(u, scale).toString(), ScaledDecimal.valueOf(u, scale).toString());
+            }
+        }
+        assertEquals("1E-7", ScaledDecimal.valueOf(1, 7).toString());
+        assertEquals("0.000001", ScaledDecimal.valueOf(1, 6).toString());
+    }
+
+    @Test
+    public void overflowThrows() {
+        ScaledDecimal big = ScaledDecimal.parse("999999999999999999");
+        try {
+            big.multiply(big);
+            fail();
+        } catch (ArithmeticException expected) {
+            // 调用方退回BigDecimal
+        }
+        try {
+            big.setScale(5);
+            fail();
+        } catch (ArithmeticException expected) {
+            // 调用方退回BigDecimal
+        }
+    }
+
+    @Test
+    public void randomArithmeticMatchesBigDecimal() {
+        Random random = new Random(20260101L);
+        for (int i = 0; i < 200_000; i++) {
+            ScaledDecimal a = ScaledDecimal.valueOf(random.nextInt(2_000_000) - 1_000_000, random.nextInt(5));
+            ScaledDecimal b = ScaledDecimal.valueOf(random.nextInt(2_000_000) - 1_000_000, random.nextInt(5));
+            BigDecimal x = a.toBigDecimal();
+            BigDecimal y = b.toBigDecimal();
+            assertEquals(x.subtract(y).toString(), a.subtract(b).toString());
+            assertEquals(x.multiply(y).toString(), a.multiply(b).toString());
+            int scale = random.nextInt(9);
+            assertEquals(x.setScale(scale, RoundingMode.HALF_UP).toString(), a.setScale(scale).toString());
+            if (b.signum() != 0) {
+                assertEquals(x.divide(y, scale, RoundingMode.HALF_UP).toString(), a.divide(b, scale).toString());
+            }
+        }
+    }
+}